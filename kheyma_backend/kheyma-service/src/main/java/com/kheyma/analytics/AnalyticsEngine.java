@@ -0,0 +1,80 @@
+package com.kheyma.analytics;
+
+import com.kheyma.model.Transaction;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+// Runs TransactionAccumulator folds, splitting large inputs across cores with fork-join.
+// Streams are consumed in fixed-size batches so a cursor never has to be materialised in full.
+@Component
+public class AnalyticsEngine {
+    
+    static final int SEQUENTIAL_THRESHOLD = 8_192;
+    static final int STREAM_BATCH_SIZE = 65_536;
+    
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    
+    public TransactionAccumulator analyze(List<Transaction> transactions) {
+        if (transactions.size() <= SEQUENTIAL_THRESHOLD) {
+            return fold(transactions, 0, transactions.size());
+        }
+        return pool.invoke(new FoldTask(transactions, 0, transactions.size()));
+    }
+    
+    public TransactionAccumulator analyze(Stream<Transaction> transactions) {
+        TransactionAccumulator result = new TransactionAccumulator();
+        List<Transaction> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+        
+        transactions.forEach(transaction -> {
+            batch.add(transaction);
+            if (batch.size() == STREAM_BATCH_SIZE) {
+                result.merge(analyze(batch));
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            result.merge(analyze(batch));
+        }
+        return result;
+    }
+    
+    private static TransactionAccumulator fold(List<Transaction> transactions, int from, int to) {
+        TransactionAccumulator accumulator = new TransactionAccumulator();
+        for (int i = from; i < to; i++) {
+            accumulator.add(transactions.get(i));
+        }
+        return accumulator;
+    }
+    
+    private static class FoldTask extends RecursiveTask<TransactionAccumulator> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Transaction> transactions;
+        private final int from;
+        private final int to;
+        
+        FoldTask(List<Transaction> transactions, int from, int to) {
+            this.transactions = transactions;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected TransactionAccumulator compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                return fold(transactions, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            FoldTask left = new FoldTask(transactions, from, mid);
+            left.fork();
+            TransactionAccumulator right = new FoldTask(transactions, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.kheyma.analytics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Logarithmically bucketed histogram in the style of DDSketch (Masson et al., 2019).
+// Bucket i covers (gamma^(i-1), gamma^i] with gamma = (1 + a) / (1 - a), so any quantile is
+// reported within relative error a of a value actually recorded. Buckets are plain counters,
+// which is what lets the stored copies be updated with $inc and merged by addition.
+public class LogHistogram {
+    
+    public static final double RELATIVE_ACCURACY = 0.01;
+    
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long zeroCount; // Values <= 0 cannot be log-bucketed
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    
+    public static int bucketIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+    
+    public static double lowerBound(int index) {
+        return Math.pow(GAMMA, index - 1);
+    }
+    
+    public static double upperBound(int index) {
+        return Math.pow(GAMMA, index);
+    }
+    
+    public static LogHistogram of(Map<String, Long> sparseBuckets, long zeroCount, long count,
+                                  double sum, Double min, Double max) {
+        LogHistogram histogram = new LogHistogram();
+        if (sparseBuckets != null) {
+            sparseBuckets.forEach((index, n) -> histogram.buckets.merge(Integer.parseInt(index), n, Long::sum));
+        }
+        histogram.zeroCount = zeroCount;
+        histogram.count = count;
+        histogram.sum = sum;
+        if (min != null) {
+            histogram.min = min;
+        }
+        if (max != null) {
+            histogram.max = max;
+        }
+        return histogram;
+    }
+    
+    public void add(double value) {
+        if (value > 0) {
+            buckets.merge(bucketIndex(value), 1L, Long::sum);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+    
+    public LogHistogram merge(LogHistogram other) {
+        other.buckets.forEach((index, n) -> buckets.merge(index, n, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+    
+    public Double quantile(double q) {
+        if (count == 0) {
+            return null;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) {
+            return Math.max(min, Math.min(0.0, max));
+        }
+        long seen = zeroCount;
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                // Midpoint in relative terms, which bounds the error by RELATIVE_ACCURACY
+                double estimate = 2 * upperBound(bucket.getKey()) / (GAMMA + 1);
+                return Math.max(min, Math.min(estimate, max));
+            }
+        }
+        return max;
+    }
+    
+    public Map<String, Long> toSparse() {
+        Map<String, Long> sparse = new HashMap<>();
+        buckets.forEach((index, n) -> sparse.put(Integer.toString(index), n));
+        return sparse;
+    }
+    
+    public TreeMap<Integer, Long> getBuckets() {
+        return buckets;
+    }
+    
+    public long getZeroCount() {
+        return zeroCount;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double getSum() {
+        return sum;
+    }
+    
+    public Double getMin() {
+        return count > 0 ? min : null;
+    }
+    
+    public Double getMax() {
+        return count > 0 ? max : null;
+    }
+}
\ No newline at end of file
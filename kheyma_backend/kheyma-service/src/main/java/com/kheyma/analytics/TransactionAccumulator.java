@@ -0,0 +1,196 @@
+package com.kheyma.analytics;
+
+import com.kheyma.dto.TransactionReport;
+import com.kheyma.model.Transaction;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+// Single-pass fold over transactions: counts, sums, min/max, per-package, per-location and per-month totals.
+// Locations are interned to dense int slots and months to epoch-month offsets so the hot loop only touches
+// primitive arrays. Partial accumulators built on different threads are combined with merge().
+public class TransactionAccumulator {
+    
+    private static final Transaction.PackageType[] PACKAGES = Transaction.PackageType.values();
+    private static final int INITIAL_SLOTS = 16;
+    
+    private long count;
+    private double revenue;
+    private double minAmount = Double.POSITIVE_INFINITY;
+    private double maxAmount = Double.NEGATIVE_INFINITY;
+    private final long[] countByPackage = new long[PACKAGES.length];
+    private final double[] revenueByPackage = new double[PACKAGES.length];
+    
+    private final Map<String, Integer> locationSlots = new HashMap<>();
+    private Transaction.LocationReference[] locations = new Transaction.LocationReference[INITIAL_SLOTS];
+    private long[] locationCounts = new long[INITIAL_SLOTS];
+    private double[] locationRevenue = new double[INITIAL_SLOTS];
+    
+    private int firstMonth = Integer.MAX_VALUE; // Epoch month (year * 12 + month - 1) of monthRevenue[0]
+    private double[] monthRevenue = new double[0];
+    
+    public void add(Transaction transaction) {
+        double amount = transaction.getAmount() != null ? transaction.getAmount() : 0.0;
+        
+        count++;
+        revenue += amount;
+        minAmount = Math.min(minAmount, amount);
+        maxAmount = Math.max(maxAmount, amount);
+        
+        if (transaction.getPackageType() != null) {
+            int slot = transaction.getPackageType().ordinal();
+            countByPackage[slot]++;
+            revenueByPackage[slot] += amount;
+        }
+        
+        Transaction.LocationReference location = transaction.getLocation();
+        if (location != null && location.getLocationId() != null) {
+            int slot = locationSlot(location);
+            locationCounts[slot]++;
+            locationRevenue[slot] += amount;
+        }
+        
+        if (transaction.getDate() != null) {
+            addMonthRevenue(epochMonth(transaction.getDate()), amount);
+        }
+    }
+    
+    public TransactionAccumulator merge(TransactionAccumulator other) {
+        count += other.count;
+        revenue += other.revenue;
+        minAmount = Math.min(minAmount, other.minAmount);
+        maxAmount = Math.max(maxAmount, other.maxAmount);
+        
+        for (int i = 0; i < PACKAGES.length; i++) {
+            countByPackage[i] += other.countByPackage[i];
+            revenueByPackage[i] += other.revenueByPackage[i];
+        }
+        
+        for (int i = 0; i < other.locationSlots.size(); i++) {
+            int slot = locationSlot(other.locations[i]);
+            locationCounts[slot] += other.locationCounts[i];
+            locationRevenue[slot] += other.locationRevenue[i];
+        }
+        
+        for (int i = 0; i < other.monthRevenue.length; i++) {
+            if (other.monthRevenue[i] != 0.0) {
+                addMonthRevenue(other.firstMonth + i, other.monthRevenue[i]);
+            }
+        }
+        return this;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double getRevenue() {
+        return revenue;
+    }
+    
+    // Builds the typed report, keeping only the topLocations busiest locations (by count, then revenue)
+    public TransactionReport toReport(int topLocations) {
+        TransactionReport report = new TransactionReport();
+        report.setTransactionCount(count);
+        report.setTotalRevenue(revenue);
+        report.setAverageTransactionAmount(count > 0 ? revenue / count : 0.0);
+        report.setMinAmount(count > 0 ? minAmount : null);
+        report.setMaxAmount(count > 0 ? maxAmount : null);
+        
+        Map<Transaction.PackageType, Long> packageCounts = new EnumMap<>(Transaction.PackageType.class);
+        Map<Transaction.PackageType, Double> packageRevenue = new EnumMap<>(Transaction.PackageType.class);
+        for (Transaction.PackageType packageType : PACKAGES) {
+            if (countByPackage[packageType.ordinal()] > 0) {
+                packageCounts.put(packageType, countByPackage[packageType.ordinal()]);
+                packageRevenue.put(packageType, revenueByPackage[packageType.ordinal()]);
+            }
+        }
+        report.setTransactionsByPackage(packageCounts);
+        report.setRevenueByPackage(packageRevenue);
+        
+        Map<String, Double> months = new LinkedHashMap<>();
+        for (int i = 0; i < monthRevenue.length; i++) {
+            if (monthRevenue[i] != 0.0) {
+                int month = firstMonth + i;
+                months.put(YearMonth.of(month / 12, month % 12 + 1).toString(), monthRevenue[i]);
+            }
+        }
+        report.setRevenueByMonth(months);
+        
+        report.setLocationCount(locationSlots.size());
+        List<TransactionReport.LocationTotals> top = new ArrayList<>();
+        for (int slot : topLocationSlots(topLocations)) {
+            Transaction.LocationReference location = locations[slot];
+            top.add(new TransactionReport.LocationTotals(
+                    location.getLocationId(),
+                    location.getName(),
+                    location.getLatitude(),
+                    location.getLongitude(),
+                    locationCounts[slot],
+                    locationRevenue[slot]
+            ));
+        }
+        report.setLocations(top);
+        return report;
+    }
+    
+    // Bounded min-heap selection: O(n log k) instead of sorting every location
+    private int[] topLocationSlots(int k) {
+        int n = locationSlots.size();
+        if (k <= 0 || n == 0) {
+            return new int[0];
+        }
+        Comparator<Integer> rank = Comparator
+                .<Integer>comparingLong(slot -> locationCounts[slot])
+                .thenComparingDouble(slot -> locationRevenue[slot]);
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(k, n) + 1, rank);
+        for (int slot = 0; slot < n; slot++) {
+            heap.offer(slot);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        int[] result = new int[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll();
+        }
+        return result;
+    }
+    
+    private int locationSlot(Transaction.LocationReference location) {
+        Integer slot = locationSlots.get(location.getLocationId());
+        if (slot != null) {
+            return slot;
+        }
+        int next = locationSlots.size();
+        if (next == locations.length) {
+            int grown = next * 2;
+            locations = Arrays.copyOf(locations, grown);
+            locationCounts = Arrays.copyOf(locationCounts, grown);
+            locationRevenue = Arrays.copyOf(locationRevenue, grown);
+        }
+        locations[next] = location;
+        locationSlots.put(location.getLocationId(), next);
+        return next;
+    }
+    
+    private void addMonthRevenue(int month, double amount) {
+        if (monthRevenue.length == 0) {
+            firstMonth = month;
+            monthRevenue = new double[1];
+        } else if (month < firstMonth) {
+            double[] grown = new double[monthRevenue.length + (firstMonth - month)];
+            System.arraycopy(monthRevenue, 0, grown, firstMonth - month, monthRevenue.length);
+            monthRevenue = grown;
+            firstMonth = month;
+        } else if (month - firstMonth >= monthRevenue.length) {
+            monthRevenue = Arrays.copyOf(monthRevenue, month - firstMonth + 1);
+        }
+        monthRevenue[month - firstMonth] += amount;
+    }
+    
+    private static int epochMonth(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+}
\ No newline at end of file
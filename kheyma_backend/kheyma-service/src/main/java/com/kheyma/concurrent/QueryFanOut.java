@@ -0,0 +1,137 @@
+package com.kheyma.concurrent;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs independent queries of one service call in parallel, modelled on StructuredTaskScope.ShutdownOnFailure:
+// every task forked in a scope shares one deadline, the first failure cancels the rest, and closing the
+// scope cancels anything still running. Uses virtual threads when the JVM provides them (JDK 21+),
+// otherwise a bounded daemon pool. When the caller is loading a cache entry (@Cacheable with sync = true),
+// forked tasks must not load entries of the same cache: the caller holds its entry's lock while it waits.
+@Slf4j
+@Component
+public class QueryFanOut {
+    
+    private final ExecutorService executor;
+    private final Duration defaultDeadline;
+    
+    public QueryFanOut(
+            @Value("${kheyma.fanout.threads:32}") int threads,
+            @Value("${kheyma.fanout.deadline:PT5S}") Duration defaultDeadline
+    ) {
+        this.executor = newExecutor(threads);
+        this.defaultDeadline = defaultDeadline;
+    }
+    
+    public Scope open() {
+        return new Scope(defaultDeadline);
+    }
+    
+    public Scope open(Duration deadline) {
+        return new Scope(deadline);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            ExecutorService virtual = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            log.info("Query fan-out using virtual threads");
+            return virtual;
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "query-fanout-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    public final class Scope implements AutoCloseable {
+        
+        private final long deadlineNanos;
+        private final ExecutorCompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+        private final List<Future<Object>> forked = new ArrayList<>();
+        
+        private Scope(Duration deadline) {
+            this.deadlineNanos = System.nanoTime() + deadline.toNanos();
+        }
+        
+        @SuppressWarnings("unchecked")
+        public <T> Subtask<T> fork(Callable<T> task) {
+            Future<Object> future = completion.submit((Callable<Object>) task);
+            forked.add(future);
+            return new Subtask<>(future);
+        }
+        
+        // Waits for every forked task; fails fast on the first exception or when the deadline passes
+        public void join() {
+            try {
+                for (int i = 0; i < forked.size(); i++) {
+                    long remaining = deadlineNanos - System.nanoTime();
+                    Future<Object> done = completion.poll(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        throw new RuntimeException("Parallel queries did not finish before the deadline");
+                    }
+                    done.get();
+                }
+            } catch (ExecutionException e) {
+                cancelAll();
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+            } catch (InterruptedException e) {
+                cancelAll();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for parallel queries", e);
+            } catch (RuntimeException e) {
+                cancelAll();
+                throw e;
+            }
+        }
+        
+        @Override
+        public void close() {
+            cancelAll();
+        }
+        
+        private void cancelAll() {
+            forked.forEach(future -> future.cancel(true));
+        }
+    }
+    
+    public static final class Subtask<T> {
+        
+        private final Future<Object> future;
+        
+        private Subtask(Future<Object> future) {
+            this.future = future;
+        }
+        
+        // Only valid after Scope.join() returned normally
+        @SuppressWarnings("unchecked")
+        public T get() {
+            if (!future.isDone() || future.isCancelled()) {
+                throw new IllegalStateException("Subtask has not completed successfully");
+            }
+            try {
+                return (T) future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Subtask has not completed successfully", e);
+            }
+        }
+    }
+}
\ No newline at end of file
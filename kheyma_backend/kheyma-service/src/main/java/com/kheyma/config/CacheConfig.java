@@ -0,0 +1,25 @@
+package com.kheyma.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    
+    public static final String ANALYTICS_CACHE = "analytics";
+    
+    @Value("${kheyma.cache.analytics-spec:maximumSize=200,expireAfterWrite=60s,recordStats}")
+    private String analyticsSpec;
+    
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(ANALYTICS_CACHE);
+        cacheManager.setCacheSpecification(analyticsSpec);
+        return cacheManager;
+    }
+}
\ No newline at end of file
@@ -1,14 +1,52 @@
 package com.kheyma.controller;
 
+import com.kheyma.dto.AmountDistribution;
+import com.kheyma.dto.CacheStatistics;
+import com.kheyma.dto.CursorPage;
+import com.kheyma.dto.CustomerMetrics;
+import com.kheyma.dto.DashboardAnalytics;
+import com.kheyma.dto.IndexReport;
+import com.kheyma.dto.LocationCacheStatistics;
+import com.kheyma.dto.PopularLocation;
+import com.kheyma.dto.QueryPlanReport;
+import com.kheyma.dto.RevenueStatistics;
+import com.kheyma.dto.RollupReconciliationReport;
+import com.kheyma.dto.SnapshotDiff;
+import com.kheyma.dto.TransactionReport;
+import com.kheyma.dto.TransactionStatistics;
 import com.kheyma.dto.UserDTO;
+import com.kheyma.indexing.IndexManager;
+import com.kheyma.indexing.QueryPlanVerifier;
+import com.kheyma.model.AnalyticsSnapshot;
+import com.kheyma.model.PropagationJob;
+import com.kheyma.model.Transaction;
 import com.kheyma.model.User;
+import com.kheyma.pagination.Cursor;
+import com.kheyma.projection.View;
 import com.kheyma.service.AdminService;
+import com.kheyma.service.AmountDistributionService;
 import com.kheyma.service.AnalyticsService;
+import com.kheyma.service.AnalyticsSnapshotService;
+import com.kheyma.service.CacheMetricsService;
+import com.kheyma.service.CustomerSketchService;
+import com.kheyma.service.ExportService;
+import com.kheyma.service.InventoryService;
+import com.kheyma.service.LocationCacheService;
+import com.kheyma.service.LocationPropagationService;
+import com.kheyma.service.LocationService;
+import com.kheyma.service.RevenueRollupService;
+import com.kheyma.service.UserSpendingService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,11 +58,40 @@ public class AdminController {
     
     private final AdminService adminService;
     private final AnalyticsService analyticsService;
+    private final RevenueRollupService revenueRollupService;
+    private final CacheMetricsService cacheMetricsService;
+    private final CustomerSketchService customerSketchService;
+    private final AnalyticsSnapshotService analyticsSnapshotService;
+    private final AmountDistributionService amountDistributionService;
+    private final ExportService exportService;
+    private final IndexManager indexManager;
+    private final QueryPlanVerifier queryPlanVerifier;
+    private final UserSpendingService userSpendingService;
+    private final InventoryService inventoryService;
+    private final LocationService locationService;
+    private final LocationCacheService locationCacheService;
+    private final LocationPropagationService locationPropagationService;
     
     // User Management
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        return ResponseEntity.ok(adminService.getAllUsers());
+    public ResponseEntity<CursorPage<?>> getAllUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + Cursor.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(defaultValue = "full") String view
+    ) {
+        return ResponseEntity.ok(adminService.getAllUsers(cursor, size, View.from(view)));
+    }
+    
+    // Streams every user as NDJSON or CSV, without password hashes; gzip=true compresses on the fly
+    @GetMapping("/users/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        ExportService.Format exportFormat = ExportService.Format.from(format);
+        return ResponseEntity.ok()
+                .headers(ExportService.headersFor(exportFormat, gzip, "users"))
+                .body(ExportService.compressed(gzip, out -> exportService.exportUsers(exportFormat, out)));
     }
     
     @GetMapping("/users/{id}")
@@ -63,22 +130,161 @@ public class AdminController {
     
     // Analytics
     @GetMapping("/analytics/dashboard")
-    public ResponseEntity<Map<String, Object>> getDashboardAnalytics() {
+    public ResponseEntity<DashboardAnalytics> getDashboardAnalytics() {
         return ResponseEntity.ok(analyticsService.getDashboardAnalytics());
     }
     
     @GetMapping("/analytics/transactions/stats")
-    public ResponseEntity<Map<String, Object>> getTransactionStatistics() {
+    public ResponseEntity<TransactionStatistics> getTransactionStatistics() {
         return ResponseEntity.ok(analyticsService.getTransactionStatistics());
     }
     
     @GetMapping("/analytics/revenue")
-    public ResponseEntity<Map<String, Object>> getRevenueStatistics() {
+    public ResponseEntity<RevenueStatistics> getRevenueStatistics() {
         return ResponseEntity.ok(analyticsService.getRevenueStatistics());
     }
     
     @GetMapping("/analytics/popular-locations")
-    public ResponseEntity<List<Map<String, Object>>> getPopularLocations() {
+    public ResponseEntity<List<PopularLocation>> getPopularLocations() {
         return ResponseEntity.ok(analyticsService.getPopularLocations());
     }
+    
+    @GetMapping("/analytics/report")
+    public ResponseEntity<TransactionReport> getTransactionReport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String locationId
+    ) {
+        return ResponseEntity.ok(analyticsService.getTransactionReport(startDate, endDate, locationId));
+    }
+    
+    @GetMapping("/analytics/amount-distribution")
+    public ResponseEntity<AmountDistribution> getAmountDistribution(
+            @RequestParam(required = false) Transaction.PackageType packageType,
+            @RequestParam(required = false) String locationId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @RequestParam(defaultValue = "0.5,0.9,0.99") List<Double> quantiles
+    ) {
+        return ResponseEntity.ok(amountDistributionService.getDistribution(packageType, locationId, from, to, quantiles));
+    }
+    
+    @PostMapping("/analytics/amount-distribution/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildAmountHistograms() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("histogramsWritten", amountDistributionService.rebuild());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/analytics/customers")
+    public ResponseEntity<CustomerMetrics> getCustomerMetrics(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+    ) {
+        return ResponseEntity.ok(customerSketchService.getCustomerMetrics(startDate, endDate));
+    }
+    
+    @GetMapping("/analytics/customers/by-location/{locationId}")
+    public ResponseEntity<CustomerMetrics> getLocationCustomerMetrics(@PathVariable String locationId) {
+        return ResponseEntity.ok(customerSketchService.getLocationCustomerMetrics(locationId));
+    }
+    
+    @PostMapping("/analytics/customers/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildCustomerSketches() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("sketchesWritten", customerSketchService.rebuild());
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/analytics/spending/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSpendingSummaries() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("summariesWritten", userSpendingService.rebuild());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/analytics/snapshots/latest")
+    public ResponseEntity<AnalyticsSnapshot> getLatestSnapshot() {
+        return analyticsSnapshotService.getLatestSnapshot()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.noContent().build());
+    }
+    
+    @GetMapping("/analytics/snapshots/{version}")
+    public ResponseEntity<AnalyticsSnapshot> getSnapshot(@PathVariable long version) {
+        return ResponseEntity.ok(analyticsSnapshotService.getSnapshot(version));
+    }
+    
+    @GetMapping("/analytics/snapshots/diff")
+    public ResponseEntity<SnapshotDiff> diffSnapshots(
+            @RequestParam(required = false) Long fromVersion,
+            @RequestParam(required = false) Long toVersion,
+            @RequestParam(defaultValue = "7") int days
+    ) {
+        if (fromVersion != null && toVersion != null) {
+            return ResponseEntity.ok(analyticsSnapshotService.diff(fromVersion, toVersion));
+        }
+        return ResponseEntity.ok(analyticsSnapshotService.diffOverPeriod(Duration.ofDays(days)));
+    }
+    
+    @PostMapping("/analytics/snapshots")
+    public ResponseEntity<AnalyticsSnapshot> materializeSnapshot() {
+        return ResponseEntity.ok(analyticsSnapshotService.materialize());
+    }
+    
+    @PostMapping("/analytics/rollups/reconcile")
+    public ResponseEntity<RollupReconciliationReport> reconcileRollups(
+            @RequestParam(defaultValue = "false") boolean repair
+    ) {
+        return ResponseEntity.ok(revenueRollupService.reconcile(repair));
+    }
+    
+    @PostMapping("/inventory/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildInventory() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("seasonsWritten", inventoryService.rebuild());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/locations/propagation-jobs")
+    public ResponseEntity<List<PropagationJob>> getPropagationJobs() {
+        return ResponseEntity.ok(locationPropagationService.getJobs());
+    }
+    
+    @GetMapping("/locations/{locationId}/propagation")
+    public ResponseEntity<PropagationJob> getPropagationJob(@PathVariable String locationId) {
+        return ResponseEntity.ok(locationPropagationService.getJob(locationId));
+    }
+    
+    @PostMapping("/locations/{locationId}/propagation/retry")
+    public ResponseEntity<PropagationJob> retryPropagationJob(@PathVariable String locationId) {
+        return ResponseEntity.ok(locationPropagationService.retry(locationId));
+    }
+    
+    @PostMapping("/locations/backfill-positions")
+    public ResponseEntity<Map<String, Object>> backfillLocationPositions() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("locationsUpdated", locationService.backfillPositions());
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/indexes/sync")
+    public ResponseEntity<IndexReport> syncIndexes() {
+        return ResponseEntity.ok(indexManager.ensureIndexes());
+    }
+    
+    @GetMapping("/indexes/verify")
+    public ResponseEntity<QueryPlanReport> verifyQueryPlans() {
+        return ResponseEntity.ok(queryPlanVerifier.verify());
+    }
+    
+    @GetMapping("/cache/stats")
+    public ResponseEntity<List<CacheStatistics>> getCacheStatistics() {
+        return ResponseEntity.ok(cacheMetricsService.getCacheStatistics());
+    }
+    
+    @GetMapping("/cache/locations")
+    public ResponseEntity<LocationCacheStatistics> getLocationCacheStatistics() {
+        return ResponseEntity.ok(locationCacheService.getStatistics());
+    }
 }
\ No newline at end of file
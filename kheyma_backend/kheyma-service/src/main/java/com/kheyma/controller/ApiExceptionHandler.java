@@ -0,0 +1,30 @@
+package com.kheyma.controller;
+
+import com.kheyma.pagination.InvalidCursorException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+// Invalid client input (malformed cursors, bad page sizes, rejected request bodies) answers 400 with the reason,
+// in the { message } shape the frontend already reads. Only exceptions whose messages are written for clients
+// are mapped here.
+@RestControllerAdvice
+public class ApiExceptionHandler {
+    
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> invalidCursor(InvalidCursorException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", String.valueOf(e.getMessage())));
+    }
+    
+    // @Valid request bodies; reports the first rejected field
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<Map<String, String>> invalidBody(MethodArgumentNotValidException e) {
+        FieldError error = e.getBindingResult().getFieldError();
+        String message = error != null ? error.getDefaultMessage() : "Invalid request";
+        return ResponseEntity.badRequest().body(Map.of("message", String.valueOf(message)));
+    }
+}
\ No newline at end of file
@@ -1,15 +1,31 @@
 package com.kheyma.controller;
 
+import com.kheyma.dto.Availability;
+import com.kheyma.dto.CursorPage;
 import com.kheyma.dto.LocationDTO;
+import com.kheyma.dto.LocationSuggestion;
+import com.kheyma.dto.MapCluster;
+import com.kheyma.dto.NearbyLocation;
+import com.kheyma.dto.NearbyPage;
 import com.kheyma.model.Location;
+import com.kheyma.pagination.Cursor;
+import com.kheyma.service.CatalogVersionService;
+import com.kheyma.service.ClusterService;
+import com.kheyma.service.InventoryService;
 import com.kheyma.service.LocationService;
+import com.kheyma.service.SuggestService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/locations")
@@ -17,16 +33,73 @@ import java.util.List;
 public class LocationController {
     
     private final LocationService locationService;
+    private final InventoryService inventoryService;
+    private final ClusterService clusterService;
+    private final SuggestService suggestService;
+    private final CatalogVersionService catalogVersionService;
     
     // Public endpoints
     @GetMapping("/public/all")
-    public ResponseEntity<List<Location>> getAllLocations() {
-        return ResponseEntity.ok(locationService.getAllLocations());
+    public ResponseEntity<List<Location>> getAllLocations(WebRequest request) {
+        return conditional(request, locationService::getAllLocations);
     }
     
     @GetMapping("/public/{id}")
-    public ResponseEntity<Location> getLocationById(@PathVariable String id) {
-        return ResponseEntity.ok(locationService.getLocationById(id));
+    public ResponseEntity<Location> getLocationById(@PathVariable String id, WebRequest request) {
+        return conditional(request, () -> locationService.getLocationById(id));
+    }
+    
+    @GetMapping("/public/{id}/availability")
+    public ResponseEntity<Availability> getAvailability(
+            @PathVariable String id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return ResponseEntity.ok(inventoryService.getAvailability(id, from, to));
+    }
+    
+    @GetMapping("/public/nearby")
+    public ResponseEntity<NearbyPage> getNearbyLocations(
+            @RequestParam double lat,
+            @RequestParam double lng,
+            @RequestParam(defaultValue = "25") double radiusKm,
+            @RequestParam(required = false) Location.LocationType type,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "" + Cursor.DEFAULT_PAGE_SIZE) int size
+    ) {
+        return ResponseEntity.ok(locationService.findNearby(lat, lng, radiusKm, type, page, size));
+    }
+    
+    @GetMapping("/public/nearest")
+    public ResponseEntity<List<NearbyLocation>> getNearestLocations(
+            @RequestParam double lat,
+            @RequestParam double lng,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(required = false) Location.LocationType type
+    ) {
+        return ResponseEntity.ok(locationService.findNearest(lat, lng, k, type));
+    }
+    
+    @GetMapping("/public/within")
+    public ResponseEntity<CursorPage<Location>> getLocationsWithin(
+            @RequestParam String bbox,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + Cursor.DEFAULT_PAGE_SIZE) int size
+    ) {
+        return ResponseEntity.ok(locationService.findWithin(bbox, cursor, size));
+    }
+    
+    @GetMapping("/public/clusters")
+    public ResponseEntity<List<MapCluster>> getClusters(@RequestParam int zoom, @RequestParam String bbox) {
+        return ResponseEntity.ok(clusterService.getClusters(zoom, bbox));
+    }
+    
+    @GetMapping("/public/suggest")
+    public ResponseEntity<List<LocationSuggestion>> suggestLocations(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit
+    ) {
+        return ResponseEntity.ok(suggestService.suggest(q, limit));
     }
     
     @GetMapping("/public/search")
@@ -35,8 +108,11 @@ public class LocationController {
     }
     
     @GetMapping("/public/type/{type}")
-    public ResponseEntity<List<Location>> getLocationsByType(@PathVariable Location.LocationType type) {
-        return ResponseEntity.ok(locationService.getLocationsByType(type));
+    public ResponseEntity<List<Location>> getLocationsByType(
+            @PathVariable Location.LocationType type,
+            WebRequest request
+    ) {
+        return conditional(request, () -> locationService.getLocationsByType(type));
     }
     
     // Admin endpoints
@@ -61,4 +137,19 @@ public class LocationController {
         locationService.deleteLocation(id);
         return ResponseEntity.noContent().build();
     }
+    
+    // Answers 304 from the in-memory catalog version before anything is loaded or serialized. The version
+    // is read first and writes invalidate caches before bumping it; cached bodies older than the version
+    // this instance knows are reloaded. So the tag can only be older than the body, never newer.
+    private <T> ResponseEntity<T> conditional(WebRequest request, Supplier<T> body) {
+        CatalogVersionService.Version version = catalogVersionService.current();
+        if (request.checkNotModified(version.etag(), version.modifiedAt())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(version.etag())
+                .lastModified(version.modifiedAt())
+                .body(body.get());
+    }
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package com.kheyma.controller;
 
+import com.kheyma.dto.CursorPage;
 import com.kheyma.dto.ReviewDTO;
 import com.kheyma.model.Review;
+import com.kheyma.pagination.Cursor;
 import com.kheyma.service.ReviewService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -30,8 +32,12 @@ public class ReviewController {
     }
     
     @GetMapping("/campsite/{campsiteId}")
-    public ResponseEntity<List<Review>> getReviewsByCampsite(@PathVariable String campsiteId) {
-        return ResponseEntity.ok(reviewService.getReviewsByCampsite(campsiteId));
+    public ResponseEntity<CursorPage<Review>> getReviewsByCampsite(
+            @PathVariable String campsiteId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + Cursor.DEFAULT_PAGE_SIZE) int size
+    ) {
+        return ResponseEntity.ok(reviewService.getReviewsByCampsite(campsiteId, cursor, size));
     }
     
     @GetMapping("/my-reviews")
@@ -1,20 +1,34 @@
 package com.kheyma.controller;
 
+import com.kheyma.dto.BookingHandle;
+import com.kheyma.dto.BulkTransactionRequest;
+import com.kheyma.dto.BulkTransactionResult;
+import com.kheyma.dto.CursorPage;
 import com.kheyma.dto.TransactionDTO;
 import com.kheyma.model.Transaction;
+import com.kheyma.model.UserSpendingSummary;
+import com.kheyma.pagination.Cursor;
+import com.kheyma.projection.View;
+import com.kheyma.service.AsyncBookingService;
+import com.kheyma.service.ExportService;
 import com.kheyma.service.TransactionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -22,6 +36,8 @@ import java.util.Map;
 public class TransactionController {
     
     private final TransactionService transactionService;
+    private final ExportService exportService;
+    private final AsyncBookingService asyncBookingService;
     
     @PostMapping
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
@@ -33,6 +49,49 @@ public class TransactionController {
         return ResponseEntity.ok(transactionService.createTransaction(transactionDTO, userEmail));
     }
     
+    @PostMapping("/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkTransactionResult> createTransactions(
+            @Valid @RequestBody BulkTransactionRequest request
+    ) {
+        return ResponseEntity.ok(transactionService.createTransactions(request.getItems()));
+    }
+    
+    // Write-behind mode: answers 202 with a handle to poll; a repeated Idempotency-Key returns the original handle
+    @PostMapping("/async")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<BookingHandle> submitTransaction(
+            @Valid @RequestBody TransactionDTO transactionDTO,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            Authentication authentication
+    ) {
+        try {
+            BookingHandle handle = asyncBookingService.submit(transactionDTO, authentication.getName(), idempotencyKey);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/transactions/async/" + handle.getHandle()))
+                    .body(handle);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.unprocessableEntity().build();
+        }
+    }
+    
+    @GetMapping("/async/{handle}")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<BookingHandle> getSubmissionStatus(
+            @PathVariable String handle,
+            Authentication authentication
+    ) {
+        boolean admin = authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+        return asyncBookingService.getStatus(handle, authentication.getName(), admin)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
     @GetMapping("/my-transactions")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<List<Transaction>> getMyTransactions(Authentication authentication) {
@@ -50,35 +109,69 @@ public class TransactionController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<Map<String, Object>> getMyTotalSpent(Authentication authentication) {
         String userEmail = authentication.getName();
-        Double total = transactionService.getTotalRevenueByUser(userEmail);
+        UserSpendingSummary summary = transactionService.getSpendingSummary(userEmail);
         
         Map<String, Object> response = new HashMap<>();
         response.put("userEmail", userEmail);
-        response.put("totalSpent", total);
+        response.put("totalSpent", summary.getTotalSpent());
+        response.put("bookingCount", summary.getBookingCount());
+        response.put("lastBookingDate", summary.getLastBookingDate());
+        response.put("favouriteLocationId", summary.getFavouriteLocationId());
         
         return ResponseEntity.ok(response);
     }
     
-    // Admin endpoints
+    // Admin endpoints - keyset paginated, newest first; pass the returned nextCursor to get the next page.
+    // view=summary fetches and returns only the fields list screens show.
     @GetMapping("/admin/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Transaction>> getAllTransactions() {
-        return ResponseEntity.ok(transactionService.getAllTransactions());
+    public ResponseEntity<CursorPage<?>> getAllTransactions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + Cursor.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(defaultValue = "full") String view
+    ) {
+        return ResponseEntity.ok(transactionService.getAllTransactions(cursor, size, View.from(view)));
     }
     
     @GetMapping("/admin/by-date-range")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Transaction>> getTransactionsByDateRange(
+    public ResponseEntity<CursorPage<?>> getTransactionsByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + Cursor.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(defaultValue = "full") String view
     ) {
-        return ResponseEntity.ok(transactionService.getTransactionsByDateRange(startDate, endDate));
+        return ResponseEntity.ok(transactionService.getTransactionsByDateRange(
+                startDate, endDate, cursor, size, View.from(view)));
     }
     
     @GetMapping("/admin/by-location/{locationId}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Transaction>> getTransactionsByLocation(@PathVariable String locationId) {
-        return ResponseEntity.ok(transactionService.getTransactionsByLocation(locationId));
+    public ResponseEntity<CursorPage<?>> getTransactionsByLocation(
+            @PathVariable String locationId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + Cursor.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(defaultValue = "full") String view
+    ) {
+        return ResponseEntity.ok(transactionService.getTransactionsByLocation(locationId, cursor, size, View.from(view)));
+    }
+    
+    // Streams every matching transaction as NDJSON or CSV; gzip=true compresses on the fly
+    @GetMapping("/admin/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String locationId,
+            @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        ExportService.Format exportFormat = ExportService.Format.from(format);
+        return ResponseEntity.ok()
+                .headers(ExportService.headersFor(exportFormat, gzip, "transactions"))
+                .body(ExportService.compressed(gzip, out ->
+                        exportService.exportTransactions(exportFormat, startDate, endDate, locationId, out)));
     }
     
     @GetMapping("/admin/revenue")
@@ -0,0 +1,36 @@
+package com.kheyma.dto;
+
+import com.kheyma.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AmountDistribution {
+    private Transaction.PackageType packageType;
+    private String locationId;
+    private String fromMonth;
+    private String toMonth;
+    private long count;
+    private Double mean;
+    private Double min;
+    private Double max;
+    private Map<String, Double> quantiles; // "p50" -> amount
+    private double relativeAccuracy;
+    private List<Bin> histogram = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bin {
+        private double lowerBound; // Exclusive
+        private double upperBound; // Inclusive
+        private long count;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Availability {
+    private String locationId;
+    private Integer capacity; // Null when the location is not capacity-limited
+    private LocalDate from;
+    private LocalDate to;
+    private List<Night> nights = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Night {
+        private LocalDate date;
+        private int reserved;
+        private Integer available; // Null when not capacity-limited
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.kheyma.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingHandle {
+    private String handle;
+    private Status status;
+    private LocalDateTime acceptedAt;
+    private LocalDateTime completedAt;
+    private String transactionId; // Set once COMPLETED, and while UNKNOWN
+    private Integer transId;
+    private String error; // Set once FAILED
+    
+    @JsonIgnore
+    private String userEmail;
+    
+    @JsonIgnore
+    private TransactionDTO request; // Lets a reused Idempotency-Key be checked against the original request
+    
+    public enum Status {
+        QUEUED,
+        COMPLETED,
+        FAILED,
+        UNKNOWN // The batch failed after it may have written this booking; resolved on the next poll
+    }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.kheyma.dto;
+
+import com.kheyma.model.Transaction;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransactionRequest {
+    // Items are validated one by one so a bad row is reported instead of failing the whole batch
+    @NotEmpty(message = "At least one item is required")
+    @Size(max = 1000, message = "A batch can hold at most 1000 items")
+    private List<Item> items;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String userEmail;
+        private String locationId;
+        private Double amount;
+        private Transaction.PackageType packageType;
+        private LocalDate date;
+    }
+}
\ No newline at end of file
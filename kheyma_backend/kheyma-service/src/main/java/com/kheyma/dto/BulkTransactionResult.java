@@ -0,0 +1,35 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransactionResult {
+    private int received;
+    private int created;
+    private int failed; // Rejected plus failed writes
+    private List<ItemResult> items = new ArrayList<>(); // Same order as the request
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private int index;
+        private Status status;
+        private String id;
+        private Integer transId;
+        private String error;
+    }
+    
+    public enum Status {
+        CREATED,
+        REJECTED, // Failed validation, nothing written
+        FAILED    // Valid, but the database rejected the write
+    }
+}
\ No newline at end of file
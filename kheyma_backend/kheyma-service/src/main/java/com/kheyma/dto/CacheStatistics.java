@@ -0,0 +1,21 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatistics {
+    private String cacheName;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long loadSuccessCount;
+    private long loadFailureCount;
+    private double averageLoadMillis;
+    private double totalLoadMillis;
+    private long evictionCount;
+}
\ No newline at end of file
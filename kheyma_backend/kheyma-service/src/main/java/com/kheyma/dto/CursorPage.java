@@ -0,0 +1,32 @@
+package com.kheyma.dto;
+
+import com.kheyma.pagination.Cursor;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor; // Null on the last page
+    
+    // `fetched` holds up to size + 1 items; the extra one only signals that another page exists
+    public static <T> CursorPage<T> of(List<T> fetched, int size, Function<T, String> idOf) {
+        return of(fetched, size, item -> "", idOf);
+    }
+    
+    public static <T> CursorPage<T> of(List<T> fetched, int size, Function<T, String> keyOf, Function<T, String> idOf) {
+        if (fetched.size() <= size) {
+            return new CursorPage<>(fetched, null);
+        }
+        List<T> items = new ArrayList<>(fetched.subList(0, size));
+        T last = items.get(size - 1);
+        return new CursorPage<>(items, Cursor.encode(keyOf.apply(last), idOf.apply(last)));
+    }
+}
\ No newline at end of file
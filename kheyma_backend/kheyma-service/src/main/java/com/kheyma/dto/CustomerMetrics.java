@@ -0,0 +1,20 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerMetrics {
+    private LocalDate startDate; // Null for all-time location metrics
+    private LocalDate endDate;
+    private String locationId;
+    private long bookings;
+    private long uniqueCustomers; // HyperLogLog estimate
+    private double repeatBookingRate; // Share of bookings made by a customer who had already booked in scope
+    private double relativeStandardError; // Of uniqueCustomers
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardAnalytics {
+    private long totalUsers;
+    private long totalLocations;
+    private long totalTransactions;
+    private long totalReviews;
+    private double totalRevenue;
+    private double monthlyRevenue;
+    private long monthlyTransactions;
+    private long monthlyUniqueCustomers; // HyperLogLog estimate
+    private double monthlyRepeatBookingRate;
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexReport {
+    private LocalDateTime checkedAt;
+    private List<Entry> indexes = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private String collection;
+        private String name;
+        private String keys;
+        private Status status;
+        private String message;
+    }
+    
+    public enum Status {
+        UNCHANGED,
+        CREATED,
+        RECREATED, // Same name, different definition: rebuilt as "<name>_rebuilt", then the old one dropped
+        CONFLICT,  // Same as RECREATED, but recreation is disabled
+        FAILED     // e.g. a unique index over existing duplicates
+    }
+}
\ No newline at end of file
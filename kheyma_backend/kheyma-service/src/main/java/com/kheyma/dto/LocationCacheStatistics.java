@@ -0,0 +1,29 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationCacheStatistics {
+    private Mode mode;
+    private long ttlMillis; // Current expire-after-write of both caches
+    private CacheStatistics byId;
+    private CacheStatistics byType;
+    private long changeEvents; // Change stream events applied since startup
+    private long streamFailures;
+    private LocalDateTime lastChangeAt;
+    private long lastInvalidationLagMillis; // From the write's commit to its invalidation here
+    private long maxInvalidationLagMillis;
+    private double averageInvalidationLagMillis;
+    private long stalenessBoundMillis; // Worst case for a cached read: max lag with a live stream, the TTL without
+    
+    public enum Mode {
+        CHANGE_STREAM,
+        TTL_FALLBACK
+    }
+}
\ No newline at end of file
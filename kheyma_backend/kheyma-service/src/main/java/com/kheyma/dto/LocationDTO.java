@@ -1,8 +1,11 @@
 package com.kheyma.dto;
 
 import com.kheyma.model.Location;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,12 +17,20 @@ public class LocationDTO {
     @NotBlank(message = "Name is required")
     private String name;
     
+    // Out-of-range coordinates would only fail later, as a 2dsphere index error on save
     @NotNull(message = "Latitude is required")
+    @DecimalMin(value = "-90", message = "Latitude must be between -90 and 90")
+    @DecimalMax(value = "90", message = "Latitude must be between -90 and 90")
     private Double latitude;
     
     @NotNull(message = "Longitude is required")
+    @DecimalMin(value = "-180", message = "Longitude must be between -180 and 180")
+    @DecimalMax(value = "180", message = "Longitude must be between -180 and 180")
     private Double longitude;
     
     private String description;
     private Location.LocationType type;
+    
+    @PositiveOrZero(message = "Capacity cannot be negative")
+    private Integer capacity;
 }
\ No newline at end of file
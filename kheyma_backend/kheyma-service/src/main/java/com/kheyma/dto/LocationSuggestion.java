@@ -0,0 +1,17 @@
+package com.kheyma.dto;
+
+import com.kheyma.model.Location;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationSuggestion {
+    private String id;
+    private String name;
+    private Location.LocationType type;
+    private Double latitude;
+    private Double longitude;
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MapCluster {
+    private double latitude; // Count-weighted centroid for clusters
+    private double longitude;
+    private int count;
+    private Map<String, Integer> types; // Locations per LocationType; UNSPECIFIED when a location has none
+    private String locationId; // Only for a single location
+    private String name; // Only for a single location
+    private Integer expansionZoom; // Zoom at which a cluster splits; null for a single location
+}
\ No newline at end of file
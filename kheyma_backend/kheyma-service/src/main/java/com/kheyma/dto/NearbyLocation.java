@@ -0,0 +1,16 @@
+package com.kheyma.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.kheyma.model.Location;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyLocation {
+    @JsonUnwrapped
+    private Location location;
+    private double distanceKm;
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Offset pages: results are ordered by distance, which is not a stored key a cursor could resume from
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyPage {
+    private List<NearbyLocation> items;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
\ No newline at end of file
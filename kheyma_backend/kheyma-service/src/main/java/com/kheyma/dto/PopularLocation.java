@@ -0,0 +1,17 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PopularLocation {
+    private String locationId;
+    private String name;
+    private Double latitude;
+    private Double longitude;
+    private long transactionCount;
+    private double revenue;
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryPlanReport {
+    private LocalDateTime checkedAt;
+    private boolean passed;
+    private List<Plan> queries = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Plan {
+        private String query; // Repository method the plan stands for
+        private String collection;
+        private List<String> stages; // Every stage of the winning plan, outermost first
+        private boolean collectionScan;
+        private boolean inMemorySort;
+        private boolean passed;
+        private String note;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueBreakdown {
+    private Bucket total = new Bucket();
+    private List<Bucket> byPackage = new ArrayList<>();
+    private List<Bucket> byLocation = new ArrayList<>();
+    private List<Bucket> byDay = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+        private String key;
+        private long count;
+        private double revenue;
+        private String name; // Location buckets only
+        private Double latitude;
+        private Double longitude;
+    }
+}
\ No newline at end of file
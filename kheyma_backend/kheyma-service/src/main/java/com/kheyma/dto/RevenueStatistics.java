@@ -0,0 +1,16 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueStatistics {
+    private double totalRevenue;
+    private double averageTransactionAmount;
+    private Map<String, Double> revenueByMonth; // "yyyy-MM" -> revenue, last 6 months
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupReconciliationReport {
+    private LocalDateTime checkedAt;
+    private long transactionsScanned;
+    private int rollupsChecked;
+    private int rollupsSkipped; // Written to since the watermark; left for the next run
+    private boolean repaired;
+    private List<Drift> drifts = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Drift {
+        private String rollupId;
+        private long expectedCount;
+        private long actualCount;
+        private double expectedRevenue;
+        private double actualRevenue;
+    }
+}
\ No newline at end of file
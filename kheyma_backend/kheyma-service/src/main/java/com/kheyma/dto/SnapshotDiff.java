@@ -0,0 +1,35 @@
+package com.kheyma.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotDiff {
+    private long fromVersion;
+    private long toVersion;
+    private LocalDateTime fromGeneratedAt;
+    private LocalDateTime toGeneratedAt;
+    private long transactionCountDelta;
+    private double totalRevenueDelta;
+    private double averageTransactionAmountDelta;
+    private Map<String, Double> revenueByMonthDelta;
+    private List<LocationDelta> locations = new ArrayList<>(); // Locations whose totals changed, largest revenue change first
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LocationDelta {
+        private String locationId;
+        private String name;
+        private long transactionCountDelta;
+        private double revenueDelta;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.kheyma.dto;
+
+import com.kheyma.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionReport {
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private String locationId; // Optional filter
+    private long transactionCount;
+    private double totalRevenue;
+    private double averageTransactionAmount;
+    private Double minAmount;
+    private Double maxAmount;
+    private Map<Transaction.PackageType, Long> transactionsByPackage;
+    private Map<Transaction.PackageType, Double> revenueByPackage;
+    private Map<String, Double> revenueByMonth;
+    private int locationCount; // Distinct locations in range; only the busiest are listed below
+    private List<LocationTotals> locations = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LocationTotals {
+        private String locationId;
+        private String name;
+        private Double latitude;
+        private Double longitude;
+        private long transactionCount;
+        private double revenue;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.kheyma.dto;
+
+import com.kheyma.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionStatistics {
+    private Map<Transaction.PackageType, Long> transactionsByPackage;
+    private Map<String, Long> transactionsByLocation; // Keyed by location name
+    private Map<Transaction.PackageType, Double> revenueByPackage;
+}
\ No newline at end of file
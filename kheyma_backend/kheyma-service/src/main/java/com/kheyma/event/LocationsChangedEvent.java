@@ -0,0 +1,34 @@
+package com.kheyma.event;
+
+import com.kheyma.model.Location;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Published after a location is written so in-memory views of the catalogue can follow. RELOADED means
+// changes may have been missed (e.g. a change stream gap) and views should reload everything.
+@Data
+@AllArgsConstructor
+public class LocationsChangedEvent {
+    
+    private Type type;
+    private String locationId;
+    private Location location; // Null when deleted or reloaded
+    
+    public static LocationsChangedEvent upserted(Location location) {
+        return new LocationsChangedEvent(Type.UPSERTED, location.getId(), location);
+    }
+    
+    public static LocationsChangedEvent deleted(String locationId) {
+        return new LocationsChangedEvent(Type.DELETED, locationId, null);
+    }
+    
+    public static LocationsChangedEvent reloaded() {
+        return new LocationsChangedEvent(Type.RELOADED, null, null);
+    }
+    
+    public enum Type {
+        UPSERTED,
+        DELETED,
+        RELOADED
+    }
+}
\ No newline at end of file
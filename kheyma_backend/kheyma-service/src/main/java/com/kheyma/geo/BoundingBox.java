@@ -0,0 +1,29 @@
+package com.kheyma.geo;
+
+// A map viewport given as minLng,minLat,maxLng,maxLat; boxes crossing the antimeridian are not supported
+public record BoundingBox(double minLng, double minLat, double maxLng, double maxLat) {
+    
+    private static final String FORMAT_MESSAGE = "bbox must be minLng,minLat,maxLng,maxLat";
+    
+    public BoundingBox {
+        if (Math.abs(minLat) > 90 || Math.abs(maxLat) > 90 || Math.abs(minLng) > 180 || Math.abs(maxLng) > 180) {
+            throw new IllegalArgumentException("Coordinates out of range");
+        }
+        if (minLng >= maxLng || minLat >= maxLat) {
+            throw new IllegalArgumentException("bbox minimums must be below its maximums");
+        }
+    }
+    
+    public static BoundingBox parse(String bbox) {
+        String[] parts = bbox != null ? bbox.split(",") : new String[0];
+        if (parts.length != 4) {
+            throw new IllegalArgumentException(FORMAT_MESSAGE);
+        }
+        try {
+            return new BoundingBox(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()),
+                    Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(FORMAT_MESSAGE);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.kheyma.geo;
+
+import com.kheyma.model.Location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hierarchical greedy clustering in Web Mercator space, after supercluster: each zoom level clusters the
+// level above it, merging every point within `radius` screen pixels of an unclaimed seed into one
+// weighted centroid. Every level is precomputed, so a viewport query is a range scan of one sorted level.
+public final class ClusterIndex {
+    
+    // Index of the "no type" slot in type counts
+    public static final int UNTYPED = Location.LocationType.values().length;
+    
+    private static final int EXTENT = 512;
+    
+    private final int maxZoom;
+    private final List<Point[]> levels; // levels.get(z) for z in 0..maxZoom + 1; the last holds single locations
+    
+    private ClusterIndex(int maxZoom, List<Point[]> levels) {
+        this.maxZoom = maxZoom;
+        this.levels = levels;
+    }
+    
+    public static ClusterIndex of(Collection<Location> locations, int maxZoom, double radiusPixels) {
+        if (maxZoom < 0 || maxZoom > 24) {
+            throw new IllegalArgumentException("Max zoom must be between 0 and 24");
+        }
+        List<Point> leaves = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            if (location.getLatitude() != null && location.getLongitude() != null) {
+                int[] types = new int[UNTYPED + 1];
+                types[location.getType() != null ? location.getType().ordinal() : UNTYPED] = 1;
+                leaves.add(new Point(projectX(location.getLongitude()), projectY(location.getLatitude()),
+                        1, types, location, maxZoom + 1));
+            }
+        }
+        
+        Point[][] byZoom = new Point[maxZoom + 2][];
+        byZoom[maxZoom + 1] = sortedByX(leaves);
+        List<Point> current = leaves;
+        for (int zoom = maxZoom; zoom >= 0; zoom--) {
+            current = clusterLevel(current, radiusPixels / (EXTENT * Math.pow(2, zoom)), zoom);
+            byZoom[zoom] = sortedByX(current);
+        }
+        return new ClusterIndex(maxZoom, List.of(byZoom));
+    }
+    
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+    
+    // Clusters and single locations of one zoom level whose centre lies inside the box
+    public List<Point> query(int zoom, BoundingBox box) {
+        Point[] level = levels.get(Math.max(0, Math.min(zoom, maxZoom + 1)));
+        double minX = projectX(box.minLng()), maxX = projectX(box.maxLng());
+        double minY = projectY(box.maxLat()), maxY = projectY(box.minLat());
+        
+        int low = 0, high = level.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (level[mid].x() < minX) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<Point> found = new ArrayList<>();
+        for (int i = low; i < level.length && level[i].x() <= maxX; i++) {
+            if (level[i].y() >= minY && level[i].y() <= maxY) {
+                found.add(level[i]);
+            }
+        }
+        return found;
+    }
+    
+    // Buckets the level into radius-sized cells, so each seed only inspects the 3x3 cells around it
+    private static List<Point> clusterLevel(List<Point> points, double radius, int zoom) {
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        long side = (long) Math.ceil(1 / radius) + 1;
+        for (int i = 0; i < points.size(); i++) {
+            cells.computeIfAbsent(cellOf(points.get(i), radius, side), key -> new ArrayList<>()).add(i);
+        }
+        
+        boolean[] claimed = new boolean[points.size()];
+        List<Point> clustered = new ArrayList<>();
+        double radiusSquared = radius * radius;
+        for (int i = 0; i < points.size(); i++) {
+            if (claimed[i]) {
+                continue;
+            }
+            claimed[i] = true;
+            Point seed = points.get(i);
+            double weightedX = seed.x() * seed.count(), weightedY = seed.y() * seed.count();
+            int count = seed.count();
+            int[] types = seed.types().clone();
+            
+            long cellX = (long) Math.floor(seed.x() / radius), cellY = (long) Math.floor(seed.y() / radius);
+            for (long dx = -1; dx <= 1; dx++) {
+                for (long dy = -1; dy <= 1; dy++) {
+                    List<Integer> members = cells.get((cellY + dy) * side + (cellX + dx));
+                    if (members == null) {
+                        continue;
+                    }
+                    for (int j : members) {
+                        Point neighbour = points.get(j);
+                        double ddx = neighbour.x() - seed.x(), ddy = neighbour.y() - seed.y();
+                        if (claimed[j] || ddx * ddx + ddy * ddy > radiusSquared) {
+                            continue;
+                        }
+                        claimed[j] = true;
+                        weightedX += neighbour.x() * neighbour.count();
+                        weightedY += neighbour.y() * neighbour.count();
+                        count += neighbour.count();
+                        for (int t = 0; t < types.length; t++) {
+                            types[t] += neighbour.types()[t];
+                        }
+                    }
+                }
+            }
+            
+            // A seed with no neighbours is carried down unchanged and keeps the zoom it splits at
+            clustered.add(count == seed.count()
+                    ? seed
+                    : new Point(weightedX / count, weightedY / count, count, types, null, zoom + 1));
+        }
+        return clustered;
+    }
+    
+    private static long cellOf(Point point, double radius, long side) {
+        return (long) Math.floor(point.y() / radius) * side + (long) Math.floor(point.x() / radius);
+    }
+    
+    private static Point[] sortedByX(List<Point> points) {
+        Point[] sorted = points.toArray(new Point[0]);
+        Arrays.sort(sorted, Comparator.comparingDouble(Point::x));
+        return sorted;
+    }
+    
+    private static double projectX(double lng) {
+        return lng / 360 + 0.5;
+    }
+    
+    private static double projectY(double lat) {
+        double sin = Math.sin(Math.toRadians(lat));
+        double y = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+        return Math.max(0.0, Math.min(1.0, y));
+    }
+    
+    private static double unprojectLng(double x) {
+        return (x - 0.5) * 360;
+    }
+    
+    private static double unprojectLat(double y) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+    }
+    
+    // A cluster (location == null) or a single location; expansionZoom is where it first splits apart
+    public record Point(double x, double y, int count, int[] types, Location location, int expansionZoom) {
+        
+        public double latitude() {
+            return location != null ? location.getLatitude() : unprojectLat(y);
+        }
+        
+        public double longitude() {
+            return location != null ? location.getLongitude() : unprojectLng(x);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,254 @@
+package com.kheyma.geo;
+
+import com.kheyma.model.Location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+// Uniform latitude/longitude grid of locations. Readers never lock. Writes are serialized and change the grid
+// in place, replacing only the touched cell's array, so a write costs O(cell) however large the catalogue;
+// a reader sees each cell either before or after a write. A location that moves cells is briefly in neither.
+// Longitude does not wrap, so nearest-neighbour searches do not look across the antimeridian.
+public final class SpatialGrid {
+    
+    // Sphere radius MongoDB uses for $nearSphere, so distances agree with the Mongo-backed search
+    public static final double EARTH_RADIUS_KM = 6378.1;
+    
+    private static final Location[] EMPTY_CELL = new Location[0];
+    
+    private final double cellDegrees;
+    private final int rows;
+    private final int cols;
+    private final Map<Long, Location[]> cells;
+    private final Map<String, Long> cellById;
+    private volatile long version; // Bumped by every write
+    
+    private SpatialGrid(double cellDegrees, Map<Long, Location[]> cells, Map<String, Long> cellById) {
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil(180 / cellDegrees);
+        this.cols = (int) Math.ceil(360 / cellDegrees);
+        this.cells = cells;
+        this.cellById = cellById;
+    }
+    
+    public static SpatialGrid empty(double cellDegrees) {
+        if (!(cellDegrees > 0 && cellDegrees <= 90)) {
+            throw new IllegalArgumentException("Cell size must be between 0 and 90 degrees");
+        }
+        return new SpatialGrid(cellDegrees, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+    
+    public static SpatialGrid of(Collection<Location> locations, double cellDegrees) {
+        SpatialGrid grid = empty(cellDegrees);
+        Map<Long, List<Location>> building = new HashMap<>();
+        Map<String, Long> cellById = new ConcurrentHashMap<>();
+        for (Location location : locations) {
+            if (isIndexable(location)) {
+                long cell = grid.cellOf(location.getLatitude(), location.getLongitude());
+                building.computeIfAbsent(cell, key -> new ArrayList<>()).add(location);
+                cellById.put(location.getId(), cell);
+            }
+        }
+        Map<Long, Location[]> cells = new ConcurrentHashMap<>();
+        building.forEach((cell, members) -> cells.put(cell, members.toArray(EMPTY_CELL)));
+        return new SpatialGrid(cellDegrees, cells, cellById);
+    }
+    
+    // Upsert; a location without coordinates is only removed
+    public synchronized void put(Location location) {
+        removeFromCell(location.getId());
+        if (isIndexable(location)) {
+            long cell = cellOf(location.getLatitude(), location.getLongitude());
+            Location[] members = cells.getOrDefault(cell, EMPTY_CELL);
+            Location[] grown = Arrays.copyOf(members, members.length + 1);
+            grown[members.length] = location;
+            cells.put(cell, grown);
+            cellById.put(location.getId(), cell);
+        }
+        version++;
+    }
+    
+    public synchronized void remove(String id) {
+        if (removeFromCell(id)) {
+            version++;
+        }
+    }
+    
+    // Differs after any write, so holders of derived structures can tell they are stale
+    public long version() {
+        return version;
+    }
+    
+    public int size() {
+        return cellById.size();
+    }
+    
+    public List<Location> locations() {
+        List<Location> all = new ArrayList<>(cellById.size());
+        cells.values().forEach(members -> all.addAll(Arrays.asList(members)));
+        return all;
+    }
+    
+    public double getCellDegrees() {
+        return cellDegrees;
+    }
+    
+    // Planar box test on latitude/longitude, as a map viewport is drawn
+    public List<Location> within(double minLng, double minLat, double maxLng, double maxLat) {
+        int fromRow = rowOf(minLat), toRow = rowOf(maxLat);
+        int fromCol = colOf(minLng), toCol = colOf(maxLng);
+        List<Location> found = new ArrayList<>();
+        long spanned = (long) (toRow - fromRow + 1) * (toCol - fromCol + 1);
+        
+        // Large boxes over a sparse grid are cheaper to answer from the occupied cells
+        if (spanned > cells.size()) {
+            for (Map.Entry<Long, Location[]> entry : cells.entrySet()) {
+                int row = (int) (entry.getKey() / cols), col = (int) (entry.getKey() % cols);
+                if (row >= fromRow && row <= toRow && col >= fromCol && col <= toCol) {
+                    collectWithin(entry.getValue(), minLng, minLat, maxLng, maxLat, found);
+                }
+            }
+            return found;
+        }
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int col = fromCol; col <= toCol; col++) {
+                Location[] members = cells.get((long) row * cols + col);
+                if (members != null) {
+                    collectWithin(members, minLng, minLat, maxLng, maxLat, found);
+                }
+            }
+        }
+        return found;
+    }
+    
+    // Visits cells in rings around the query cell and stops once no unvisited ring can beat the k-th best
+    public List<Neighbour> nearest(double lat, double lng, int k, double maxDistanceKm, Predicate<Location> filter) {
+        if (k < 1 || cells.isEmpty()) {
+            return List.of();
+        }
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(
+                Comparator.comparingDouble(Neighbour::distanceKm).reversed());
+        int centerRow = rowOf(lat), centerCol = colOf(lng);
+        int visitedCells = 0;
+        int maxRing = Math.max(rows, cols);
+        
+        for (int ring = 0; ring <= maxRing && visitedCells < cells.size(); ring++) {
+            double bound = ringLowerBoundKm(lat, ring);
+            if (bound > maxDistanceKm || (best.size() == k && bound > best.peek().distanceKm())) {
+                break;
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= rows) {
+                    continue;
+                }
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : Math.max(2 * ring, 1);
+                for (int col = centerCol - ring; col <= centerCol + ring; col += step) {
+                    if (col < 0 || col >= cols) {
+                        continue;
+                    }
+                    Location[] members = cells.get((long) row * cols + col);
+                    if (members == null) {
+                        continue;
+                    }
+                    visitedCells++;
+                    for (Location location : members) {
+                        if (!filter.test(location)) {
+                            continue;
+                        }
+                        double distance = distanceKm(lat, lng, location.getLatitude(), location.getLongitude());
+                        if (distance > maxDistanceKm) {
+                            continue;
+                        }
+                        if (best.size() < k) {
+                            best.add(new Neighbour(location, distance));
+                        } else if (distance < best.peek().distanceKm()) {
+                            best.poll();
+                            best.add(new Neighbour(location, distance));
+                        }
+                    }
+                }
+            }
+        }
+        List<Neighbour> ordered = new ArrayList<>(best);
+        ordered.sort(Comparator.comparingDouble(Neighbour::distanceKm));
+        return ordered;
+    }
+    
+    public static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+    
+    // A cell in ring r is at least r - 1 whole cells away, north-south or east-west. East-west
+    // distances shrink toward the poles, so that side is bounded at the ring's most poleward latitude.
+    private double ringLowerBoundKm(double lat, int ring) {
+        if (ring <= 1) {
+            return 0.0;
+        }
+        double gapDegrees = (ring - 1) * cellDegrees;
+        double northSouth = Math.toRadians(gapDegrees) * EARTH_RADIUS_KM;
+        double poleward = Math.min(90.0, Math.abs(lat) + (ring + 1) * cellDegrees);
+        double halfGap = Math.toRadians(Math.min(gapDegrees, 180.0)) / 2;
+        double eastWest = 2 * EARTH_RADIUS_KM
+                * Math.asin(Math.min(1.0, Math.cos(Math.toRadians(poleward)) * Math.sin(halfGap)));
+        return Math.min(northSouth, eastWest);
+    }
+    
+    private boolean removeFromCell(String id) {
+        Long cell = cellById.remove(id);
+        if (cell == null) {
+            return false;
+        }
+        Location[] kept = Arrays.stream(cells.get(cell))
+                .filter(member -> !member.getId().equals(id))
+                .toArray(Location[]::new);
+        if (kept.length == 0) {
+            cells.remove(cell);
+        } else {
+            cells.put(cell, kept);
+        }
+        return true;
+    }
+    
+    private static void collectWithin(Location[] members, double minLng, double minLat, double maxLng, double maxLat,
+                                      List<Location> found) {
+        for (Location location : members) {
+            if (location.getLongitude() >= minLng && location.getLongitude() <= maxLng
+                    && location.getLatitude() >= minLat && location.getLatitude() <= maxLat) {
+                found.add(location);
+            }
+        }
+    }
+    
+    private static boolean isIndexable(Location location) {
+        return location.getId() != null && location.getLatitude() != null && location.getLongitude() != null
+                && Math.abs(location.getLatitude()) <= 90 && Math.abs(location.getLongitude()) <= 180;
+    }
+    
+    private long cellOf(double lat, double lng) {
+        return (long) rowOf(lat) * cols + colOf(lng);
+    }
+    
+    private int rowOf(double lat) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((lat + 90) / cellDegrees)));
+    }
+    
+    private int colOf(double lng) {
+        return Math.max(0, Math.min(cols - 1, (int) Math.floor((lng + 180) / cellDegrees)));
+    }
+    
+    public record Neighbour(Location location, double distanceKm) {
+    }
+}
\ No newline at end of file
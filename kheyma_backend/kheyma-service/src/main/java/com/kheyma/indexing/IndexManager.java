@@ -0,0 +1,179 @@
+package com.kheyma.indexing;
+
+import com.kheyma.dto.IndexReport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+// Creates the indexes declared on @Document classes (@Indexed, @CompoundIndex) at startup, replacing
+// Spring's auto-index-creation, which aborts startup on the first conflict. Conflicts and failures are
+// reported and logged instead. An index whose definition changed under the same name is a CONFLICT unless
+// recreation is enabled; it is then built under a new name first, so queries keep an index while it builds.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexManager {
+    
+    private final MongoTemplate mongoTemplate;
+    private final QueryPlanVerifier queryPlanVerifier;
+    
+    private static final String REBUILT_SUFFIX = "_rebuilt";
+    
+    @Value("${kheyma.indexes.recreate-changed:false}")
+    private boolean recreateChanged;
+    
+    @Value("${kheyma.indexes.verify-on-startup:true}")
+    private boolean verifyOnStartup;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        IndexReport report = ensureIndexes();
+        report.getIndexes().stream()
+                .filter(entry -> entry.getStatus() == IndexReport.Status.CONFLICT
+                        || entry.getStatus() == IndexReport.Status.FAILED)
+                .forEach(entry -> log.error("Index {}.{} {}: {}", entry.getCollection(), entry.getName(),
+                        entry.getStatus(), entry.getMessage()));
+        
+        if (verifyOnStartup) {
+            queryPlanVerifier.verify().getQueries().stream()
+                    .filter(plan -> !plan.isPassed())
+                    .forEach(plan -> log.warn("Query {} on {} is not index-backed: {}",
+                            plan.getQuery(), plan.getCollection(), plan.getStages()));
+        }
+    }
+    
+    public IndexReport ensureIndexes() {
+        IndexReport report = new IndexReport();
+        report.setCheckedAt(LocalDateTime.now());
+        
+        MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+        
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                continue;
+            }
+            String collection = entity.getCollection();
+            IndexOperations indexOps = mongoTemplate.indexOps(collection);
+            List<Document> existing = new ArrayList<>();
+            mongoTemplate.getCollection(collection).listIndexes().into(existing);
+            
+            for (IndexDefinition definition : resolver.resolveIndexFor(entity.getTypeInformation())) {
+                report.getIndexes().add(ensureIndex(collection, indexOps, existing, definition));
+            }
+        }
+        return report;
+    }
+    
+    private IndexReport.Entry ensureIndex(String collection, IndexOperations indexOps, List<Document> existing,
+                                          IndexDefinition definition) {
+        Document keys = definition.getIndexKeys();
+        boolean unique = Boolean.TRUE.equals(definition.getIndexOptions().get("unique"));
+        String name = definition.getIndexOptions().getString("name");
+        if (name == null) {
+            name = defaultName(keys);
+        }
+        IndexReport.Entry entry = new IndexReport.Entry(collection, name, keys.toJson(), null, null);
+        
+        // The same keys under another name already serve the queries
+        for (Document index : existing) {
+            if (sameKeys(index.get("key", Document.class), keys) && unique == isUnique(index)) {
+                entry.setStatus(IndexReport.Status.UNCHANGED);
+                return entry;
+            }
+        }
+        
+        String indexName = name;
+        boolean changed = existing.stream().anyMatch(index -> indexName.equals(index.getString("name")));
+        if (changed && !recreateChanged) {
+            entry.setStatus(IndexReport.Status.CONFLICT);
+            entry.setMessage("An index with this name exists with a different definition");
+            return entry;
+        }
+        
+        try {
+            if (changed) {
+                // The old index keeps serving queries until its replacement is built; a failed build leaves it
+                String rebuiltName = name + REBUILT_SUFFIX;
+                indexOps.ensureIndex(renamed(definition, rebuiltName));
+                indexOps.dropIndex(name);
+                entry.setName(rebuiltName);
+                entry.setStatus(IndexReport.Status.RECREATED);
+            } else {
+                indexOps.ensureIndex(definition);
+                entry.setStatus(IndexReport.Status.CREATED);
+            }
+        } catch (DataAccessException e) {
+            entry.setStatus(IndexReport.Status.FAILED);
+            entry.setMessage(e.getMostSpecificCause().getMessage());
+        }
+        return entry;
+    }
+    
+    private IndexDefinition renamed(IndexDefinition definition, String name) {
+        Document options = new Document(definition.getIndexOptions()).append("name", name);
+        return new IndexDefinition() {
+            @Override
+            public Document getIndexKeys() {
+                return definition.getIndexKeys();
+            }
+            
+            @Override
+            public Document getIndexOptions() {
+                return options;
+            }
+        };
+    }
+    
+    // Key order matters for compound indexes, which Document.equals ignores
+    private boolean sameKeys(Document a, Document b) {
+        if (a == null || a.size() != b.size()) {
+            return false;
+        }
+        List<Map.Entry<String, Object>> left = new ArrayList<>(a.entrySet());
+        List<Map.Entry<String, Object>> right = new ArrayList<>(b.entrySet());
+        for (int i = 0; i < left.size(); i++) {
+            if (!left.get(i).getKey().equals(right.get(i).getKey())
+                    || !sameDirection(left.get(i).getValue(), right.get(i).getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean sameDirection(Object a, Object b) {
+        if (a instanceof Number x && b instanceof Number y) {
+            return x.intValue() == y.intValue();
+        }
+        return Objects.equals(a, b);
+    }
+    
+    private boolean isUnique(Document index) {
+        return Boolean.TRUE.equals(index.get("unique"));
+    }
+    
+    // MongoDB's own naming scheme, e.g. "userId_1_date_-1"
+    private String defaultName(Document keys) {
+        return keys.entrySet().stream()
+                .map(key -> key.getKey() + "_" + key.getValue())
+                .collect(Collectors.joining("_"));
+    }
+}
\ No newline at end of file
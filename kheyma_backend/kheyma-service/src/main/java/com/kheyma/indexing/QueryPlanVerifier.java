@@ -0,0 +1,214 @@
+package com.kheyma.indexing;
+
+import com.kheyma.dto.QueryPlanReport;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Explains the filter and sort of every repository query and flags plans that scan the whole
+// collection (COLLSCAN) or sort in memory (SORT).
+@Component
+@RequiredArgsConstructor
+public class QueryPlanVerifier {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    public QueryPlanReport verify() {
+        QueryPlanReport report = new QueryPlanReport();
+        report.setCheckedAt(LocalDateTime.now());
+        for (PlannedQuery query : catalogue()) {
+            report.getQueries().add(explain(query));
+        }
+        report.setPassed(report.getQueries().stream().allMatch(QueryPlanReport.Plan::isPassed));
+        return report;
+    }
+    
+    private QueryPlanReport.Plan explain(PlannedQuery query) {
+        Document explained = mongoTemplate.getCollection(query.collection())
+                .find(query.filter())
+                .sort(query.sort())
+                .limit(query.limit())
+                .explain();
+        Document queryPlanner = explained.get("queryPlanner", Document.class);
+        List<String> stages = new ArrayList<>();
+        collectStages(queryPlanner != null ? queryPlanner.get("winningPlan") : null, stages);
+        
+        QueryPlanReport.Plan plan = new QueryPlanReport.Plan();
+        plan.setQuery(query.name());
+        plan.setCollection(query.collection());
+        plan.setStages(stages);
+        plan.setCollectionScan(stages.contains("COLLSCAN"));
+        plan.setInMemorySort(stages.contains("SORT"));
+        plan.setPassed((!plan.isCollectionScan() || query.scanReason() != null) && !plan.isInMemorySort());
+        if (stages.contains("EOF")) {
+            plan.setNote("Collection does not exist yet; plan cannot be verified");
+        } else if (plan.isCollectionScan() && query.scanReason() != null) {
+            plan.setNote(query.scanReason());
+        }
+        return plan;
+    }
+    
+    // Walks stage/inputStage/inputStages, including the queryPlan wrapper of slot-based plans
+    private void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            for (String child : List.of("queryPlan", "inputStage", "inputStages")) {
+                collectStages(document.get(child), stages);
+            }
+        } else if (node instanceof List<?> list) {
+            list.forEach(child -> collectStages(child, stages));
+        }
+    }
+    
+    // Sample parameter values only shape the plan; the queries need not match anything. Every @Query and derived
+    // finder declared on a repository is listed as "<Repository>.<method>" (QueryPlanVerifierTest checks this),
+    // followed by the MongoTemplate queries of the location propagation batches.
+    private List<PlannedQuery> catalogue() {
+        String id = new ObjectId().toHexString();
+        ObjectId objectId = new ObjectId();
+        Date from = new Date(0);
+        Date to = new Date();
+        Document dateRange = new Document("$gt", from).append("$lt", to);
+        Document inclusiveRange = new Document("$gte", from).append("$lte", to);
+        Document newestFirst = new Document("date", -1).append("_id", -1);
+        List<Document> keysetAfter = List.of(
+                new Document("date", new Document("$lt", to)),
+                new Document("date", to).append("_id", new Document("$lt", objectId)));
+        Document point = new Document("type", "Point").append("coordinates", List.of(10.0, 36.0));
+        Document box = new Document("type", "Polygon").append("coordinates", List.of(List.of(
+                List.of(9.0, 35.0), List.of(11.0, 35.0), List.of(11.0, 37.0), List.of(9.0, 37.0), List.of(9.0, 35.0))));
+        Document nearby = new Document("$nearSphere", new Document("$geometry", point).append("$maxDistance", 25000.0));
+        Document within = new Document("$geoWithin", new Document("$geometry", box));
+        Document reviewsNewestFirst = new Document("createdAt", -1).append("_id", -1);
+        List<Document> reviewsAfter = List.of(
+                new Document("createdAt", new Document("$lt", to)),
+                new Document("createdAt", to).append("_id", new Document("$lt", objectId)));
+        Document byId = new Document("_id", 1);
+        
+        return List.of(
+                // TransactionRepository
+                new PlannedQuery("TransactionRepository.findByUserId", "transactions",
+                        new Document("userId", id), new Document(), 0, null),
+                new PlannedQuery("TransactionRepository.findByUserIdOrderByDateDesc", "transactions",
+                        new Document("userId", id), new Document("date", -1), 0, null),
+                new PlannedQuery("TransactionRepository.findByDateBetween", "transactions",
+                        new Document("date", dateRange), new Document(), 0, null),
+                new PlannedQuery("TransactionRepository.findTopByOrderByTransIdDesc", "transactions",
+                        new Document(), new Document("transId", -1), 1, null),
+                new PlannedQuery("TransactionRepository.findByLocationLocationId", "transactions",
+                        new Document("location.locationId", id), new Document(), 0, null),
+                new PlannedQuery("TransactionRepository.findPage", "transactions",
+                        new Document(), newestFirst, 51, null),
+                new PlannedQuery("TransactionRepository.findPageAfter", "transactions",
+                        new Document("$or", keysetAfter), newestFirst, 51, null),
+                new PlannedQuery("TransactionRepository.findPageByDateRange", "transactions",
+                        new Document("date", dateRange), newestFirst, 51, null),
+                new PlannedQuery("TransactionRepository.findPageByDateRangeAfter", "transactions",
+                        new Document("date", dateRange).append("$or", keysetAfter), newestFirst, 51, null),
+                new PlannedQuery("TransactionRepository.findPageByLocation", "transactions",
+                        new Document("location.locationId", id), newestFirst, 51, null),
+                new PlannedQuery("TransactionRepository.findPageByLocationAfter", "transactions",
+                        new Document("location.locationId", id).append("$or", keysetAfter), newestFirst, 51, null),
+                new PlannedQuery("TransactionRepository.streamByDateRange", "transactions",
+                        new Document("date", inclusiveRange), new Document(), 0, null),
+                new PlannedQuery("TransactionRepository.streamByDateRangeAndLocation", "transactions",
+                        new Document("date", inclusiveRange).append("location.locationId", id), new Document(), 0, null),
+                new PlannedQuery("TransactionRepository.streamByIdRange", "transactions",
+                        new Document("_id", new Document("$gte", objectId).append("$lt", new ObjectId())),
+                        new Document(), 0, null),
+                new PlannedQuery("TransactionRepository.streamAllForMetrics", "transactions",
+                        new Document(), new Document(), 0, "Reads every transaction by design"),
+                new PlannedQuery("TransactionRepository.streamForMetricsBefore", "transactions",
+                        new Document("_id", new Document("$lt", objectId)), new Document(), 0, null),
+                // ReviewRepository
+                new PlannedQuery("ReviewRepository.findByCampsiteIdOrderByCreatedAtDesc", "reviews",
+                        new Document("campsiteId", id), new Document("createdAt", -1), 0, null),
+                new PlannedQuery("ReviewRepository.findPageByCampsiteId", "reviews",
+                        new Document("campsiteId", id), reviewsNewestFirst, 51, null),
+                new PlannedQuery("ReviewRepository.findPageByCampsiteIdAfter", "reviews",
+                        new Document("campsiteId", id).append("$or", reviewsAfter), reviewsNewestFirst, 51, null),
+                new PlannedQuery("ReviewRepository.findByUserIdOrderByCreatedAtDesc", "reviews",
+                        new Document("userId", id), new Document("createdAt", -1), 0, null),
+                new PlannedQuery("ReviewRepository.existsByUserIdAndCampsiteId", "reviews",
+                        new Document("userId", id).append("campsiteId", id), new Document(), 1, null),
+                // UserRepository
+                new PlannedQuery("UserRepository.findByEmail", "users",
+                        new Document("email", "someone@example.com"), new Document(), 0, null),
+                new PlannedQuery("UserRepository.findByEmailIn", "users",
+                        new Document("email", new Document("$in", List.of("a@example.com", "b@example.com"))),
+                        new Document(), 0, null),
+                new PlannedQuery("UserRepository.existsByEmail", "users",
+                        new Document("email", "someone@example.com"), new Document(), 1, null),
+                new PlannedQuery("UserRepository.findPage", "users",
+                        new Document(), byId, 51, null),
+                new PlannedQuery("UserRepository.findPageAfter", "users",
+                        new Document("_id", new Document("$gt", objectId)), byId, 51, null),
+                // LocationRepository
+                new PlannedQuery("LocationRepository.findByType", "locations",
+                        new Document("type", "CAMPSITE"), new Document(), 0, null),
+                new PlannedQuery("LocationRepository.findByNameContainingIgnoreCase", "locations",
+                        new Document("name", new Document("$regex", "oasis").append("$options", "i")),
+                        new Document(), 0, "Unanchored case-insensitive regex cannot use an index"),
+                new PlannedQuery("LocationRepository.findNearby", "locations",
+                        new Document("position", nearby), new Document(), 51, null),
+                new PlannedQuery("LocationRepository.findNearbyByType", "locations",
+                        new Document("position", nearby).append("type", "CAMPSITE"), new Document(), 51, null),
+                new PlannedQuery("LocationRepository.findPageWithin", "locations",
+                        new Document("position", within), byId, 51, null),
+                new PlannedQuery("LocationRepository.findPageWithinAfter", "locations",
+                        new Document("position", within).append("_id", new Document("$gt", objectId)), byId, 51, null),
+                // Analytics repositories
+                new PlannedQuery("RevenueRollupRepository.findByDimension", "revenue_rollups",
+                        new Document("dimension", "DAY"), new Document(), 0, null),
+                new PlannedQuery("RevenueRollupRepository.findByDimensionAndKeyRange", "revenue_rollups",
+                        new Document("dimension", "DAY").append("key", new Document("$gte", "2024-01-01").append("$lte", "2024-12-31")),
+                        new Document(), 0, null),
+                new PlannedQuery("RevenueRollupRepository.findTop10ByDimensionOrderByCountDesc", "revenue_rollups",
+                        new Document("dimension", "LOCATION"), new Document("count", -1), 10, null),
+                new PlannedQuery("AmountHistogramRepository.findByScopeAndMonthRange", "amount_histograms",
+                        new Document("dimension", "PACKAGE").append("scope", "BASIC")
+                                .append("month", new Document("$gte", "2024-01").append("$lte", "2024-12")),
+                        new Document(), 0, null),
+                new PlannedQuery("AnalyticsSnapshotRepository.findTopByOrderByVersionDesc", "analytics_snapshots",
+                        new Document(), new Document("version", -1), 1, null),
+                new PlannedQuery("AnalyticsSnapshotRepository.findByVersion", "analytics_snapshots",
+                        new Document("version", 7L), new Document(), 0, null),
+                new PlannedQuery("AnalyticsSnapshotRepository.findTopByGeneratedAtLessThanEqualOrderByGeneratedAtDesc",
+                        "analytics_snapshots", new Document("generatedAt", new Document("$lte", to)),
+                        new Document("generatedAt", -1), 1, null),
+                new PlannedQuery("AnalyticsSnapshotRepository.deleteByGeneratedAtBeforeAndVersionLessThan",
+                        "analytics_snapshots", new Document("generatedAt", new Document("$lt", to))
+                                .append("version", new Document("$lt", 7L)),
+                        new Document(), 0, null),
+                // PropagationJobRepository and the propagation batches
+                new PlannedQuery("PropagationJobRepository.findTop50ByOrderByUpdatedAtDesc", "propagation_jobs",
+                        new Document(), new Document("updatedAt", -1), 50, null),
+                new PlannedQuery("LocationPropagationService.claim", "propagation_jobs",
+                        new Document("$or", List.of(new Document("status", "PENDING"),
+                                new Document("status", "RUNNING").append("leaseUntil", new Document("$lt", to)))),
+                        new Document(), 1, null),
+                new PlannedQuery("LocationPropagationService.count", "transactions",
+                        new Document("location.locationId", id), new Document(), 0, null),
+                new PlannedQuery("LocationPropagationService.rewrite", "transactions",
+                        new Document("_id", new Document("$in", List.of(objectId)))
+                                .append("location.locationId", id)
+                                .append("location.propagationGeneration",
+                                        new Document("$not", new Document("$gte", 3L))),
+                        new Document(), 0, null)
+        );
+    }
+    
+    // scanReason is null unless the query cannot use an index, e.g. an unanchored regex
+    private record PlannedQuery(String name, String collection, Document filter, Document sort, int limit,
+                                String scanReason) {
+    }
+}
\ No newline at end of file
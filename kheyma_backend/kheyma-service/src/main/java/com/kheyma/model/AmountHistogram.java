@@ -0,0 +1,55 @@
+package com.kheyma.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@CompoundIndex(name = "dimension_scope_month", def = "{ 'dimension': 1, 'scope': 1, 'month': 1 }")
+@Document(collection = "amount_histograms")
+public class AmountHistogram {
+    
+    @Id
+    private String id; // "<DIMENSION>:<scope>:<month>", e.g. "PACKAGE:BASIC:2024-05"
+    
+    private Dimension dimension;
+    
+    private String scope; // Package name, location ID, or "ALL"
+    
+    private String month; // "yyyy-MM"
+    
+    private Map<String, Long> buckets = new HashMap<>(); // Log bucket index -> count, see LogHistogram
+    
+    private long zeroCount;
+    
+    private long count;
+    
+    private double sum;
+    
+    private Double min;
+    
+    private Double max;
+    
+    private LocalDateTime updatedAt;
+    
+    public enum Dimension {
+        ALL,
+        PACKAGE,
+        LOCATION
+    }
+    
+    public static final String ALL_SCOPE = "ALL";
+    
+    public static String idOf(Dimension dimension, String scope, String month) {
+        return dimension.name() + ":" + scope + ":" + month;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.kheyma.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "analytics_snapshots")
+public class AnalyticsSnapshot {
+    
+    @Id
+    private String id;
+    
+    @Indexed(unique = true)
+    private long version; // Unique, so two replicas can never publish the same version
+    
+    @Indexed
+    private LocalDateTime generatedAt;
+    
+    private String watermark; // Exclusive upper bound (ObjectId hex) of the transactions folded in so far
+    
+    private long processedTransactions; // Transactions added since the previous version
+    
+    private long transactionCount;
+    
+    private double totalRevenue;
+    
+    private double averageTransactionAmount;
+    
+    private Map<String, Double> revenueByMonth = new LinkedHashMap<>(); // "yyyy-MM" -> revenue, all time
+    
+    private List<LocationTotals> locations = new ArrayList<>(); // Every location, busiest first
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LocationTotals {
+        private String locationId;
+        private String name;
+        private Double latitude;
+        private Double longitude;
+        private long transactionCount;
+        private double revenue;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.kheyma.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// State of a write-behind booking, shared by every instance: any of them can answer a poll for the handle
+// or a replayed Idempotency-Key, whichever instance accepted the booking
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "async_bookings")
+public class AsyncBooking {
+    
+    @Id
+    private String id; // The handle clients poll
+    
+    private Status status;
+    private LocalDateTime acceptedAt;
+    private LocalDateTime completedAt;
+    private String transactionId; // Set once COMPLETED, and while UNKNOWN so the booking can be looked up
+    private Integer transId;
+    private String error; // Set once FAILED
+    
+    private String userEmail;
+    
+    // The request as submitted, so a reused Idempotency-Key can be checked against it
+    private String locationId;
+    private Double amount;
+    private Transaction.PackageType packageType;
+    private LocalDate date;
+    
+    // "<userEmail>:<key>"; absent when the client sent none
+    @Indexed(unique = true, sparse = true)
+    private String idempotencyKey;
+    
+    @Indexed(expireAfterSeconds = 0)
+    private LocalDateTime expiresAt; // acceptedAt plus the retention; removed by the TTL monitor after that
+    
+    public enum Status {
+        QUEUED,
+        COMPLETED,
+        FAILED,
+        UNKNOWN
+    }
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.kheyma.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "counters")
+public class Counter {
+    
+    @Id
+    private String id; // Sequence name, e.g. "transactions.transId"
+    
+    private long value; // Highest value handed out to any instance
+    
+    private Date updatedAt; // Only maintained by counters that need it, e.g. the location catalog version
+}
\ No newline at end of file
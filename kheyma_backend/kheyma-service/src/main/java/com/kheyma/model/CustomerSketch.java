@@ -0,0 +1,41 @@
+package com.kheyma.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "customer_sketches")
+public class CustomerSketch {
+    
+    @Id
+    private String id; // "<DIMENSION>:<key>", e.g. "DAY:2024-05-03"
+    
+    private Dimension dimension;
+    
+    private String key; // ISO day, ISO month or location ID
+    
+    // HyperLogLog registers of booking user IDs, sparse: register index -> rank.
+    // Updated with per-register $max so concurrent bookings never lose an update.
+    private Map<String, Integer> registers = new HashMap<>();
+    
+    private LocalDateTime updatedAt;
+    
+    public enum Dimension {
+        DAY,
+        MONTH,
+        LOCATION
+    }
+    
+    public static String idOf(Dimension dimension, String key) {
+        return dimension.name() + ":" + key;
+    }
+}
\ No newline at end of file
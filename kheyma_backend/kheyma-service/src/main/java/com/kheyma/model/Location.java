@@ -1,9 +1,14 @@
 package com.kheyma.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import jakarta.validation.constraints.NotBlank;
@@ -27,13 +32,24 @@ public class Location {
     @NotNull(message = "Longitude is required")
     private Double longitude; // Coordinates
     
+    @JsonIgnore
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint position; // Derived from longitude/latitude for geo queries
+    
     private String description; // Optional - shown in popup/details
     
+    @Indexed
     private LocationType type; // Optional - campsite, shop, point-of-interest
     
+    private Integer capacity; // Optional - units bookable per night; no limit when null
+    
     public enum LocationType {
         CAMPSITE,
         SHOP,
         POINT_OF_INTEREST
     }
+    
+    public static GeoJsonPoint positionOf(Double latitude, Double longitude) {
+        return latitude != null && longitude != null ? new GeoJsonPoint(longitude, latitude) : null;
+    }
 }
\ No newline at end of file
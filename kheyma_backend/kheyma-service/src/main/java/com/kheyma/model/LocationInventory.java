@@ -0,0 +1,38 @@
+package com.kheyma.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "location_inventory")
+public class LocationInventory {
+    
+    @Id
+    private String id; // "<locationId>:<year>", one season per calendar year
+    
+    private String locationId;
+    
+    private int year;
+    
+    // Units reserved per night, indexed by day of year - 1. Claimed with a conditional
+    // $inc on a single element, so concurrent bookings never need a lock.
+    private List<Integer> reserved = new ArrayList<>();
+    
+    // Bumped by every claim and release; a rebuild only overwrites the counters it read
+    private long version;
+    
+    private LocalDateTime updatedAt;
+    
+    public static String idOf(String locationId, int year) {
+        return locationId + ":" + year;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.kheyma.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Rewrites the LocationReference embedded in a location's transactions after the location was edited.
+// One document per location; a newer edit replaces the target values and restarts the walk.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "propagation_jobs")
+public class PropagationJob {
+    
+    @Id
+    private String id; // Location ID
+    
+    private long generation; // Bumped by every edit; a worker holding an older generation stops
+    
+    private String name; // Target values copied into every LocationReference
+    private Double latitude;
+    private Double longitude;
+    
+    @Indexed
+    private Status status;
+    
+    private LocalDate checkpointDate; // Keyset position of the last transaction handled, newest first
+    private String checkpointId;
+    
+    private long totalTransactions; // Counted when the walk starts
+    private long scannedTransactions;
+    private long updatedTransactions; // Scanned rows not yet rewritten by this generation
+    private long batches;
+    
+    private String owner; // Instance holding the lease
+    private LocalDateTime leaseUntil;
+    
+    private LocalDateTime createdAt;
+    @Indexed
+    private LocalDateTime updatedAt; // Newest first on the admin job list
+    private LocalDateTime completedAt;
+    private String error;
+    
+    public double getProgress() {
+        if (status == Status.COMPLETED) {
+            return 1.0;
+        }
+        return totalTransactions > 0 ? Math.min(1.0, (double) scannedTransactions / totalTransactions) : 0.0;
+    }
+    
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
\ No newline at end of file
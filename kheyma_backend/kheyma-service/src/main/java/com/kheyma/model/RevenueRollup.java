@@ -0,0 +1,55 @@
+package com.kheyma.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@CompoundIndexes({
+        @CompoundIndex(name = "dimension_key", def = "{ 'dimension': 1, 'key': 1 }"),
+        @CompoundIndex(name = "dimension_count", def = "{ 'dimension': 1, 'count': -1 }")
+})
+@Document(collection = "revenue_rollups")
+public class RevenueRollup {
+    
+    @Id
+    private String id; // "<DIMENSION>:<key>", e.g. "MONTH:2024-05"
+    
+    private Dimension dimension;
+    
+    private String key; // ISO day, ISO month, location ID or package name
+    
+    private long count; // Number of transactions folded into this bucket
+    
+    private double revenue; // Sum of transaction amounts
+    
+    private String name; // Location buckets only - latest known location name
+    
+    private Double latitude; // Location buckets only
+    
+    private Double longitude; // Location buckets only
+    
+    private LocalDateTime updatedAt;
+    
+    public enum Dimension {
+        TOTAL,
+        DAY,
+        MONTH,
+        LOCATION,
+        PACKAGE
+    }
+    
+    public static final String TOTAL_KEY = "ALL";
+    
+    public static String idOf(Dimension dimension, String key) {
+        return dimension.name() + ":" + key;
+    }
+}
\ No newline at end of file
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import jakarta.validation.constraints.Max;
@@ -15,6 +17,11 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@CompoundIndexes({
+        @CompoundIndex(name = "campsiteId_createdAt_id", def = "{ 'campsiteId': 1, 'createdAt': -1, '_id': -1 }"),
+        @CompoundIndex(name = "userId_createdAt", def = "{ 'userId': 1, 'createdAt': -1 }"),
+        @CompoundIndex(name = "userId_campsiteId", def = "{ 'userId': 1, 'campsiteId': 1 }")
+})
 @Document(collection = "reviews")
 public class Review {
     
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import jakarta.validation.constraints.NotNull;
@@ -12,6 +14,12 @@ import java.time.LocalDate;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@CompoundIndexes({
+        @CompoundIndex(name = "userId_date", def = "{ 'userId': 1, 'date': -1 }"),
+        @CompoundIndex(name = "date_id", def = "{ 'date': -1, '_id': -1 }"),
+        @CompoundIndex(name = "locationId_date_id", def = "{ 'location.locationId': 1, 'date': -1, '_id': -1 }"),
+        @CompoundIndex(name = "transId", def = "{ 'transId': -1 }", unique = true)
+})
 @Document(collection = "transactions")
 public class Transaction {
     
@@ -0,0 +1,42 @@
+package com.kheyma.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "user_spending")
+public class UserSpendingSummary {
+    
+    @Id
+    private String id; // User ID
+    
+    private double totalSpent;
+    
+    private long bookingCount;
+    
+    private LocalDate lastBookingDate;
+    
+    private Map<String, Long> locationCounts = new HashMap<>(); // Location ID -> bookings
+    
+    private LocalDateTime updatedAt;
+    
+    // Most booked location; ties go to the smallest ID so the answer is stable
+    public String getFavouriteLocationId() {
+        return locationCounts.entrySet().stream()
+                .max(Map.Entry.<String, Long>comparingByValue()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.kheyma.pagination;
+
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Opaque keyset continuation token: the sort key and _id of the last item of a page.
+// The next page starts strictly after that pair, so deep pages cost the same as the first.
+public final class Cursor {
+    
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    
+    private static final char SEPARATOR = '|';
+    
+    private final String key;
+    private final ObjectId id;
+    
+    private Cursor(String key, ObjectId id) {
+        this.key = key;
+        this.id = id;
+    }
+    
+    // Pages ordered by _id alone carry an empty key
+    public static String encode(String id) {
+        return encode("", id);
+    }
+    
+    public static String encode(String key, String id) {
+        if (key == null || id == null) {
+            // A missing sort key has no place in the order; "null" would only come back as an unparseable cursor
+            throw new IllegalStateException("Cannot continue a page after an item without a sort key");
+        }
+        String raw = key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    // Returns null for a missing token, i.e. the first page
+    public static Cursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new Cursor(raw.substring(0, separator), new ObjectId(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+    
+    public static int pageSize(int requested) {
+        if (requested < 1) {
+            throw new InvalidCursorException("Page size must be positive");
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+    
+    public String getKey() {
+        return key;
+    }
+    
+    public ObjectId getId() {
+        return id;
+    }
+    
+    // Tokens are client input; a tampered key is a bad request, not a server error
+    public LocalDate getDateKey() {
+        try {
+            return LocalDate.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+    
+    public LocalDateTime getDateTimeKey() {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.kheyma.pagination;
+
+// A cursor token or page size the client sent that cannot be used. Its messages are fixed and safe to show;
+// ApiExceptionHandler answers it with 400.
+public class InvalidCursorException extends IllegalArgumentException {
+    
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.kheyma.projection;
+
+import java.time.LocalDate;
+
+// Closed projection of the keyset sort key, for jobs that walk transactions without loading them
+public interface TransactionKey {
+    
+    String getId();
+    
+    LocalDate getDate();
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.kheyma.projection;
+
+import com.kheyma.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// DTO projection: Spring Data fetches only these properties and maps them straight into this class.
+// The whole location subdocument is fetched, but only its id and name are returned.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionSummary {
+    private String id;
+    private Integer transId;
+    private String userId;
+    private Double amount;
+    private Transaction.PackageType packageType;
+    private LocalDate date;
+    private LocationSummary location;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LocationSummary {
+        private String locationId;
+        private String name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.kheyma.projection;
+
+import com.kheyma.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// DTO projection: Spring Data fetches only these properties and maps them straight into this class.
+// A plain class serializes as fast as the entity; an interface projection goes through a proxy per getter.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    private String id;
+    private String email;
+    private User.UserType type;
+    private boolean enabled;
+}
\ No newline at end of file
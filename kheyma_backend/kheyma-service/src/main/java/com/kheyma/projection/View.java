@@ -0,0 +1,15 @@
+package com.kheyma.projection;
+
+// Shape of list responses: SUMMARY fetches and returns only the fields list screens show
+public enum View {
+    SUMMARY,
+    FULL;
+    
+    public static View from(String value) {
+        try {
+            return View.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Unsupported view: " + value);
+        }
+    }
+}
\ No newline at end of file
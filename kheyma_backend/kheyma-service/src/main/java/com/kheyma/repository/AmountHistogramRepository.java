@@ -0,0 +1,15 @@
+package com.kheyma.repository;
+
+import com.kheyma.model.AmountHistogram;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AmountHistogramRepository extends MongoRepository<AmountHistogram, String> {
+    @Query("{ 'dimension': ?0, 'scope': ?1, 'month': { '$gte': ?2, '$lte': ?3 } }")
+    List<AmountHistogram> findByScopeAndMonthRange(AmountHistogram.Dimension dimension, String scope,
+                                                   String fromMonth, String toMonth);
+}
\ No newline at end of file
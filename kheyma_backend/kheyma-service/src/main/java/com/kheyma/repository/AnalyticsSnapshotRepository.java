@@ -0,0 +1,16 @@
+package com.kheyma.repository;
+
+import com.kheyma.model.AnalyticsSnapshot;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface AnalyticsSnapshotRepository extends MongoRepository<AnalyticsSnapshot, String> {
+    Optional<AnalyticsSnapshot> findTopByOrderByVersionDesc();
+    Optional<AnalyticsSnapshot> findByVersion(long version);
+    Optional<AnalyticsSnapshot> findTopByGeneratedAtLessThanEqualOrderByGeneratedAtDesc(LocalDateTime generatedAt);
+    long deleteByGeneratedAtBeforeAndVersionLessThan(LocalDateTime cutoff, long version);
+}
\ No newline at end of file
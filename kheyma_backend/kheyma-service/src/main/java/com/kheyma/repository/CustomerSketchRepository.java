@@ -0,0 +1,9 @@
+package com.kheyma.repository;
+
+import com.kheyma.model.CustomerSketch;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CustomerSketchRepository extends MongoRepository<CustomerSketch, String> {
+}
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.kheyma.repository;
+
+import com.kheyma.model.LocationInventory;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LocationInventoryRepository extends MongoRepository<LocationInventory, String> {
+}
\ No newline at end of file
@@ -1,7 +1,14 @@
 package com.kheyma.repository;
 
 import com.kheyma.model.Location;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,4 +17,21 @@ import java.util.List;
 public interface LocationRepository extends MongoRepository<Location, String> {
     List<Location> findByType(Location.LocationType type);
     List<Location> findByNameContainingIgnoreCase(String name);
+    
+    // $nearSphere returns nearest first; the pageable must stay unsorted or the distance order is lost
+    @Query("{ 'position': { '$nearSphere': { '$geometry': ?0, '$maxDistance': ?1 } } }")
+    Slice<Location> findNearby(GeoJsonPoint point, double maxDistanceMeters, Pageable pageable);
+    
+    @Query("{ 'position': { '$nearSphere': { '$geometry': ?0, '$maxDistance': ?1 } }, 'type': ?2 }")
+    Slice<Location> findNearbyByType(GeoJsonPoint point, double maxDistanceMeters, Location.LocationType type,
+                                     Pageable pageable);
+    
+    // Keyset pages in _id order over the locations inside a polygon
+    Sort KEYSET_ORDER = Sort.by(Sort.Direction.ASC, "id");
+    
+    @Query("{ 'position': { '$geoWithin': { '$geometry': ?0 } } }")
+    List<Location> findPageWithin(GeoJsonPolygon area, Pageable pageable);
+    
+    @Query("{ 'position': { '$geoWithin': { '$geometry': ?0 } }, '_id': { '$gt': ?1 } }")
+    List<Location> findPageWithinAfter(GeoJsonPolygon area, ObjectId id, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.kheyma.repository;
+
+import com.kheyma.model.PropagationJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PropagationJobRepository extends MongoRepository<PropagationJob, String> {
+    List<PropagationJob> findTop50ByOrderByUpdatedAtDesc();
+}
\ No newline at end of file
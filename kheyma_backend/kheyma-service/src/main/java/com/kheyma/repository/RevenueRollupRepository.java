@@ -0,0 +1,17 @@
+package com.kheyma.repository;
+
+import com.kheyma.model.RevenueRollup;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RevenueRollupRepository extends MongoRepository<RevenueRollup, String> {
+    List<RevenueRollup> findByDimension(RevenueRollup.Dimension dimension);
+    List<RevenueRollup> findTop10ByDimensionOrderByCountDesc(RevenueRollup.Dimension dimension);
+    
+    @Query("{ 'dimension': ?0, 'key': { '$gte': ?1, '$lte': ?2 } }")
+    List<RevenueRollup> findByDimensionAndKeyRange(RevenueRollup.Dimension dimension, String fromKey, String toKey);
+}
\ No newline at end of file
@@ -1,14 +1,29 @@
 package com.kheyma.repository;
 
 import com.kheyma.model.Review;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ReviewRepository extends MongoRepository<Review, String> {
     List<Review> findByCampsiteIdOrderByCreatedAtDesc(String campsiteId);
+    
+    // Keyset pages, newest first, on (createdAt, _id); see TransactionRepository.KEYSET_ORDER
+    Sort KEYSET_ORDER = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+    
+    @Query("{ 'campsiteId': ?0 }")
+    List<Review> findPageByCampsiteId(String campsiteId, Pageable pageable);
+    
+    @Query("{ 'campsiteId': ?0, '$or': [ { 'createdAt': { '$lt': ?1 } }, { 'createdAt': ?1, '_id': { '$lt': ?2 } } ] }")
+    List<Review> findPageByCampsiteIdAfter(String campsiteId, LocalDateTime createdAt, ObjectId id, Pageable pageable);
+    
     List<Review> findByUserIdOrderByCreatedAtDesc(String userId);
     boolean existsByUserIdAndCampsiteId(String userId, String campsiteId);
 }
\ No newline at end of file
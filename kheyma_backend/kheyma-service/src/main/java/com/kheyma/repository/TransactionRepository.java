@@ -1,18 +1,72 @@
 package com.kheyma.repository;
 
 import com.kheyma.model.Transaction;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface TransactionRepository extends MongoRepository<Transaction, String> {
+public interface TransactionRepository extends MongoRepository<Transaction, String>, TransactionRepositoryCustom {
     List<Transaction> findByUserId(String userId);
     List<Transaction> findByUserIdOrderByDateDesc(String userId);
     List<Transaction> findByDateBetween(LocalDate startDate, LocalDate endDate);
     Optional<Transaction> findTopByOrderByTransIdDesc(); // Get highest transId
     List<Transaction> findByLocationLocationId(String locationId);
+    
+    // Keyset pages, newest first: pass PageRequest.of(0, n, TransactionRepository.KEYSET_ORDER) and, after the
+    // first page, the (date, _id) of the previous page's last item. Range predicates instead of skip keep every
+    // page as cheap as the first. `type` is Transaction or a projection such as TransactionSummary.
+    Sort KEYSET_ORDER = Sort.by(Sort.Direction.DESC, "date", "id");
+    
+    @Query("{}")
+    <T> List<T> findPage(Pageable pageable, Class<T> type);
+    
+    @Query("{ '$or': [ { 'date': { '$lt': ?0 } }, { 'date': ?0, '_id': { '$lt': ?1 } } ] }")
+    <T> List<T> findPageAfter(LocalDate date, ObjectId id, Pageable pageable, Class<T> type);
+    
+    // Same exclusive bounds as findByDateBetween
+    @Query("{ 'date': { '$gt': ?0, '$lt': ?1 } }")
+    <T> List<T> findPageByDateRange(LocalDate startDate, LocalDate endDate, Pageable pageable, Class<T> type);
+    
+    @Query("{ 'date': { '$gt': ?0, '$lt': ?1 }, '$or': [ { 'date': { '$lt': ?2 } }, { 'date': ?2, '_id': { '$lt': ?3 } } ] }")
+    <T> List<T> findPageByDateRangeAfter(LocalDate startDate, LocalDate endDate, LocalDate date, ObjectId id,
+                                         Pageable pageable, Class<T> type);
+    
+    @Query("{ 'location.locationId': ?0 }")
+    <T> List<T> findPageByLocation(String locationId, Pageable pageable, Class<T> type);
+    
+    @Query("{ 'location.locationId': ?0, '$or': [ { 'date': { '$lt': ?1 } }, { 'date': ?1, '_id': { '$lt': ?2 } } ] }")
+    <T> List<T> findPageByLocationAfter(String locationId, LocalDate date, ObjectId id, Pageable pageable,
+                                        Class<T> type);
+    
+    // Cursor-backed streams for reports - callers must close them
+    @Meta(cursorBatchSize = 1000)
+    @Query("{ 'date': { '$gte': ?0, '$lte': ?1 } }")
+    Stream<Transaction> streamByDateRange(LocalDate startDate, LocalDate endDate);
+    
+    @Meta(cursorBatchSize = 1000)
+    @Query("{ 'date': { '$gte': ?0, '$lte': ?1 }, 'location.locationId': ?2 }")
+    Stream<Transaction> streamByDateRangeAndLocation(LocalDate startDate, LocalDate endDate, String locationId);
+    
+    @Meta(cursorBatchSize = 1000)
+    @Query("{ '_id': { '$gte': ?0, '$lt': ?1 } }")
+    Stream<Transaction> streamByIdRange(ObjectId fromInclusive, ObjectId toExclusive);
+    
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{}", fields = "{ 'userId': 1, 'date': 1, 'amount': 1, 'packageType': 1, 'location.locationId': 1 }")
+    Stream<Transaction> streamAllForMetrics();
+    
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{ '_id': { '$lt': ?0 } }",
+            fields = "{ 'userId': 1, 'date': 1, 'amount': 1, 'packageType': 1, 'location.locationId': 1 }")
+    Stream<Transaction> streamForMetricsBefore(ObjectId before);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.kheyma.repository;
+
+import com.kheyma.dto.RevenueBreakdown;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+
+public interface TransactionRepositoryCustom {
+    double sumAmountByDateBetween(LocalDate startDate, LocalDate endDate);
+    double sumAmountByUserId(String userId);
+    // Totals of the transactions whose _id is below `before`, grouped by package, location and day in one $facet
+    RevenueBreakdown aggregateRevenueBreakdown(ObjectId before);
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.kheyma.repository;
+
+import com.kheyma.dto.RevenueBreakdown;
+import com.kheyma.model.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+@RequiredArgsConstructor
+public class TransactionRepositoryImpl implements TransactionRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public double sumAmountByDateBetween(LocalDate startDate, LocalDate endDate) {
+        // Same exclusive bounds as the derived findByDateBetween query
+        return sumAmount(Criteria.where("date").gt(startDate).lt(endDate));
+    }
+    
+    @Override
+    public double sumAmountByUserId(String userId) {
+        return sumAmount(Criteria.where("userId").is(userId));
+    }
+    
+    @Override
+    public RevenueBreakdown aggregateRevenueBreakdown(ObjectId before) {
+        // LocalDate is stored as midnight in the JVM time zone, so format days in that zone too
+        DateOperators.DateToString day = DateOperators.DateToString.dateOf("date")
+                .toString("%Y-%m-%d")
+                .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId()));
+        
+        Aggregation aggregation = newAggregation(
+                match(Criteria.where("_id").lt(before)),
+                facet(
+                        group().count().as("count").sum("amount").as("revenue")
+                ).as("total")
+                .and(
+                        group("packageType").count().as("count").sum("amount").as("revenue")
+                ).as("byPackage")
+                .and(
+                        group("location.locationId").count().as("count").sum("amount").as("revenue")
+                                .last("location.name").as("name")
+                                .last("location.latitude").as("latitude")
+                                .last("location.longitude").as("longitude")
+                ).as("byLocation")
+                .and(
+                        project("amount").and(day).as("day"),
+                        group("day").count().as("count").sum("amount").as("revenue"),
+                        sort(Sort.Direction.ASC, "_id")
+                ).as("byDay")
+        );
+        
+        Document result = mongoTemplate.aggregate(aggregation, Transaction.class, Document.class)
+                .getUniqueMappedResult();
+        
+        RevenueBreakdown breakdown = new RevenueBreakdown();
+        if (result == null) {
+            return breakdown;
+        }
+        
+        List<Document> total = result.getList("total", Document.class);
+        if (!total.isEmpty()) {
+            breakdown.setTotal(toBucket(total.get(0)));
+        }
+        result.getList("byPackage", Document.class).forEach(d -> breakdown.getByPackage().add(toBucket(d)));
+        result.getList("byLocation", Document.class).forEach(d -> breakdown.getByLocation().add(toBucket(d)));
+        result.getList("byDay", Document.class).forEach(d -> breakdown.getByDay().add(toBucket(d)));
+        return breakdown;
+    }
+    
+    private double sumAmount(Criteria criteria) {
+        Aggregation aggregation = newAggregation(
+                match(criteria),
+                group().sum("amount").as("revenue")
+        );
+        Document result = mongoTemplate.aggregate(aggregation, Transaction.class, Document.class)
+                .getUniqueMappedResult();
+        return result != null ? toDouble(result.get("revenue")) : 0.0;
+    }
+    
+    private RevenueBreakdown.Bucket toBucket(Document document) {
+        RevenueBreakdown.Bucket bucket = new RevenueBreakdown.Bucket();
+        Object id = document.get("_id");
+        bucket.setKey(id != null ? id.toString() : null);
+        bucket.setCount(((Number) document.get("count")).longValue());
+        bucket.setRevenue(toDouble(document.get("revenue")));
+        bucket.setName(document.getString("name"));
+        bucket.setLatitude(document.get("latitude") != null ? toDouble(document.get("latitude")) : null);
+        bucket.setLongitude(document.get("longitude") != null ? toDouble(document.get("longitude")) : null);
+        return bucket;
+    }
+    
+    private double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : 0.0;
+    }
+}
\ No newline at end of file
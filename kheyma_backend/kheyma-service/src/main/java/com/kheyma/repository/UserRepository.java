@@ -1,13 +1,29 @@
 package com.kheyma.repository;
 
 import com.kheyma.model.User;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByEmail(String email);
+    List<User> findByEmailIn(Collection<String> emails);
     boolean existsByEmail(String email);
+    
+    // Keyset pages in _id (creation) order; `type` is User or a projection such as UserSummary
+    Sort KEYSET_ORDER = Sort.by(Sort.Direction.ASC, "id");
+    
+    @Query("{}")
+    <T> List<T> findPage(Pageable pageable, Class<T> type);
+    
+    @Query("{ '_id': { '$gt': ?0 } }")
+    <T> List<T> findPageAfter(ObjectId id, Pageable pageable, Class<T> type);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.kheyma.repository;
+
+import com.kheyma.model.UserSpendingSummary;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserSpendingSummaryRepository extends MongoRepository<UserSpendingSummary, String> {
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.kheyma.search;
+
+import com.kheyma.model.Location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable prefix index over normalized name and description tokens. All tokens sit in one sorted array,
+// so the tokens starting with a prefix form a contiguous run found by binary search.
+public final class PrefixIndex {
+    
+    private static final int NAME_EXACT = 6;
+    private static final int NAME_PREFIX = 4;
+    private static final int NAME_LEADING_BONUS = 2; // The name starts with the query token
+    private static final int DESCRIPTION_EXACT = 2;
+    private static final int DESCRIPTION_PREFIX = 1;
+    
+    private final Location[] documents;
+    private final String[] terms;
+    private final int[] postingDocument;
+    private final int[] postingFlags;
+    
+    private PrefixIndex(Location[] documents, String[] terms, int[] postingDocument, int[] postingFlags) {
+        this.documents = documents;
+        this.terms = terms;
+        this.postingDocument = postingDocument;
+        this.postingFlags = postingFlags;
+    }
+    
+    public static PrefixIndex of(Collection<Location> locations) {
+        Location[] documents = locations.toArray(new Location[0]);
+        List<Posting> postings = new ArrayList<>();
+        for (int doc = 0; doc < documents.length; doc++) {
+            List<String> nameTokens = TextNormalizer.tokens(documents[doc].getName());
+            for (int position = 0; position < nameTokens.size(); position++) {
+                postings.add(new Posting(nameTokens.get(position), doc, true, position == 0));
+            }
+            for (String token : TextNormalizer.tokens(documents[doc].getDescription())) {
+                postings.add(new Posting(token, doc, false, false));
+            }
+        }
+        postings.sort(Comparator.comparing(Posting::term));
+        
+        String[] terms = new String[postings.size()];
+        int[] postingDocument = new int[postings.size()];
+        int[] postingFlags = new int[postings.size()];
+        for (int i = 0; i < postings.size(); i++) {
+            Posting posting = postings.get(i);
+            terms[i] = posting.term();
+            postingDocument[i] = posting.document();
+            // Bit 0 marks name postings, bit 1 the name's first token
+            postingFlags[i] = (posting.name() ? 1 : 0) | (posting.leading() ? 2 : 0);
+        }
+        return new PrefixIndex(documents, terms, postingDocument, postingFlags);
+    }
+    
+    public int size() {
+        return documents.length;
+    }
+    
+    // Every query token must prefix-match a name or description token; the last one may be half typed.
+    // Ranked by score, then shorter names, then alphabetically.
+    public List<Location> suggest(String query, int limit) {
+        List<String> queryTokens = TextNormalizer.tokens(query);
+        if (queryTokens.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        Map<Integer, Integer> scores = null;
+        for (String token : queryTokens) {
+            Map<Integer, Integer> previous = scores;
+            Map<Integer, Integer> matched = match(token, previous);
+            if (previous != null) {
+                matched.replaceAll((doc, score) -> score + previous.get(doc));
+            }
+            scores = matched;
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+        
+        Map<Integer, Integer> ranked = scores;
+        return ranked.keySet().stream()
+                .sorted(Comparator.<Integer>comparingInt(ranked::get).reversed()
+                        .thenComparingInt(doc -> nameOf(doc).length())
+                        .thenComparing(this::nameOf))
+                .limit(limit)
+                .map(doc -> documents[doc])
+                .toList();
+    }
+    
+    // Best score of each document for one token, restricted to `candidates` when given
+    private Map<Integer, Integer> match(String token, Map<Integer, Integer> candidates) {
+        Map<Integer, Integer> best = new HashMap<>();
+        for (int i = lowerBound(token); i < terms.length && terms[i].startsWith(token); i++) {
+            int doc = postingDocument[i];
+            if (candidates != null && !candidates.containsKey(doc)) {
+                continue;
+            }
+            boolean exact = terms[i].length() == token.length();
+            boolean name = (postingFlags[i] & 1) != 0;
+            int score = name
+                    ? (exact ? NAME_EXACT : NAME_PREFIX) + ((postingFlags[i] & 2) != 0 ? NAME_LEADING_BONUS : 0)
+                    : (exact ? DESCRIPTION_EXACT : DESCRIPTION_PREFIX);
+            best.merge(doc, score, Math::max);
+        }
+        return best;
+    }
+    
+    private int lowerBound(String token) {
+        int index = Arrays.binarySearch(terms, token);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && terms[index - 1].equals(token)) {
+            index--;
+        }
+        return index;
+    }
+    
+    private String nameOf(int doc) {
+        return documents[doc].getName() != null ? documents[doc].getName() : "";
+    }
+    
+    private record Posting(String term, int document, boolean name, boolean leading) {
+    }
+}
\ No newline at end of file
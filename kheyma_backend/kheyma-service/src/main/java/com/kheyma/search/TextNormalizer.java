@@ -0,0 +1,50 @@
+package com.kheyma.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Folds text so that what a user types on any keyboard matches the stored spelling: case, Latin accents
+// (e-acute -> e), Arabic short vowels and tatweel, and the Arabic letter variants people type interchangeably.
+public final class TextNormalizer {
+    
+    // Combining marks left by NFD, which covers Latin accents and Arabic harakat, shadda, sukun and hamza above/below
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    
+    private TextNormalizer() {
+    }
+    
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            switch (c) {
+                case '\u0640' -> { } // tatweel
+                case '\u0671' -> folded.append('\u0627'); // alef wasla -> alef
+                case '\u0629' -> folded.append('\u0647'); // ta marbuta -> ha
+                case '\u0649' -> folded.append('\u064A'); // alef maqsura -> ya
+                case '\u00DF' -> folded.append("ss");
+                case '\u0131' -> folded.append('i'); // dotless i
+                default -> folded.append(c);
+            }
+        }
+        return folded.toString().toLowerCase(Locale.ROOT);
+    }
+    
+    public static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalize(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
\ No newline at end of file
@@ -1,10 +1,18 @@
 package com.kheyma.service;
 
 import com.kheyma.aspect.Auditable;
+import com.kheyma.config.CacheConfig;
+import com.kheyma.dto.CursorPage;
 import com.kheyma.dto.UserDTO;
 import com.kheyma.model.User;
+import com.kheyma.pagination.Cursor;
+import com.kheyma.projection.UserSummary;
+import com.kheyma.projection.View;
 import com.kheyma.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -19,8 +27,20 @@ public class AdminService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    public CursorPage<?> getAllUsers(String cursor, int size, View view) {
+        Cursor after = Cursor.decode(cursor);
+        Pageable page = PageRequest.of(0, Cursor.pageSize(size) + 1, UserRepository.KEYSET_ORDER);
+        Class<?> type = view == View.SUMMARY ? UserSummary.class : User.class;
+        List<?> fetched = after == null
+                ? userRepository.findPage(page, type)
+                : userRepository.findPageAfter(after.getId(), page, type);
+        fetched.forEach(item -> {
+            if (item instanceof User user) {
+                user.setPasswordHash(null);
+            }
+        });
+        return CursorPage.of(fetched, Cursor.pageSize(size),
+                item -> item instanceof User user ? user.getId() : ((UserSummary) item).getId());
     }
     
     public User getUserById(String id) {
@@ -59,6 +79,7 @@ public class AdminService {
     }
     
     @Auditable
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
     public void deleteUser(String id) {
         if (id == null) {
             throw new IllegalArgumentException("User ID cannot be null");
@@ -0,0 +1,237 @@
+package com.kheyma.service;
+
+import com.kheyma.analytics.LogHistogram;
+import com.kheyma.config.CacheConfig;
+import com.kheyma.dto.AmountDistribution;
+import com.kheyma.model.AmountHistogram;
+import com.kheyma.model.Transaction;
+import com.kheyma.repository.AmountHistogramRepository;
+import com.kheyma.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class AmountDistributionService {
+    
+    private static final int DEFAULT_MONTHS = 12;
+    
+    private final MongoTemplate mongoTemplate;
+    private final AmountHistogramRepository amountHistogramRepository;
+    private final TransactionRepository transactionRepository;
+    
+    public void record(Transaction transaction) {
+        recordAll(List.of(transaction));
+    }
+    
+    // Folds a batch of bookings into one upsert per touched histogram
+    public void recordAll(Collection<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        Map<String, LogHistogram> deltas = new LinkedHashMap<>();
+        Map<String, AmountHistogram> documents = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            for (AmountHistogram histogram : histogramsOf(transaction)) {
+                deltas.computeIfAbsent(histogram.getId(), id -> new LogHistogram()).add(transaction.getAmount());
+                documents.putIfAbsent(histogram.getId(), histogram);
+            }
+        }
+        
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AmountHistogram.class);
+        LocalDateTime now = LocalDateTime.now();
+        deltas.forEach((id, delta) -> {
+            AmountHistogram document = documents.get(id);
+            Update update = new Update()
+                    .inc("count", delta.getCount())
+                    .inc("sum", delta.getSum())
+                    .min("min", delta.getMin())
+                    .max("max", delta.getMax())
+                    .setOnInsert("dimension", document.getDimension())
+                    .setOnInsert("scope", document.getScope())
+                    .setOnInsert("month", document.getMonth())
+                    .set("updatedAt", now);
+            if (delta.getZeroCount() > 0) {
+                update.inc("zeroCount", delta.getZeroCount());
+            }
+            delta.getBuckets().forEach((index, n) -> update.inc("buckets." + index, n));
+            ops.upsert(Query.query(Criteria.where("_id").is(id)), update);
+        });
+        ops.execute();
+    }
+    
+    // Merges the monthly histograms of one package, one location, or all bookings; defaults to the last 12 months
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE,
+            key = "{'amounts', #packageType, #locationId, #from, #to, #quantiles}", sync = true)
+    public AmountDistribution getDistribution(Transaction.PackageType packageType, String locationId,
+                                              YearMonth from, YearMonth to, List<Double> quantiles) {
+        if (packageType != null && locationId != null) {
+            throw new IllegalArgumentException("Filter by package or by location, not both");
+        }
+        YearMonth toMonth = to != null ? to : YearMonth.now();
+        YearMonth fromMonth = from != null ? from : toMonth.minusMonths(DEFAULT_MONTHS - 1);
+        if (fromMonth.isAfter(toMonth)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        for (Double q : quantiles) {
+            if (q == null || q < 0 || q > 1) {
+                throw new IllegalArgumentException("Quantiles must be between 0 and 1");
+            }
+        }
+        
+        AmountHistogram.Dimension dimension = AmountHistogram.Dimension.ALL;
+        String scope = AmountHistogram.ALL_SCOPE;
+        if (packageType != null) {
+            dimension = AmountHistogram.Dimension.PACKAGE;
+            scope = packageType.name();
+        } else if (locationId != null) {
+            dimension = AmountHistogram.Dimension.LOCATION;
+            scope = locationId;
+        }
+        
+        LogHistogram merged = new LogHistogram();
+        for (AmountHistogram stored : amountHistogramRepository.findByScopeAndMonthRange(
+                dimension, scope, fromMonth.toString(), toMonth.toString())) {
+            merged.merge(toHistogram(stored));
+        }
+        
+        AmountDistribution distribution = new AmountDistribution();
+        distribution.setPackageType(packageType);
+        distribution.setLocationId(locationId);
+        distribution.setFromMonth(fromMonth.toString());
+        distribution.setToMonth(toMonth.toString());
+        distribution.setCount(merged.getCount());
+        distribution.setMean(merged.getCount() > 0 ? merged.getSum() / merged.getCount() : null);
+        distribution.setMin(merged.getMin());
+        distribution.setMax(merged.getMax());
+        distribution.setRelativeAccuracy(LogHistogram.RELATIVE_ACCURACY);
+        
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Double q : quantiles) {
+            values.put(quantileLabel(q), merged.quantile(q));
+        }
+        distribution.setQuantiles(values);
+        
+        if (merged.getZeroCount() > 0) {
+            distribution.getHistogram().add(new AmountDistribution.Bin(merged.getMin(), 0.0, merged.getZeroCount()));
+        }
+        merged.getBuckets().forEach((index, n) -> distribution.getHistogram().add(
+                new AmountDistribution.Bin(LogHistogram.lowerBound(index), LogHistogram.upperBound(index), n)));
+        return distribution;
+    }
+    
+    // Rebuilds every histogram from the booking history, e.g. after enabling histograms on existing data.
+    // Stored histograms are read first and the rebuild only counts bookings before the watermark; a histogram
+    // written since then may hold bookings the rebuild did not see, so it is left for the next run. The others
+    // are overwritten, or removed as orphans, only while their updatedAt is still the value read, and readers
+    // never see a missing histogram. Missing histograms are upserted like recordAll.
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
+    public int rebuild() {
+        RebuildWatermark watermark = RebuildWatermark.now();
+        Map<String, AmountHistogram> stored = new HashMap<>();
+        amountHistogramRepository.findAll().forEach(histogram -> stored.put(histogram.getId(), histogram));
+        
+        Map<String, LogHistogram> histograms = new HashMap<>();
+        Map<String, AmountHistogram> documents = new HashMap<>();
+        try (Stream<Transaction> transactions =
+                     transactionRepository.streamForMetricsBefore(watermark.transactionsBefore())) {
+            transactions.forEach(transaction -> histogramsOf(transaction).forEach(histogram -> {
+                histograms.computeIfAbsent(histogram.getId(), k -> new LogHistogram()).add(transaction.getAmount());
+                documents.putIfAbsent(histogram.getId(), histogram);
+            }));
+        }
+        
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AmountHistogram.class);
+        int writes = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (AmountHistogram document : documents.values()) {
+            LogHistogram rebuilt = histograms.get(document.getId());
+            AmountHistogram current = stored.get(document.getId());
+            Map<String, Long> rebuiltBuckets = rebuilt.toSparse();
+            if (current == null) {
+                Update update = new Update()
+                        .inc("count", rebuilt.getCount())
+                        .inc("sum", rebuilt.getSum())
+                        .inc("zeroCount", rebuilt.getZeroCount())
+                        .min("min", rebuilt.getMin())
+                        .max("max", rebuilt.getMax())
+                        .setOnInsert("dimension", document.getDimension())
+                        .setOnInsert("scope", document.getScope())
+                        .setOnInsert("month", document.getMonth())
+                        .set("updatedAt", now);
+                rebuiltBuckets.forEach((index, n) -> update.inc("buckets." + index, n));
+                ops.upsert(Query.query(Criteria.where("_id").is(document.getId())), update);
+                writes++;
+                continue;
+            }
+            if (!watermark.isQuiet(current.getUpdatedAt())
+                    || rebuilt.getCount() == current.getCount() && rebuilt.getZeroCount() == current.getZeroCount()
+                    && rebuiltBuckets.equals(current.getBuckets())) {
+                continue;
+            }
+            ops.updateOne(unchanged(current), new Update()
+                    .set("count", rebuilt.getCount())
+                    .set("sum", rebuilt.getSum())
+                    .set("zeroCount", rebuilt.getZeroCount())
+                    .set("min", rebuilt.getMin())
+                    .set("max", rebuilt.getMax())
+                    .set("buckets", rebuiltBuckets)
+                    .set("updatedAt", now));
+            writes++;
+        }
+        for (AmountHistogram histogram : stored.values()) {
+            if (!documents.containsKey(histogram.getId()) && watermark.isQuiet(histogram.getUpdatedAt())) {
+                ops.remove(unchanged(histogram));
+                writes++;
+            }
+        }
+        if (writes > 0) {
+            ops.execute();
+        }
+        return documents.size();
+    }
+    
+    private Query unchanged(AmountHistogram histogram) {
+        return Query.query(Criteria.where("_id").is(histogram.getId()).and("updatedAt").is(histogram.getUpdatedAt()));
+    }
+    
+    private LogHistogram toHistogram(AmountHistogram stored) {
+        return LogHistogram.of(stored.getBuckets(), stored.getZeroCount(), stored.getCount(),
+                stored.getSum(), stored.getMin(), stored.getMax());
+    }
+    
+    private String quantileLabel(double q) {
+        String percent = Double.toString(q * 100).replaceAll("\\.0$", "");
+        return "p" + percent;
+    }
+    
+    private List<AmountHistogram> histogramsOf(Transaction transaction) {
+        String month = YearMonth.from(transaction.getDate()).toString();
+        return List.of(
+                emptyHistogram(AmountHistogram.Dimension.ALL, AmountHistogram.ALL_SCOPE, month),
+                emptyHistogram(AmountHistogram.Dimension.PACKAGE, transaction.getPackageType().name(), month),
+                emptyHistogram(AmountHistogram.Dimension.LOCATION, transaction.getLocation().getLocationId(), month)
+        );
+    }
+    
+    private AmountHistogram emptyHistogram(AmountHistogram.Dimension dimension, String scope, String month) {
+        AmountHistogram histogram = new AmountHistogram();
+        histogram.setId(AmountHistogram.idOf(dimension, scope, month));
+        histogram.setDimension(dimension);
+        histogram.setScope(scope);
+        histogram.setMonth(month);
+        return histogram;
+    }
+}
\ No newline at end of file
@@ -1,154 +1,197 @@
 package com.kheyma.service;
 
+import com.kheyma.analytics.AnalyticsEngine;
+import com.kheyma.concurrent.QueryFanOut;
+import com.kheyma.config.CacheConfig;
+import com.kheyma.dto.DashboardAnalytics;
+import com.kheyma.dto.PopularLocation;
+import com.kheyma.dto.RevenueStatistics;
+import com.kheyma.dto.TransactionReport;
+import com.kheyma.dto.TransactionStatistics;
+import com.kheyma.model.AnalyticsSnapshot;
+import com.kheyma.model.RevenueRollup;
 import com.kheyma.model.Transaction;
 import com.kheyma.repository.LocationRepository;
 import com.kheyma.repository.ReviewRepository;
 import com.kheyma.repository.TransactionRepository;
 import com.kheyma.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class AnalyticsService {
     
+    private static final int REPORT_TOP_LOCATIONS = 10;
+    private static final int POPULAR_LOCATIONS = 10;
+    
     private final UserRepository userRepository;
     private final LocationRepository locationRepository;
     private final TransactionRepository transactionRepository;
     private final ReviewRepository reviewRepository;
+    private final RevenueRollupService revenueRollupService;
+    private final AnalyticsEngine analyticsEngine;
+    private final CustomerSketchService customerSketchService;
+    private final AnalyticsSnapshotService analyticsSnapshotService;
+    private final QueryFanOut queryFanOut;
     
-    public Map<String, Object> getDashboardAnalytics() {
-        Map<String, Object> analytics = new HashMap<>();
-        
-        analytics.put("totalUsers", userRepository.count());
-        analytics.put("totalLocations", locationRepository.count());
-        analytics.put("totalTransactions", transactionRepository.count());
-        analytics.put("totalReviews", reviewRepository.count());
-        
-        List<Transaction> allTransactions = transactionRepository.findAll();
-        
-        double totalRevenue = allTransactions.stream()
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-        analytics.put("totalRevenue", totalRevenue);
-        
-        // This month's transactions
-        LocalDate startOfMonth = LocalDate.now().withDayOfMonth(1);
-        LocalDate endOfMonth = LocalDate.now().withDayOfMonth(
-                LocalDate.now().lengthOfMonth()
-        );
-        
-        List<Transaction> monthTransactions = transactionRepository
-                .findByDateBetween(startOfMonth, endOfMonth);
-        
-        double monthRevenue = monthTransactions.stream()
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-        analytics.put("monthlyRevenue", monthRevenue);
-        analytics.put("monthlyTransactions", monthTransactions.size());
-        
-        return analytics;
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, key = "'dashboard'", sync = true)
+    public DashboardAnalytics getDashboardAnalytics() {
+        YearMonth currentMonth = YearMonth.now();
+        
+        // Independent round trips run concurrently, so latency is the slowest query rather than the sum
+        try (QueryFanOut.Scope scope = queryFanOut.open()) {
+            var totalUsers = scope.fork(userRepository::count);
+            var totalLocations = scope.fork(locationRepository::count);
+            var totalTransactions = scope.fork(transactionRepository::count);
+            var totalReviews = scope.fork(reviewRepository::count);
+            var total = scope.fork(revenueRollupService::getTotal);
+            var month = scope.fork(() -> revenueRollupService.getMonth(currentMonth));
+            var customers = scope.fork(() -> customerSketchService
+                    .computeCustomerMetrics(currentMonth.atDay(1), currentMonth.atEndOfMonth()));
+            scope.join();
+            
+            DashboardAnalytics analytics = new DashboardAnalytics();
+            analytics.setTotalUsers(totalUsers.get());
+            analytics.setTotalLocations(totalLocations.get());
+            analytics.setTotalTransactions(totalTransactions.get());
+            analytics.setTotalReviews(totalReviews.get());
+            analytics.setTotalRevenue(total.get().getRevenue());
+            
+            // This month's transactions
+            analytics.setMonthlyRevenue(month.get().getRevenue());
+            analytics.setMonthlyTransactions(month.get().getCount());
+            analytics.setMonthlyUniqueCustomers(customers.get().getUniqueCustomers());
+            analytics.setMonthlyRepeatBookingRate(customers.get().getRepeatBookingRate());
+            
+            return analytics;
+        }
     }
     
-    public Map<String, Object> getTransactionStatistics() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        List<Transaction> allTransactions = transactionRepository.findAll();
-        
-        Map<Transaction.PackageType, Long> transactionsByPackage = allTransactions.stream()
-                .collect(Collectors.groupingBy(Transaction::getPackageType, Collectors.counting()));
-        stats.put("transactionsByPackage", transactionsByPackage);
-        
-        Map<String, Long> transactionsByLocation = allTransactions.stream()
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, key = "'transactionStatistics'", sync = true)
+    public TransactionStatistics getTransactionStatistics() {
+        Map<Transaction.PackageType, Long> transactionsByPackage = new EnumMap<>(Transaction.PackageType.class);
+        Map<Transaction.PackageType, Double> revenueByPackage = new EnumMap<>(Transaction.PackageType.class);
+        
+        for (RevenueRollup rollup : revenueRollupService.getByDimension(RevenueRollup.Dimension.PACKAGE)) {
+            Transaction.PackageType packageType = Transaction.PackageType.valueOf(rollup.getKey());
+            transactionsByPackage.put(packageType, rollup.getCount());
+            revenueByPackage.put(packageType, rollup.getRevenue());
+        }
+        
+        // Locations sharing a name are reported together, as before
+        Map<String, Long> transactionsByLocation = revenueRollupService
+                .getByDimension(RevenueRollup.Dimension.LOCATION).stream()
                 .collect(Collectors.groupingBy(
-                        t -> t.getLocation().getName(),
-                        Collectors.counting()
+                        RevenueRollup::getName,
+                        Collectors.summingLong(RevenueRollup::getCount)
                 ));
-        stats.put("transactionsByLocation", transactionsByLocation);
         
-        // Revenue by package
-        Map<Transaction.PackageType, Double> revenueByPackage = allTransactions.stream()
-                .collect(Collectors.groupingBy(
-                        Transaction::getPackageType,
-                        Collectors.summingDouble(Transaction::getAmount)
-                ));
-        stats.put("revenueByPackage", revenueByPackage);
-        
-        return stats;
+        return new TransactionStatistics(transactionsByPackage, transactionsByLocation, revenueByPackage);
     }
     
-    public Map<String, Object> getRevenueStatistics() {
-        Map<String, Object> revenue = new HashMap<>();
-        
-        List<Transaction> allTransactions = transactionRepository.findAll();
-        
-        double totalRevenue = allTransactions.stream()
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-        revenue.put("totalRevenue", totalRevenue);
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, key = "'revenueStatistics'", sync = true)
+    public RevenueStatistics getRevenueStatistics() {
+        Optional<AnalyticsSnapshot> snapshot = analyticsSnapshotService.getLatestSnapshot();
+        if (snapshot.isPresent()) {
+            // Served from the latest materialized snapshot; months are compared as "yyyy-MM" strings
+            // and future-dated bookings are left out, as in the rollup fallback below
+            String currentMonth = YearMonth.now().toString();
+            String sixMonthsAgo = YearMonth.now().minusMonths(6).toString();
+            Map<String, Double> revenueByMonth = snapshot.get().getRevenueByMonth().entrySet().stream()
+                    .filter(e -> e.getKey().compareTo(sixMonthsAgo) >= 0 && e.getKey().compareTo(currentMonth) <= 0)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Double::sum, TreeMap::new));
+            return new RevenueStatistics(
+                    snapshot.get().getTotalRevenue(),
+                    snapshot.get().getAverageTransactionAmount(),
+                    revenueByMonth
+            );
+        }
+        
+        // No snapshot yet (fresh install) - fall back to the rollups
+        RevenueRollup total = revenueRollupService.getTotal();
         
         // Calculate average transaction amount
-        double avgTransaction = allTransactions.stream()
-                .mapToDouble(Transaction::getAmount)
-                .average()
-                .orElse(0.0);
-        revenue.put("averageTransactionAmount", avgTransaction);
+        double avgTransaction = total.getCount() > 0 ? total.getRevenue() / total.getCount() : 0.0;
         
-        // Get revenue by month (last 6 months)
-        LocalDate sixMonthsAgo = LocalDate.now().minusMonths(6);
-        List<Transaction> recentTransactions = transactionRepository
-                .findByDateBetween(sixMonthsAgo, LocalDate.now());
+        // Get revenue by month (last 6 months) from the daily buckets
+        LocalDate today = LocalDate.now();
+        List<RevenueRollup> recentDays = revenueRollupService
+                .getDays(today.minusMonths(6).toString(), today.toString());
         
-        Map<String, Double> revenueByMonth = recentTransactions.stream()
+        Map<String, Double> revenueByMonth = recentDays.stream()
                 .collect(Collectors.groupingBy(
-                        t -> t.getDate().getYear() + "-" + String.format("%02d", t.getDate().getMonthValue()),
-                        Collectors.summingDouble(Transaction::getAmount)
+                        r -> YearMonth.from(LocalDate.parse(r.getKey())).toString(),
+                        TreeMap::new,
+                        Collectors.summingDouble(RevenueRollup::getRevenue)
                 ));
-        revenue.put("revenueByMonth", revenueByMonth);
         
-        return revenue;
+        return new RevenueStatistics(total.getRevenue(), avgTransaction, revenueByMonth);
     }
     
-    public List<Map<String, Object>> getPopularLocations() {
-        List<Transaction> allTransactions = transactionRepository.findAll();
-        
-        Map<String, Long> transactionCounts = allTransactions.stream()
-                .collect(Collectors.groupingBy(
-                        t -> t.getLocation().getLocationId(),
-                        Collectors.counting()
-                ));
-        
-        Map<String, Double> locationRevenue = allTransactions.stream()
-                .collect(Collectors.groupingBy(
-                        t -> t.getLocation().getLocationId(),
-                        Collectors.summingDouble(Transaction::getAmount)
-                ));
-        
-        return transactionCounts.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(10)
-                .map(entry -> {
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("locationId", entry.getKey());
-                    item.put("transactionCount", entry.getValue());
-                    item.put("revenue", locationRevenue.getOrDefault(entry.getKey(), 0.0));
-                    
-                    // Get location details from first transaction with this location
-                    allTransactions.stream()
-                            .filter(t -> t.getLocation().getLocationId().equals(entry.getKey()))
-                            .findFirst()
-                            .ifPresent(t -> {
-                                item.put("name", t.getLocation().getName());
-                                item.put("latitude", t.getLocation().getLatitude());
-                                item.put("longitude", t.getLocation().getLongitude());
-                            });
-                    
-                    return item;
-                })
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, key = "'popularLocations'", sync = true)
+    public List<PopularLocation> getPopularLocations() {
+        Optional<AnalyticsSnapshot> snapshot = analyticsSnapshotService.getLatestSnapshot();
+        if (snapshot.isPresent()) {
+            // Snapshot locations are stored busiest first. Each version copies names and coordinates forward
+            // from the last, so a renamed location keeps its old name there; the rollups have the current one.
+            List<AnalyticsSnapshot.LocationTotals> top = snapshot.get().getLocations().stream()
+                    .limit(POPULAR_LOCATIONS)
+                    .toList();
+            Map<String, RevenueRollup> current = revenueRollupService.getLocations(
+                    top.stream().map(AnalyticsSnapshot.LocationTotals::getLocationId).toList());
+            return top.stream()
+                    .map(location -> {
+                        RevenueRollup rollup = current.get(location.getLocationId());
+                        boolean tracked = rollup != null && rollup.getName() != null;
+                        return new PopularLocation(
+                                location.getLocationId(),
+                                tracked ? rollup.getName() : location.getName(),
+                                tracked ? rollup.getLatitude() : location.getLatitude(),
+                                tracked ? rollup.getLongitude() : location.getLongitude(),
+                                location.getTransactionCount(),
+                                location.getRevenue()
+                        );
+                    })
+                    .collect(Collectors.toList());
+        }
+        
+        return revenueRollupService.getTopLocations().stream()
+                .map(rollup -> new PopularLocation(
+                        rollup.getKey(),
+                        rollup.getName(),
+                        rollup.getLatitude(),
+                        rollup.getLongitude(),
+                        rollup.getCount(),
+                        rollup.getRevenue()
+                ))
                 .collect(Collectors.toList());
     }
+    
+    // Ad-hoc range report folded straight off a server-side cursor, so memory stays flat however many rows match
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, key = "{'report', #startDate, #endDate, #locationId}", sync = true)
+    public TransactionReport getTransactionReport(LocalDate startDate, LocalDate endDate, String locationId) {
+        if (startDate == null || endDate == null) {
+            throw new IllegalArgumentException("Start and end date cannot be null");
+        }
+        TransactionReport report;
+        
+        try (Stream<Transaction> transactions = locationId != null
+                ? transactionRepository.streamByDateRangeAndLocation(startDate, endDate, locationId)
+                : transactionRepository.streamByDateRange(startDate, endDate)) {
+            report = analyticsEngine.analyze(transactions).toReport(REPORT_TOP_LOCATIONS);
+        }
+        
+        report.setStartDate(startDate);
+        report.setEndDate(endDate);
+        report.setLocationId(locationId);
+        return report;
+    }
 }
\ No newline at end of file
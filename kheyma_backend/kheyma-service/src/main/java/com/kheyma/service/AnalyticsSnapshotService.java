@@ -0,0 +1,181 @@
+package com.kheyma.service;
+
+import com.kheyma.analytics.AnalyticsEngine;
+import com.kheyma.config.CacheConfig;
+import com.kheyma.dto.SnapshotDiff;
+import com.kheyma.dto.TransactionReport;
+import com.kheyma.model.AnalyticsSnapshot;
+import com.kheyma.model.Transaction;
+import com.kheyma.repository.AnalyticsSnapshotRepository;
+import com.kheyma.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnalyticsSnapshotService {
+    
+    private static final ObjectId MIN_OBJECT_ID = new ObjectId(0, 0);
+    
+    private final AnalyticsSnapshotRepository analyticsSnapshotRepository;
+    private final TransactionRepository transactionRepository;
+    private final AnalyticsEngine analyticsEngine;
+    
+    // Transactions younger than this are left for the next run, so in-flight inserts with older ObjectIds are not skipped
+    @Value("${kheyma.analytics.snapshots.settle-lag:PT30S}")
+    private Duration settleLag;
+    
+    @Value("${kheyma.analytics.snapshots.retention:P90D}")
+    private Duration retention;
+    
+    public Optional<AnalyticsSnapshot> getLatestSnapshot() {
+        return analyticsSnapshotRepository.findTopByOrderByVersionDesc();
+    }
+    
+    public AnalyticsSnapshot getSnapshot(long version) {
+        return analyticsSnapshotRepository.findByVersion(version)
+                .orElseThrow(() -> new RuntimeException("Snapshot not found with version: " + version));
+    }
+    
+    @Scheduled(fixedDelayString = "${kheyma.analytics.snapshots.interval:PT15M}")
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
+    public void scheduledMaterialization() {
+        AnalyticsSnapshot snapshot = materialize();
+        analyticsSnapshotRepository.deleteByGeneratedAtBeforeAndVersionLessThan(
+                LocalDateTime.now().minus(retention), snapshot.getVersion());
+    }
+    
+    // Folds the transactions inserted since the previous snapshot's watermark into a new version. When another
+    // instance publishes the same version first, the unique index rejects this one and theirs is returned.
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
+    public AnalyticsSnapshot materialize() {
+        AnalyticsSnapshot previous = getLatestSnapshot().orElse(null);
+        ObjectId from = previous != null ? new ObjectId(previous.getWatermark()) : MIN_OBJECT_ID;
+        ObjectId to = new ObjectId((int) Instant.now().minus(settleLag).getEpochSecond(), 0);
+        if (to.compareTo(from) < 0) {
+            to = from;
+        }
+        
+        TransactionReport delta;
+        try (Stream<Transaction> transactions = transactionRepository.streamByIdRange(from, to)) {
+            delta = analyticsEngine.analyze(transactions).toReport(Integer.MAX_VALUE);
+        }
+        
+        AnalyticsSnapshot snapshot = previous != null ? copyOf(previous) : new AnalyticsSnapshot();
+        snapshot.setId(null);
+        snapshot.setVersion(previous != null ? previous.getVersion() + 1 : 1);
+        snapshot.setGeneratedAt(LocalDateTime.now());
+        snapshot.setWatermark(to.toHexString());
+        snapshot.setProcessedTransactions(delta.getTransactionCount());
+        applyDelta(snapshot, delta);
+        
+        try {
+            return analyticsSnapshotRepository.insert(snapshot);
+        } catch (DuplicateKeyException e) {
+            log.debug("Snapshot version {} already published by another instance", snapshot.getVersion());
+            return analyticsSnapshotRepository.findByVersion(snapshot.getVersion()).orElseThrow(() -> e);
+        }
+    }
+    
+    public SnapshotDiff diff(long fromVersion, long toVersion) {
+        return diff(getSnapshot(fromVersion), getSnapshot(toVersion));
+    }
+    
+    // Compares the latest snapshot with the newest one generated at least `period` earlier, e.g. week over week
+    public SnapshotDiff diffOverPeriod(Duration period) {
+        AnalyticsSnapshot latest = getLatestSnapshot()
+                .orElseThrow(() -> new RuntimeException("No analytics snapshot has been generated yet"));
+        AnalyticsSnapshot baseline = analyticsSnapshotRepository
+                .findTopByGeneratedAtLessThanEqualOrderByGeneratedAtDesc(latest.getGeneratedAt().minus(period))
+                .orElseThrow(() -> new RuntimeException("No analytics snapshot older than " + period));
+        return diff(baseline, latest);
+    }
+    
+    private SnapshotDiff diff(AnalyticsSnapshot from, AnalyticsSnapshot to) {
+        SnapshotDiff diff = new SnapshotDiff();
+        diff.setFromVersion(from.getVersion());
+        diff.setToVersion(to.getVersion());
+        diff.setFromGeneratedAt(from.getGeneratedAt());
+        diff.setToGeneratedAt(to.getGeneratedAt());
+        diff.setTransactionCountDelta(to.getTransactionCount() - from.getTransactionCount());
+        diff.setTotalRevenueDelta(to.getTotalRevenue() - from.getTotalRevenue());
+        diff.setAverageTransactionAmountDelta(to.getAverageTransactionAmount() - from.getAverageTransactionAmount());
+        
+        Map<String, Double> months = new TreeMap<>();
+        to.getRevenueByMonth().forEach((month, revenue) -> months.merge(month, revenue, Double::sum));
+        from.getRevenueByMonth().forEach((month, revenue) -> months.merge(month, -revenue, Double::sum));
+        months.values().removeIf(delta -> delta == 0.0);
+        diff.setRevenueByMonthDelta(months);
+        
+        Map<String, AnalyticsSnapshot.LocationTotals> before = from.getLocations().stream()
+                .collect(Collectors.toMap(AnalyticsSnapshot.LocationTotals::getLocationId, Function.identity()));
+        for (AnalyticsSnapshot.LocationTotals after : to.getLocations()) {
+            AnalyticsSnapshot.LocationTotals old = before.get(after.getLocationId());
+            long countDelta = after.getTransactionCount() - (old != null ? old.getTransactionCount() : 0);
+            double revenueDelta = after.getRevenue() - (old != null ? old.getRevenue() : 0.0);
+            if (countDelta != 0 || revenueDelta != 0.0) {
+                diff.getLocations().add(new SnapshotDiff.LocationDelta(
+                        after.getLocationId(), after.getName(), countDelta, revenueDelta));
+            }
+        }
+        diff.getLocations().sort(Comparator.comparingDouble(
+                (SnapshotDiff.LocationDelta d) -> Math.abs(d.getRevenueDelta())).reversed());
+        return diff;
+    }
+    
+    private void applyDelta(AnalyticsSnapshot snapshot, TransactionReport delta) {
+        snapshot.setTransactionCount(snapshot.getTransactionCount() + delta.getTransactionCount());
+        snapshot.setTotalRevenue(snapshot.getTotalRevenue() + delta.getTotalRevenue());
+        snapshot.setAverageTransactionAmount(snapshot.getTransactionCount() > 0
+                ? snapshot.getTotalRevenue() / snapshot.getTransactionCount()
+                : 0.0);
+        
+        Map<String, Double> months = new TreeMap<>(snapshot.getRevenueByMonth());
+        delta.getRevenueByMonth().forEach((month, revenue) -> months.merge(month, revenue, Double::sum));
+        snapshot.setRevenueByMonth(new LinkedHashMap<>(months));
+        
+        Map<String, AnalyticsSnapshot.LocationTotals> locations = new LinkedHashMap<>();
+        snapshot.getLocations().forEach(location -> locations.put(location.getLocationId(), location));
+        for (TransactionReport.LocationTotals totals : delta.getLocations()) {
+            AnalyticsSnapshot.LocationTotals location = locations.computeIfAbsent(totals.getLocationId(),
+                    id -> new AnalyticsSnapshot.LocationTotals(id, null, null, null, 0, 0.0));
+            location.setName(totals.getName());
+            location.setLatitude(totals.getLatitude());
+            location.setLongitude(totals.getLongitude());
+            location.setTransactionCount(location.getTransactionCount() + totals.getTransactionCount());
+            location.setRevenue(location.getRevenue() + totals.getRevenue());
+        }
+        List<AnalyticsSnapshot.LocationTotals> ordered = new ArrayList<>(locations.values());
+        ordered.sort(Comparator.comparingLong(AnalyticsSnapshot.LocationTotals::getTransactionCount)
+                .thenComparingDouble(AnalyticsSnapshot.LocationTotals::getRevenue)
+                .reversed());
+        snapshot.setLocations(ordered);
+    }
+    
+    private AnalyticsSnapshot copyOf(AnalyticsSnapshot source) {
+        AnalyticsSnapshot copy = new AnalyticsSnapshot();
+        copy.setTransactionCount(source.getTransactionCount());
+        copy.setTotalRevenue(source.getTotalRevenue());
+        copy.setRevenueByMonth(new LinkedHashMap<>(source.getRevenueByMonth()));
+        copy.setLocations(source.getLocations().stream()
+                .map(l -> new AnalyticsSnapshot.LocationTotals(l.getLocationId(), l.getName(), l.getLatitude(),
+                        l.getLongitude(), l.getTransactionCount(), l.getRevenue()))
+                .collect(Collectors.toList()));
+        return copy;
+    }
+}
\ No newline at end of file
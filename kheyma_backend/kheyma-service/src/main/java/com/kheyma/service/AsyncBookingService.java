@@ -0,0 +1,273 @@
+package com.kheyma.service;
+
+import com.kheyma.dto.BookingHandle;
+import com.kheyma.dto.BulkTransactionRequest;
+import com.kheyma.dto.BulkTransactionResult;
+import com.kheyma.dto.TransactionDTO;
+import com.kheyma.model.AsyncBooking;
+import com.kheyma.model.Transaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Write-behind booking mode: requests are queued in memory and a single writer persists them in batches
+// through the bulk ingestion path. Handles and Idempotency-Keys live in async_bookings, so polls and
+// replays can land on any instance behind the load balancer. The queue itself does not: bookings still
+// queued are lost if their instance dies, and their handle stays QUEUED until it expires; clients that
+// need a durable answer poll the handle until it is COMPLETED or FAILED.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AsyncBookingService {
+    
+    // How long an UNKNOWN booking may still land after its batch failed before a poll reports it FAILED
+    private static final Duration OUTCOME_GRACE = Duration.ofMinutes(1);
+    
+    private final TransactionService transactionService;
+    private final MongoTemplate mongoTemplate;
+    
+    @Value("${kheyma.bookings.async.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${kheyma.bookings.async.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${kheyma.bookings.async.linger:PT0.05S}")
+    private Duration linger;
+    
+    @Value("${kheyma.bookings.async.retention:PT24H}")
+    private Duration retention;
+    
+    private BlockingQueue<BookingHandle> queue;
+    private Thread writer;
+    private volatile boolean running;
+    
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::drainLoop, "booking-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    // The writer exits once the queue is empty, so bookings already accepted are still written
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+    
+    // Throws RejectedExecutionException when the queue is full
+    public BookingHandle submit(TransactionDTO dto, String userEmail, String idempotencyKey) {
+        if (userEmail == null) {
+            throw new IllegalArgumentException("User email cannot be null");
+        }
+        if (dto == null || dto.getLocationId() == null) {
+            throw new IllegalArgumentException("Transaction DTO and location ID cannot be null");
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        String dedupeKey = idempotencyKey != null ? userEmail + ":" + idempotencyKey : null;
+        AsyncBooking booking = new AsyncBooking(UUID.randomUUID().toString(), AsyncBooking.Status.QUEUED, now,
+                null, null, null, null, userEmail, dto.getLocationId(), dto.getAmount(), dto.getPackageType(),
+                dto.getDate(), dedupeKey, now.plus(retention));
+        try {
+            mongoTemplate.insert(booking);
+        } catch (DuplicateKeyException e) {
+            // The unique index on idempotencyKey decides the race, whichever instance got the other request
+            return replay(dedupeKey, dto);
+        }
+        
+        BookingHandle handle = toHandle(booking);
+        if (!queue.offer(handle)) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(booking.getId())), AsyncBooking.class);
+            throw new RejectedExecutionException("Booking queue is full");
+        }
+        return handle;
+    }
+    
+    // Empty for an unknown or expired handle, and for another user's handle unless the caller is an admin
+    public Optional<BookingHandle> getStatus(String handleId, String userEmail, boolean admin) {
+        return Optional.ofNullable(mongoTemplate.findById(handleId, AsyncBooking.class))
+                .filter(booking -> admin || booking.getUserEmail().equals(userEmail))
+                .map(this::resolve)
+                .map(this::toHandle);
+    }
+    
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    private BookingHandle replay(String dedupeKey, TransactionDTO dto) {
+        AsyncBooking original = mongoTemplate.findOne(
+                Query.query(Criteria.where("idempotencyKey").is(dedupeKey)), AsyncBooking.class);
+        if (original == null) {
+            // The original was rejected by a full queue and its key released in between; the caller may retry
+            throw new RejectedExecutionException("Booking with this Idempotency-Key is not available yet");
+        }
+        BookingHandle handle = toHandle(original);
+        if (!Objects.equals(handle.getRequest(), dto)) {
+            throw new IllegalArgumentException("Idempotency-Key was already used for a different booking");
+        }
+        return handle;
+    }
+    
+    // An UNKNOWN booking is COMPLETED once its transaction exists, and FAILED once the grace has passed without it
+    private AsyncBooking resolve(AsyncBooking booking) {
+        if (booking.getStatus() != AsyncBooking.Status.UNKNOWN) {
+            return booking;
+        }
+        Transaction transaction = mongoTemplate.findById(booking.getTransactionId(), Transaction.class);
+        if (transaction != null) {
+            booking.setStatus(AsyncBooking.Status.COMPLETED);
+            booking.setTransId(transaction.getTransId());
+            booking.setError(null);
+        } else if (booking.getCompletedAt().plus(OUTCOME_GRACE).isBefore(LocalDateTime.now())) {
+            booking.setStatus(AsyncBooking.Status.FAILED);
+            booking.setTransactionId(null);
+        } else {
+            return booking;
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(booking.getId())
+                .and("status").is(AsyncBooking.Status.UNKNOWN)), new Update()
+                .set("status", booking.getStatus())
+                .set("transactionId", booking.getTransactionId())
+                .set("transId", booking.getTransId())
+                .set("error", booking.getError()), AsyncBooking.class);
+        return booking;
+    }
+    
+    private BookingHandle toHandle(AsyncBooking booking) {
+        return new BookingHandle(booking.getId(), BookingHandle.Status.valueOf(booking.getStatus().name()),
+                booking.getAcceptedAt(), booking.getCompletedAt(), booking.getTransactionId(), booking.getTransId(),
+                booking.getError(), booking.getUserEmail(), new TransactionDTO(booking.getLocationId(),
+                        booking.getAmount(), booking.getPackageType(), booking.getDate()));
+    }
+    
+    private void drainLoop() {
+        List<BookingHandle> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                BookingHandle first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Give a burst a moment to fill the batch, then write whatever arrived
+                long deadline = System.nanoTime() + linger.toNanos();
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    BookingHandle next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+    
+    private void write(List<BookingHandle> batch) {
+        List<BulkTransactionRequest.Item> items = new ArrayList<>(batch.size());
+        List<String> transactionIds = new ArrayList<>(batch.size());
+        for (BookingHandle handle : batch) {
+            TransactionDTO dto = handle.getRequest();
+            items.add(new BulkTransactionRequest.Item(handle.getUserEmail(), dto.getLocationId(), dto.getAmount(),
+                    dto.getPackageType(), dto.getDate()));
+            transactionIds.add(new ObjectId().toHexString());
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations outcomes = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AsyncBooking.class);
+        try {
+            BulkTransactionResult result = transactionService.createTransactions(items, transactionIds);
+            for (BulkTransactionResult.ItemResult item : result.getItems()) {
+                BookingHandle handle = batch.get(item.getIndex());
+                if (item.getStatus() == BulkTransactionResult.Status.CREATED) {
+                    complete(outcomes, handle, AsyncBooking.Status.COMPLETED, now, item.getId(), item.getTransId(),
+                            null);
+                } else {
+                    complete(outcomes, handle, AsyncBooking.Status.FAILED, now, null, null, item.getError());
+                }
+            }
+        } catch (RuntimeException e) {
+            // Part of the batch may have been written before the failure, so each booking is looked up by ID
+            log.error("Writing {} queued bookings failed", batch.size(), e);
+            recordLookedUp(outcomes, batch, transactionIds, now);
+        }
+        try {
+            outcomes.execute();
+        } catch (RuntimeException e) {
+            log.error("Recording the outcome of {} queued bookings failed", batch.size(), e);
+        }
+    }
+    
+    // Bookings whose transaction exists are COMPLETED; the rest, or all of them when the lookup fails too,
+    // are UNKNOWN until a poll finds their transaction or the grace has passed
+    private void recordLookedUp(BulkOperations outcomes, List<BookingHandle> batch, List<String> transactionIds,
+                                LocalDateTime now) {
+        Map<String, Integer> written;
+        try {
+            Query query = Query.query(Criteria.where("_id").in(transactionIds));
+            query.fields().include("_id", "transId");
+            written = mongoTemplate.find(query, Transaction.class).stream()
+                    .collect(Collectors.toMap(Transaction::getId, Transaction::getTransId));
+        } catch (RuntimeException e) {
+            log.error("Looking up {} queued bookings failed", batch.size(), e);
+            written = Map.of();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            String transactionId = transactionIds.get(i);
+            if (written.containsKey(transactionId)) {
+                complete(outcomes, batch.get(i), AsyncBooking.Status.COMPLETED, now, transactionId,
+                        written.get(transactionId), null);
+            } else {
+                complete(outcomes, batch.get(i), AsyncBooking.Status.UNKNOWN, now, transactionId, null,
+                        "Booking outcome is not known yet");
+            }
+        }
+    }
+    
+    // One update per handle, all fields at once, so pollers never see a half-updated one
+    private void complete(BulkOperations outcomes, BookingHandle handle, AsyncBooking.Status status,
+                          LocalDateTime completedAt, String transactionId, Integer transId, String error) {
+        outcomes.updateOne(Query.query(Criteria.where("_id").is(handle.getHandle())), new Update()
+                .set("status", status)
+                .set("completedAt", completedAt)
+                .set("transactionId", transactionId)
+                .set("transId", transId)
+                .set("error", error));
+    }
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.kheyma.service;
 
 import com.kheyma.aspect.Auditable;
+import com.kheyma.config.CacheConfig;
 import com.kheyma.dto.AuthRequest;
 import com.kheyma.dto.AuthResponse;
 import com.kheyma.dto.RegisterRequest;
@@ -8,6 +9,7 @@ import com.kheyma.model.User;
 import com.kheyma.repository.UserRepository;
 import com.kheyma.security.JwtUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -26,6 +28,7 @@ public class AuthService {
     private final CustomUserDetailsService userDetailsService;
     
     @Auditable
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
     public AuthResponse register(RegisterRequest request) {
         if (userRepository.existsByEmail(request.getEmail())) {
             throw new RuntimeException("Email already registered");
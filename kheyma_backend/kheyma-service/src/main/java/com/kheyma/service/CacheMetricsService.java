@@ -0,0 +1,47 @@
+package com.kheyma.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.kheyma.dto.CacheStatistics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class CacheMetricsService {
+    
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    
+    private final CacheManager cacheManager;
+    
+    public List<CacheStatistics> getCacheStatistics() {
+        List<CacheStatistics> statistics = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            if (cacheManager.getCache(name) instanceof CaffeineCache caffeineCache) {
+                statistics.add(toStatistics(name, caffeineCache.getNativeCache()));
+            }
+        }
+        return statistics;
+    }
+    
+    public static CacheStatistics toStatistics(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(
+                name,
+                cache.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.loadSuccessCount(),
+                stats.loadFailureCount(),
+                stats.averageLoadPenalty() / NANOS_PER_MILLI,
+                stats.totalLoadTime() / NANOS_PER_MILLI,
+                stats.evictionCount()
+        );
+    }
+}
\ No newline at end of file
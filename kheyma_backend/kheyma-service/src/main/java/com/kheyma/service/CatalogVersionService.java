@@ -0,0 +1,77 @@
+package com.kheyma.service;
+
+import com.kheyma.model.Counter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Monotonic version of the location catalogue, kept in the counters collection and bumped by every
+// location write. Requests read the in-memory copy, so conditional GETs are answered without Mongo;
+// versions bumped by other instances arrive with the periodic refresh.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogVersionService {
+    
+    public static final String LOCATION_CATALOG = "locations.catalog";
+    
+    private final MongoTemplate mongoTemplate;
+    
+    private volatile Version current = new Version(0, 0);
+    
+    public Version current() {
+        return current;
+    }
+    
+    public Version bump() {
+        Counter counter = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(LOCATION_CATALOG)),
+                new Update().inc("value", 1).currentDate("updatedAt"),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Counter.class
+        );
+        if (counter == null) {
+            throw new RuntimeException("Could not bump the location catalog version");
+        }
+        return advance(counter);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (refresh().value() == 0) {
+            bump();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${kheyma.locations.catalog.refresh-interval:PT5S}")
+    public Version refresh() {
+        Counter counter = mongoTemplate.findById(LOCATION_CATALOG, Counter.class);
+        return counter != null ? advance(counter) : current;
+    }
+    
+    // Never moves backwards, whichever of bump and refresh finishes last
+    private synchronized Version advance(Counter counter) {
+        if (counter.getValue() > current.value()) {
+            long modifiedAt = counter.getUpdatedAt() != null ? counter.getUpdatedAt().getTime() : System.currentTimeMillis();
+            current = new Version(counter.getValue(), modifiedAt);
+            log.debug("Location catalog at version {}", current.value());
+        }
+        return current;
+    }
+    
+    public record Version(long value, long modifiedAt) {
+        
+        // Strong validator: one version always produces the same representation of a given URL
+        public String etag() {
+            return "\"locations-" + value + "\"";
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.kheyma.service;
+
+import com.kheyma.dto.MapCluster;
+import com.kheyma.geo.BoundingBox;
+import com.kheyma.geo.ClusterIndex;
+import com.kheyma.geo.SpatialGrid;
+import com.kheyma.model.Location;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Map marker clusters for every zoom level, derived from the spatial index's current grid. A location
+// change bumps the grid's version or swaps in a new grid; the next request notices and rebuilds the
+// hierarchy in the background while the previous one keeps being served, so a burst of edits costs one rebuild.
+@Slf4j
+@Service
+public class ClusterService {
+    
+    private static final String UNSPECIFIED = "UNSPECIFIED";
+    
+    private final SpatialIndexService spatialIndexService;
+    private final int maxZoom;
+    private final double radiusPixels;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    
+    private volatile Built built;
+    
+    public ClusterService(
+            SpatialIndexService spatialIndexService,
+            @Value("${kheyma.locations.clusters.max-zoom:16}") int maxZoom,
+            @Value("${kheyma.locations.clusters.radius:60}") double radiusPixels
+    ) {
+        this.spatialIndexService = spatialIndexService;
+        this.maxZoom = maxZoom;
+        this.radiusPixels = radiusPixels;
+    }
+    
+    public List<MapCluster> getClusters(int zoom, String bbox) {
+        if (zoom < 0) {
+            throw new IllegalArgumentException("Zoom cannot be negative");
+        }
+        BoundingBox box = BoundingBox.parse(bbox);
+        return current().index().query(zoom, box).stream()
+                .map(this::toCluster)
+                .toList();
+    }
+    
+    private Built current() {
+        SpatialGrid grid = spatialIndexService.snapshot();
+        Built snapshot = built;
+        if (snapshot == null) {
+            synchronized (this) {
+                if (built == null) {
+                    built = build(grid);
+                }
+                return built;
+            }
+        }
+        boolean stale = snapshot.source() != grid || snapshot.version() != grid.version();
+        if (stale && rebuilding.compareAndSet(false, true)) {
+            Thread rebuild = new Thread(() -> {
+                try {
+                    built = build(spatialIndexService.snapshot());
+                } catch (RuntimeException e) {
+                    log.error("Cluster rebuild failed", e);
+                } finally {
+                    rebuilding.set(false);
+                }
+            }, "cluster-rebuild");
+            rebuild.setDaemon(true);
+            rebuild.start();
+        }
+        return snapshot;
+    }
+    
+    private Built build(SpatialGrid grid) {
+        long started = System.nanoTime();
+        // Read first, so a write during the build leaves the result stale rather than unnoticed
+        long version = grid.version();
+        ClusterIndex index = ClusterIndex.of(grid.locations(), maxZoom, radiusPixels);
+        log.debug("Clustered {} locations in {} ms", grid.size(), (System.nanoTime() - started) / 1_000_000);
+        return new Built(grid, version, index);
+    }
+    
+    private MapCluster toCluster(ClusterIndex.Point point) {
+        Map<String, Integer> types = new LinkedHashMap<>();
+        Location.LocationType[] values = Location.LocationType.values();
+        for (int i = 0; i < point.types().length; i++) {
+            if (point.types()[i] > 0) {
+                types.put(i == ClusterIndex.UNTYPED ? UNSPECIFIED : values[i].name(), point.types()[i]);
+            }
+        }
+        Location location = point.location();
+        return new MapCluster(point.latitude(), point.longitude(), point.count(), types,
+                location != null ? location.getId() : null,
+                location != null ? location.getName() : null,
+                location != null ? null : point.expansionZoom());
+    }
+    
+    private record Built(SpatialGrid source, long version, ClusterIndex index) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.kheyma.service;
+
+import com.kheyma.analytics.HyperLogLog;
+import com.kheyma.config.CacheConfig;
+import com.kheyma.dto.CustomerMetrics;
+import com.kheyma.model.CustomerSketch;
+import com.kheyma.model.RevenueRollup;
+import com.kheyma.model.Transaction;
+import com.kheyma.repository.CustomerSketchRepository;
+import com.kheyma.repository.RevenueRollupRepository;
+import com.kheyma.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class CustomerSketchService {
+    
+    private final MongoTemplate mongoTemplate;
+    private final CustomerSketchRepository customerSketchRepository;
+    private final RevenueRollupRepository revenueRollupRepository;
+    private final TransactionRepository transactionRepository;
+    
+    public void record(Transaction transaction) {
+        recordAll(List.of(transaction));
+    }
+    
+    // Folds a batch of bookings into one upsert per touched sketch, keeping the highest rank per register
+    public void recordAll(Collection<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        Map<String, CustomerSketch> deltas = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            long hash = HyperLogLog.hash(transaction.getUserId());
+            String register = Integer.toString(HyperLogLog.registerIndex(hash));
+            int rank = HyperLogLog.rank(hash);
+            bucketsOf(transaction).forEach((dimension, key) -> deltas
+                    .computeIfAbsent(CustomerSketch.idOf(dimension, key), id -> {
+                        CustomerSketch sketch = new CustomerSketch();
+                        sketch.setId(id);
+                        sketch.setDimension(dimension);
+                        sketch.setKey(key);
+                        return sketch;
+                    })
+                    .getRegisters().merge(register, rank, Math::max));
+        }
+        
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CustomerSketch.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (CustomerSketch delta : deltas.values()) {
+            Update update = new Update()
+                    .setOnInsert("dimension", delta.getDimension())
+                    .setOnInsert("key", delta.getKey())
+                    .set("updatedAt", now);
+            delta.getRegisters().forEach((register, rank) -> update.max("registers." + register, rank));
+            ops.upsert(Query.query(Criteria.where("_id").is(delta.getId())), update);
+        }
+        ops.execute();
+    }
+    
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, key = "{'customers', #startDate, #endDate}", sync = true)
+    public CustomerMetrics getCustomerMetrics(LocalDate startDate, LocalDate endDate) {
+        return computeCustomerMetrics(startDate, endDate);
+    }
+    
+    // Whole months inside the range are answered from month sketches, partial months from day sketches.
+    // Uncached: code that is itself loading an analytics cache entry calls this, because Caffeine does not let
+    // one entry's loader load another entry of the same cache.
+    public CustomerMetrics computeCustomerMetrics(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null) {
+            throw new IllegalArgumentException("Start and end date cannot be null");
+        }
+        List<String> sketchIds = new ArrayList<>();
+        List<String> rollupIds = new ArrayList<>();
+        
+        LocalDate day = startDate;
+        while (!day.isAfter(endDate)) {
+            YearMonth month = YearMonth.from(day);
+            if (day.getDayOfMonth() == 1 && !month.atEndOfMonth().isAfter(endDate)) {
+                sketchIds.add(CustomerSketch.idOf(CustomerSketch.Dimension.MONTH, month.toString()));
+                rollupIds.add(RevenueRollup.idOf(RevenueRollup.Dimension.MONTH, month.toString()));
+                day = month.plusMonths(1).atDay(1);
+            } else {
+                sketchIds.add(CustomerSketch.idOf(CustomerSketch.Dimension.DAY, day.toString()));
+                rollupIds.add(RevenueRollup.idOf(RevenueRollup.Dimension.DAY, day.toString()));
+                day = day.plusDays(1);
+            }
+        }
+        
+        long bookings = 0;
+        for (RevenueRollup rollup : revenueRollupRepository.findAllById(rollupIds)) {
+            bookings += rollup.getCount();
+        }
+        return toMetrics(startDate, endDate, null, bookings, mergeSketches(sketchIds));
+    }
+    
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, key = "{'customers', #locationId}", sync = true)
+    public CustomerMetrics getLocationCustomerMetrics(String locationId) {
+        if (locationId == null) {
+            throw new IllegalArgumentException("Location ID cannot be null");
+        }
+        long bookings = revenueRollupRepository
+                .findById(RevenueRollup.idOf(RevenueRollup.Dimension.LOCATION, locationId))
+                .map(RevenueRollup::getCount)
+                .orElse(0L);
+        HyperLogLog sketch = mergeSketches(List.of(CustomerSketch.idOf(CustomerSketch.Dimension.LOCATION, locationId)));
+        return toMetrics(null, null, locationId, bookings, sketch);
+    }
+    
+    // Rebuilds every sketch from the full booking history, e.g. after enabling sketches on existing data.
+    // Registers are merged in with $max like a booking, so bookings recorded meanwhile are kept and readers
+    // never see a missing sketch. Sketches with no remaining bookings are removed unless touched since read.
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
+    public int rebuild() {
+        Map<String, HyperLogLog> sketches = new HashMap<>();
+        Map<String, CustomerSketch> documents = new HashMap<>();
+        
+        try (Stream<Transaction> transactions = transactionRepository.streamAllForMetrics()) {
+            transactions.forEach(transaction -> bucketsOf(transaction).forEach((dimension, key) -> {
+                String id = CustomerSketch.idOf(dimension, key);
+                sketches.computeIfAbsent(id, k -> new HyperLogLog()).add(transaction.getUserId());
+                documents.computeIfAbsent(id, k -> {
+                    CustomerSketch sketch = new CustomerSketch();
+                    sketch.setId(id);
+                    sketch.setDimension(dimension);
+                    sketch.setKey(key);
+                    return sketch;
+                });
+            }));
+        }
+        
+        Query stored = new Query();
+        stored.fields().include("updatedAt");
+        List<CustomerSketch> existing = mongoTemplate.find(stored, CustomerSketch.class);
+        
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CustomerSketch.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (CustomerSketch document : documents.values()) {
+            Update update = new Update()
+                    .setOnInsert("dimension", document.getDimension())
+                    .setOnInsert("key", document.getKey())
+                    .set("updatedAt", now);
+            sketches.get(document.getId()).toSparse()
+                    .forEach((register, rank) -> update.max("registers." + register, rank));
+            ops.upsert(Query.query(Criteria.where("_id").is(document.getId())), update);
+        }
+        for (CustomerSketch sketch : existing) {
+            if (!documents.containsKey(sketch.getId())) {
+                ops.remove(Query.query(Criteria.where("_id").is(sketch.getId())
+                        .and("updatedAt").is(sketch.getUpdatedAt())));
+            }
+        }
+        if (!documents.isEmpty() || !existing.isEmpty()) {
+            ops.execute();
+        }
+        return documents.size();
+    }
+    
+    private HyperLogLog mergeSketches(List<String> ids) {
+        HyperLogLog merged = new HyperLogLog();
+        for (CustomerSketch sketch : customerSketchRepository.findAllById(ids)) {
+            merged.merge(HyperLogLog.fromSparse(sketch.getRegisters()));
+        }
+        return merged;
+    }
+    
+    private CustomerMetrics toMetrics(LocalDate startDate, LocalDate endDate, String locationId,
+                                      long bookings, HyperLogLog sketch) {
+        // The estimate can overshoot the exact booking count by the sketch error; never report more customers than bookings
+        long uniqueCustomers = Math.min(sketch.estimate(), bookings);
+        double repeatRate = bookings > 0 ? (double) (bookings - uniqueCustomers) / bookings : 0.0;
+        return new CustomerMetrics(startDate, endDate, locationId, bookings, uniqueCustomers,
+                repeatRate, HyperLogLog.RELATIVE_STANDARD_ERROR);
+    }
+    
+    private Map<CustomerSketch.Dimension, String> bucketsOf(Transaction transaction) {
+        Map<CustomerSketch.Dimension, String> buckets = new HashMap<>();
+        buckets.put(CustomerSketch.Dimension.DAY, transaction.getDate().toString());
+        buckets.put(CustomerSketch.Dimension.MONTH, YearMonth.from(transaction.getDate()).toString());
+        buckets.put(CustomerSketch.Dimension.LOCATION, transaction.getLocation().getLocationId());
+        return buckets;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.kheyma.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.kheyma.model.Transaction;
+import com.kheyma.model.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+// Writes exports row by row straight from a Mongo cursor, so memory use does not grow with the export size
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+    
+    private static final int CURSOR_BATCH_SIZE = 1000;
+    private static final int FLUSH_EVERY = 1000;
+    
+    private static final List<Column<Transaction>> TRANSACTION_COLUMNS = List.of(
+            new Column<>("id", Transaction::getId),
+            new Column<>("transId", Transaction::getTransId),
+            new Column<>("userId", Transaction::getUserId),
+            new Column<>("date", Transaction::getDate),
+            new Column<>("amount", Transaction::getAmount),
+            new Column<>("packageType", Transaction::getPackageType),
+            new Column<>("locationId", t -> t.getLocation() != null ? t.getLocation().getLocationId() : null),
+            new Column<>("locationName", t -> t.getLocation() != null ? t.getLocation().getName() : null),
+            new Column<>("latitude", t -> t.getLocation() != null ? t.getLocation().getLatitude() : null),
+            new Column<>("longitude", t -> t.getLocation() != null ? t.getLocation().getLongitude() : null)
+    );
+    
+    // Never includes passwordHash; it is also excluded from the query projection
+    private static final List<Column<User>> USER_COLUMNS = List.of(
+            new Column<>("id", User::getId),
+            new Column<>("email", User::getEmail),
+            new Column<>("dob", User::getDob),
+            new Column<>("address", User::getAddress),
+            new Column<>("type", User::getType),
+            new Column<>("packageType", u -> u.getUserPackage() != null ? u.getUserPackage().getPackageType() : null),
+            new Column<>("enabled", User::isEnabled),
+            new Column<>("createdAt", User::getCreatedAt),
+            new Column<>("updatedAt", User::getUpdatedAt)
+    );
+    
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+        
+        private final MediaType mediaType;
+        private final String extension;
+        
+        Format(String mediaType, String extension) {
+            this.mediaType = MediaType.parseMediaType(mediaType);
+            this.extension = extension;
+        }
+        
+        public static Format from(String value) {
+            try {
+                return Format.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+        
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+        
+        public String getExtension() {
+            return extension;
+        }
+    }
+    
+    public static HttpHeaders headersFor(Format format, boolean gzip, String baseName) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(format.getMediaType());
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(baseName + "." + format.getExtension())
+                .build());
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return headers;
+    }
+    
+    // Compresses on the fly; sync flush lets every flush of the export reach the client
+    public static StreamingResponseBody compressed(boolean gzip, StreamingResponseBody body) {
+        if (!gzip) {
+            return body;
+        }
+        return out -> {
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 8192, true);
+            body.writeTo(compressed);
+            compressed.finish();
+        };
+    }
+    
+    // Dates are inclusive; every filter is optional
+    public void exportTransactions(Format format, LocalDate startDate, LocalDate endDate, String locationId,
+                                   OutputStream out) throws IOException {
+        Query query = new Query();
+        if (startDate != null || endDate != null) {
+            Criteria date = Criteria.where("date");
+            if (startDate != null) {
+                date.gte(startDate);
+            }
+            if (endDate != null) {
+                date.lte(endDate);
+            }
+            query.addCriteria(date);
+        }
+        if (locationId != null) {
+            query.addCriteria(Criteria.where("location.locationId").is(locationId));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, "date", "id")).cursorBatchSize(CURSOR_BATCH_SIZE);
+        
+        try (Stream<Transaction> rows = mongoTemplate.stream(query, Transaction.class)) {
+            write(format, TRANSACTION_COLUMNS, rows.iterator(), out);
+        }
+    }
+    
+    public void exportUsers(Format format, OutputStream out) throws IOException {
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.ASC, "id"))
+                .cursorBatchSize(CURSOR_BATCH_SIZE);
+        query.fields().exclude("passwordHash");
+        
+        try (Stream<User> rows = mongoTemplate.stream(query, User.class)) {
+            write(format, USER_COLUMNS, rows.iterator(), out);
+        }
+    }
+    
+    private <T> void write(Format format, List<Column<T>> columns, Iterator<T> rows, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        ObjectWriter json = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        
+        if (format == Format.CSV) {
+            writer.write(String.join(",", columns.stream().map(Column::name).toList()));
+            writer.write("\r\n");
+        }
+        long written = 0;
+        while (rows.hasNext()) {
+            T row = rows.next();
+            if (format == Format.CSV) {
+                writeCsvRow(writer, columns, row);
+            } else {
+                Map<String, Object> values = new LinkedHashMap<>();
+                columns.forEach(column -> values.put(column.name(), column.value().apply(row)));
+                json.writeValue(writer, values);
+                writer.write('\n');
+            }
+            // Flush the first row right away so the client sees data before the cursor is drained
+            if (++written == 1 || written % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+    }
+    
+    private <T> void writeCsvRow(Writer writer, List<Column<T>> columns, T row) throws IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = columns.get(i).value().apply(row);
+            if (value != null) {
+                writer.write(escapeCsv(value.toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+    
+    // RFC 4180 quoting
+    private String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+    
+    private record Column<T>(String name, Function<T, Object> value) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,311 @@
+package com.kheyma.service;
+
+import com.kheyma.dto.Availability;
+import com.kheyma.model.Location;
+import com.kheyma.model.LocationInventory;
+import com.kheyma.model.Transaction;
+import com.kheyma.repository.LocationInventoryRepository;
+import com.kheyma.repository.LocationRepository;
+import com.kheyma.repository.TransactionRepository;
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Per-location, per-night reservation counters. A claim is one conditional $inc on the night's element
+// ("reserved.<n>" below capacity), so it either takes a unit atomically or matches nothing.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryService {
+    
+    private static final int MAX_RANGE_NIGHTS = 366;
+    private static final int REBUILD_ATTEMPTS = 5;
+    // A claim is followed by its booking insert within this window; claims younger than that may not be
+    // in the recount yet
+    private static final Duration IN_FLIGHT_GRACE = Duration.ofMinutes(1);
+    
+    private final MongoTemplate mongoTemplate;
+    private final LocationInventoryRepository locationInventoryRepository;
+    private final LocationRepository locationRepository;
+    private final TransactionRepository transactionRepository;
+    
+    // Returns false when the night is fully booked; locations without a capacity always succeed
+    public boolean claim(Location location, LocalDate night) {
+        Integer capacity = location.getCapacity();
+        if (capacity == null) {
+            return true;
+        }
+        if (tryClaim(location.getId(), night, capacity)) {
+            return true;
+        }
+        // The first booking of a season creates its counters
+        if (ensureSeason(location.getId(), night.getYear())) {
+            return tryClaim(location.getId(), night, capacity);
+        }
+        return false;
+    }
+    
+    // Claims one unit per entry in two round trips whatever the batch size: one bulk upsert that creates any
+    // missing season, then one conditional $inc per distinct night, by the number of entries on it. That $inc
+    // is an upsert on a season that exists, so a night without room for all of them fails with a duplicate
+    // key error reported against its index, rather than matching nothing unnoticed. Such a night is retried
+    // one unit at a time in entry order, so earlier entries win what is left. Element i is true if entry i
+    // holds a unit; locations without a capacity always do.
+    public boolean[] claimAll(List<Claim> claims) {
+        boolean[] granted = new boolean[claims.size()];
+        Map<String, List<Integer>> byNight = new LinkedHashMap<>(); // "<seasonId>/<element>" -> entry indexes
+        Map<String, Claim> seasons = new LinkedHashMap<>();
+        for (int i = 0; i < claims.size(); i++) {
+            Claim claim = claims.get(i);
+            if (claim.location().getCapacity() == null) {
+                granted[i] = true;
+                continue;
+            }
+            String season = LocationInventory.idOf(claim.location().getId(), claim.night().getYear());
+            seasons.putIfAbsent(season, claim);
+            byNight.computeIfAbsent(season + "/" + (claim.night().getDayOfYear() - 1), key -> new ArrayList<>()).add(i);
+        }
+        if (byNight.isEmpty()) {
+            return granted;
+        }
+        
+        BulkOperations ensure = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LocationInventory.class);
+        seasons.forEach((id, claim) -> {
+            LocationInventory season = emptySeason(claim.location().getId(), claim.night().getYear());
+            ensure.upsert(Query.query(Criteria.where("_id").is(id)), new Update()
+                    .setOnInsert("locationId", season.getLocationId())
+                    .setOnInsert("year", season.getYear())
+                    .setOnInsert("reserved", season.getReserved()));
+        });
+        duplicatesIn(ensure); // Another booking created the same season at the same moment
+        
+        List<List<Integer>> nights = new ArrayList<>(byNight.values());
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LocationInventory.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (List<Integer> entries : nights) {
+            Claim claim = claims.get(entries.get(0));
+            String element = "reserved." + (claim.night().getDayOfYear() - 1);
+            String season = LocationInventory.idOf(claim.location().getId(), claim.night().getYear());
+            ops.upsert(
+                    Query.query(Criteria.where("_id").is(season)
+                            .and(element).lte(claim.location().getCapacity() - entries.size())),
+                    new Update().inc(element, entries.size()).inc("version", 1).set("updatedAt", now));
+        }
+        Set<Integer> full = duplicatesIn(ops);
+        
+        for (int n = 0; n < nights.size(); n++) {
+            List<Integer> entries = nights.get(n);
+            for (int index : entries) {
+                if (!full.contains(n)) {
+                    granted[index] = true;
+                } else if (entries.size() > 1) {
+                    Claim claim = claims.get(index);
+                    granted[index] = tryClaim(claim.location().getId(), claim.night(), claim.location().getCapacity());
+                }
+            }
+        }
+        return granted;
+    }
+    
+    // Gives back a unit claimed for a booking that was not saved
+    public void release(Location location, LocalDate night) {
+        if (location.getCapacity() == null) {
+            return;
+        }
+        String element = "reserved." + (night.getDayOfYear() - 1);
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(LocationInventory.idOf(location.getId(), night.getYear()))
+                        .and(element).gt(0)),
+                new Update().inc(element, -1).inc("version", 1).set("updatedAt", LocalDateTime.now()),
+                LocationInventory.class
+        );
+    }
+    
+    public Availability getAvailability(String locationId, LocalDate from, LocalDate to) {
+        if (locationId == null || from == null || to == null) {
+            throw new IllegalArgumentException("Location ID, from and to cannot be null");
+        }
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_NIGHTS) {
+            throw new IllegalArgumentException("Range must cover 1 to " + MAX_RANGE_NIGHTS + " nights");
+        }
+        Location location = locationRepository.findById(locationId)
+                .orElseThrow(() -> new RuntimeException("Location not found with id: " + locationId));
+        
+        List<String> ids = new ArrayList<>();
+        for (int year = from.getYear(); year <= to.getYear(); year++) {
+            ids.add(LocationInventory.idOf(locationId, year));
+        }
+        Map<Integer, List<Integer>> seasons = new HashMap<>();
+        locationInventoryRepository.findAllById(ids)
+                .forEach(season -> seasons.put(season.getYear(), season.getReserved()));
+        
+        Availability availability = new Availability();
+        availability.setLocationId(locationId);
+        availability.setCapacity(location.getCapacity());
+        availability.setFrom(from);
+        availability.setTo(to);
+        for (LocalDate night = from; !night.isAfter(to); night = night.plusDays(1)) {
+            List<Integer> reserved = seasons.getOrDefault(night.getYear(), List.of());
+            int index = night.getDayOfYear() - 1;
+            int taken = index < reserved.size() && reserved.get(index) != null ? reserved.get(index) : 0;
+            Integer available = location.getCapacity() != null ? Math.max(location.getCapacity() - taken, 0) : null;
+            availability.getNights().add(new Availability.Night(night, taken, available));
+        }
+        return availability;
+    }
+    
+    // Recounts every season from the booking history, e.g. after enabling inventory on existing data.
+    // Claims keep running meanwhile: each season is replaced with a $set guarded by the version that was read,
+    // and a season claimed shortly before or during the recount is only raised, since a claim whose booking
+    // is not written yet would otherwise be erased. Returns the number of seasons written.
+    public int rebuild() {
+        LocalDateTime busySince = LocalDateTime.now().minus(IN_FLIGHT_GRACE);
+        Map<String, LocationInventory> seasons = new HashMap<>();
+        try (Stream<Transaction> transactions = transactionRepository.streamAllForMetrics()) {
+            transactions.forEach(transaction -> {
+                LocalDate night = transaction.getDate();
+                String locationId = transaction.getLocation().getLocationId();
+                LocationInventory season = seasons.computeIfAbsent(
+                        LocationInventory.idOf(locationId, night.getYear()),
+                        id -> emptySeason(locationId, night.getYear()));
+                int index = night.getDayOfYear() - 1;
+                season.getReserved().set(index, season.getReserved().get(index) + 1);
+            });
+        }
+        
+        // Seasons nobody booked any more are recounted to zero rather than removed under a live claim
+        Query storedSeasons = new Query();
+        storedSeasons.fields().include("locationId", "year");
+        mongoTemplate.find(storedSeasons, LocationInventory.class).forEach(stored -> seasons.computeIfAbsent(
+                stored.getId(), id -> emptySeason(stored.getLocationId(), stored.getYear())));
+        
+        int written = 0;
+        for (LocationInventory expected : seasons.values()) {
+            if (rebuildSeason(expected, busySince)) {
+                written++;
+            }
+        }
+        return written;
+    }
+    
+    // Returns true if the stored counters changed
+    private boolean rebuildSeason(LocationInventory expected, LocalDateTime busySince) {
+        for (int attempt = 0; attempt < REBUILD_ATTEMPTS; attempt++) {
+            LocationInventory stored = mongoTemplate.findById(expected.getId(), LocationInventory.class);
+            if (stored == null) {
+                try {
+                    expected.setUpdatedAt(LocalDateTime.now());
+                    mongoTemplate.insert(expected);
+                    return true;
+                } catch (DuplicateKeyException e) {
+                    continue; // A claim created the season first; merge with its counters
+                }
+            }
+            
+            boolean quiet = stored.getUpdatedAt() == null || stored.getUpdatedAt().isBefore(busySince);
+            List<Integer> target = new ArrayList<>(expected.getReserved());
+            for (int i = 0; i < target.size(); i++) {
+                int have = i < stored.getReserved().size() && stored.getReserved().get(i) != null
+                        ? stored.getReserved().get(i) : 0;
+                if (!quiet) {
+                    target.set(i, Math.max(target.get(i), have));
+                }
+            }
+            if (target.equals(stored.getReserved())) {
+                return false;
+            }
+            
+            // Documents written before versioning have no version field, which reads as 0
+            Criteria version = stored.getVersion() == 0
+                    ? Criteria.where("version").in(0, null)
+                    : Criteria.where("version").is(stored.getVersion());
+            UpdateResult result = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(stored.getId()).andOperator(version)),
+                    new Update().set("reserved", target).inc("version", 1).set("updatedAt", LocalDateTime.now()),
+                    LocationInventory.class
+            );
+            if (result.getModifiedCount() == 1) {
+                return true;
+            }
+            // A claim or release got in between; read the season again
+        }
+        log.warn("Inventory season {} is too busy to rebuild; left unchanged", expected.getId());
+        return false;
+    }
+    
+    private boolean tryClaim(String locationId, LocalDate night, int capacity) {
+        String element = "reserved." + (night.getDayOfYear() - 1);
+        UpdateResult result = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(LocationInventory.idOf(locationId, night.getYear()))
+                        .and(element).lt(capacity)),
+                new Update().inc(element, 1).inc("version", 1).set("updatedAt", LocalDateTime.now()),
+                LocationInventory.class
+        );
+        return result.getModifiedCount() == 1;
+    }
+    
+    // Returns true if the season document was missing and has now been created
+    private boolean ensureSeason(String locationId, int year) {
+        LocationInventory season = emptySeason(locationId, year);
+        try {
+            UpdateResult result = mongoTemplate.upsert(
+                    Query.query(Criteria.where("_id").is(season.getId())),
+                    new Update()
+                            .setOnInsert("locationId", locationId)
+                            .setOnInsert("year", year)
+                            .setOnInsert("reserved", season.getReserved()),
+                    LocationInventory.class
+            );
+            return result.getUpsertedId() != null;
+        } catch (DuplicateKeyException e) {
+            return true; // Another booking created it at the same moment
+        }
+    }
+    
+    // Executes the bulk and returns the indexes that failed with a duplicate key; any other error is rethrown
+    private Set<Integer> duplicatesIn(BulkOperations ops) {
+        try {
+            ops.execute();
+            return Set.of();
+        } catch (BulkOperationException e) {
+            Set<Integer> duplicates = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+                duplicates.add(error.getIndex());
+            }
+            return duplicates;
+        }
+    }
+    
+    private LocationInventory emptySeason(String locationId, int year) {
+        LocationInventory season = new LocationInventory();
+        season.setId(LocationInventory.idOf(locationId, year));
+        season.setLocationId(locationId);
+        season.setYear(year);
+        season.setReserved(new ArrayList<>(Collections.nCopies(Year.of(year).length(), 0)));
+        return season;
+    }
+    
+    public record Claim(Location location, LocalDate night) {
+    }
+}
\ No newline at end of file
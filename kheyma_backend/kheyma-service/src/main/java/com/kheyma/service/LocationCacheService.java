@@ -0,0 +1,183 @@
+package com.kheyma.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kheyma.dto.LocationCacheStatistics;
+import com.kheyma.event.LocationsChangedEvent;
+import com.kheyma.model.Location;
+import com.kheyma.repository.LocationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-instance near-cache of locations by id and by type. Entries are invalidated by LocationsChangedEvent,
+// which local writes publish directly and LocationChangeStreamService publishes for writes made on any
+// replica. While no change stream is live (e.g. a standalone mongod) entries expire after a short TTL instead.
+// Every entry is stamped with the catalog version read before it was loaded and is reloaded once this
+// instance knows a newer one, so a body is never older than the ETag a conditional GET read before it.
+// Cached instances are shared between callers and must not be modified.
+@Slf4j
+@Service
+public class LocationCacheService {
+    
+    private final LocationRepository locationRepository;
+    private final CatalogVersionService catalogVersionService;
+    private final Duration streamTtl;
+    private final Duration fallbackTtl;
+    private final Cache<String, Versioned<Location>> byId;
+    private final Cache<Location.LocationType, Versioned<List<Location>>> byType;
+    private final AtomicLong invalidations = new AtomicLong(); // Bumped before entries are dropped
+    
+    private volatile LocationCacheStatistics.Mode mode = LocationCacheStatistics.Mode.TTL_FALLBACK;
+    private final AtomicLong changeEvents = new AtomicLong();
+    private final AtomicLong streamFailures = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile long lastLagMillis;
+    private volatile LocalDateTime lastChangeAt;
+    
+    public LocationCacheService(
+            LocationRepository locationRepository,
+            CatalogVersionService catalogVersionService,
+            @Value("${kheyma.locations.cache.maximum-size:10000}") long maximumSize,
+            @Value("${kheyma.locations.cache.ttl:PT10M}") Duration streamTtl,
+            @Value("${kheyma.locations.cache.fallback-ttl:PT5S}") Duration fallbackTtl,
+            @Value("${kheyma.locations.catalog.refresh-interval:PT5S}") Duration catalogRefresh
+    ) {
+        this.locationRepository = locationRepository;
+        this.catalogVersionService = catalogVersionService;
+        this.streamTtl = streamTtl;
+        // Without a change stream, no entry may outlive the refresh that would reveal it as stale
+        this.fallbackTtl = fallbackTtl.compareTo(catalogRefresh) > 0 ? catalogRefresh : fallbackTtl;
+        this.byId = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(this.fallbackTtl).recordStats().build();
+        this.byType = Caffeine.newBuilder().expireAfterWrite(this.fallbackTtl).recordStats().build();
+    }
+    
+    // Null when the location does not exist; misses are not cached
+    public Location getById(String id) {
+        long version = catalogVersionService.current().value();
+        Versioned<Location> cached = byId.getIfPresent(id);
+        if (cached == null || cached.version() < version) {
+            cached = byId.asMap().compute(id, (key, current) -> current != null && current.version() >= version
+                    ? current
+                    : locationRepository.findById(key).map(location -> new Versioned<>(version, location)).orElse(null));
+        }
+        return cached != null ? cached.value() : null;
+    }
+    
+    public Map<String, Location> getAllById(Collection<String> ids) {
+        long version = catalogVersionService.current().value();
+        Map<String, Location> found = new HashMap<>();
+        byId.getAllPresent(ids).forEach((id, cached) -> {
+            if (cached.version() >= version) {
+                found.put(id, cached.value());
+            }
+        });
+        List<String> missing = ids.stream().filter(id -> !found.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            // Unlike compute, a bulk read is not atomic with invalidation: whatever was invalidated
+            // while it was in flight is returned to this caller but not cached
+            long readAt = invalidations.get();
+            locationRepository.findAllById(missing).forEach(location -> {
+                found.put(location.getId(), location);
+                byId.asMap().compute(location.getId(), (id, cached) ->
+                        invalidations.get() == readAt && (cached == null || cached.version() <= version)
+                                ? new Versioned<>(version, location)
+                                : cached);
+            });
+        }
+        return found;
+    }
+    
+    public List<Location> getByType(Location.LocationType type) {
+        long version = catalogVersionService.current().value();
+        Versioned<List<Location>> cached = byType.getIfPresent(type);
+        if (cached == null || cached.version() < version) {
+            cached = byType.asMap().compute(type, (key, current) -> current != null && current.version() >= version
+                    ? current
+                    : new Versioned<>(version, List.copyOf(locationRepository.findByType(key))));
+        }
+        return cached.value();
+    }
+    
+    @EventListener
+    public void onLocationsChanged(LocationsChangedEvent event) {
+        invalidations.incrementAndGet();
+        if (event.getType() == LocationsChangedEvent.Type.RELOADED) {
+            byId.invalidateAll();
+        } else {
+            byId.invalidate(event.getLocationId());
+        }
+        // A change can move a location between types, so every type list is dropped
+        byType.invalidateAll();
+    }
+    
+    // Called by the change stream watcher
+    void onStreamUp() {
+        if (mode != LocationCacheStatistics.Mode.CHANGE_STREAM) {
+            setTtl(streamTtl);
+            mode = LocationCacheStatistics.Mode.CHANGE_STREAM;
+            log.info("Location cache invalidated by change stream; TTL {}", streamTtl);
+        }
+    }
+    
+    void onStreamDown() {
+        streamFailures.incrementAndGet();
+        if (mode != LocationCacheStatistics.Mode.TTL_FALLBACK) {
+            // Entries cached under the long TTL may already have missed an invalidation
+            setTtl(fallbackTtl);
+            invalidations.incrementAndGet();
+            byId.invalidateAll();
+            byType.invalidateAll();
+            mode = LocationCacheStatistics.Mode.TTL_FALLBACK;
+            log.warn("Location change stream lost; falling back to a {} TTL", fallbackTtl);
+        }
+    }
+    
+    void recordChange(Instant committedAt) {
+        long lag = Math.max(0, Duration.between(committedAt, Instant.now()).toMillis());
+        changeEvents.incrementAndGet();
+        totalLagMillis.addAndGet(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        lastLagMillis = lag;
+        lastChangeAt = LocalDateTime.ofInstant(committedAt, ZoneId.systemDefault());
+    }
+    
+    public LocationCacheStatistics getStatistics() {
+        long events = changeEvents.get();
+        boolean streaming = mode == LocationCacheStatistics.Mode.CHANGE_STREAM;
+        return new LocationCacheStatistics(
+                mode,
+                (streaming ? streamTtl : fallbackTtl).toMillis(),
+                CacheMetricsService.toStatistics("locations.byId", byId),
+                CacheMetricsService.toStatistics("locations.byType", byType),
+                events,
+                streamFailures.get(),
+                lastChangeAt,
+                lastLagMillis,
+                maxLagMillis.get(),
+                events > 0 ? (double) totalLagMillis.get() / events : 0.0,
+                streaming ? maxLagMillis.get() : fallbackTtl.toMillis()
+        );
+    }
+    
+    private void setTtl(Duration ttl) {
+        byId.policy().expireAfterWrite().ifPresent(policy -> policy.setExpiresAfter(ttl));
+        byType.policy().expireAfterWrite().ifPresent(policy -> policy.setExpiresAfter(ttl));
+    }
+    
+    // Catalog version read before the value was loaded from Mongo
+    private record Versioned<T>(long version, T value) {
+    }
+}
\ No newline at end of file
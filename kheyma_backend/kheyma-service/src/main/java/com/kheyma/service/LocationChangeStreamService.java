@@ -0,0 +1,146 @@
+package com.kheyma.service;
+
+import com.kheyma.event.LocationsChangedEvent;
+import com.kheyma.model.Location;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// Follows the locations collection through a MongoDB change stream and republishes every write, from
+// any replica, as a LocationsChangedEvent. Change streams need a replica set; against a standalone
+// mongod the stream cannot open, the location cache stays on its short TTL and the open is retried.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LocationChangeStreamService {
+    
+    // ChangeStreamHistoryLost: the resume token fell off the oplog
+    private static final int HISTORY_LOST = 286;
+    
+    private final MongoTemplate mongoTemplate;
+    private final LocationCacheService locationCacheService;
+    private final CatalogVersionService catalogVersionService;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${kheyma.locations.cache.change-stream-retry:PT1M}")
+    private Duration retryInterval;
+    
+    private Thread watcher;
+    private volatile boolean running;
+    private BsonDocument resumeToken;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        watcher = new Thread(this::watchLoop, "location-change-stream");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (watcher != null) {
+            watcher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+    
+    private void watchLoop() {
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open()) {
+                boolean resumed = resumeToken != null;
+                locationCacheService.onStreamUp();
+                if (!resumed) {
+                    // Nothing says what changed before the stream opened, so in-memory views start over
+                    eventPublisher.publishEvent(LocationsChangedEvent.reloaded());
+                }
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    // Advanced before applying, so an event whose handler fails is not replayed forever
+                    if (cursor.getResumeToken() != null) {
+                        resumeToken = cursor.getResumeToken();
+                    }
+                    if (change != null) {
+                        apply(change);
+                    }
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    return;
+                }
+                if (e.getCode() == HISTORY_LOST) {
+                    resumeToken = null;
+                }
+                locationCacheService.onStreamDown();
+                log.debug("Location change stream unavailable: {}", e.getMessage());
+                sleep(retryInterval);
+            } catch (RuntimeException e) {
+                // A failing listener must not kill the watcher; the TTL still bounds what that event left stale
+                log.error("Location change stream handler failed", e);
+                sleep(Duration.ofSeconds(1));
+            }
+        }
+    }
+    
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open() {
+        var stream = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Location.class))
+                .watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        return stream.cursor();
+    }
+    
+    private void apply(ChangeStreamDocument<Document> change) {
+        LocationsChangedEvent event = switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> change.getFullDocument() != null
+                    ? LocationsChangedEvent.upserted(mongoTemplate.getConverter().read(Location.class, change.getFullDocument()))
+                    : LocationsChangedEvent.deleted(idOf(change)); // Deleted again before the lookup ran
+            case DELETE -> LocationsChangedEvent.deleted(idOf(change));
+            default -> LocationsChangedEvent.reloaded(); // drop, rename, invalidate
+        };
+        eventPublisher.publishEvent(event);
+        catalogVersionService.refresh();
+        
+        Instant committedAt = change.getWallTime() != null
+                ? Instant.ofEpochMilli(change.getWallTime().getValue())
+                : Instant.ofEpochSecond(change.getClusterTime().getTime());
+        locationCacheService.recordChange(committedAt);
+    }
+    
+    private String idOf(ChangeStreamDocument<Document> change) {
+        BsonValue id = change.getDocumentKey() != null ? change.getDocumentKey().get("_id") : null;
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+    
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,303 @@
+package com.kheyma.service;
+
+import com.kheyma.config.CacheConfig;
+import com.kheyma.model.Location;
+import com.kheyma.model.PropagationJob;
+import com.kheyma.model.RevenueRollup;
+import com.kheyma.model.Transaction;
+import com.kheyma.projection.TransactionKey;
+import com.kheyma.repository.PropagationJobRepository;
+import com.kheyma.repository.TransactionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Background rewrite of the name/coordinates embedded in a location's transactions after an edit.
+// Walks the location's transactions in keyset batches on the location index, updating each batch with
+// one updateMany, and checkpoints after every batch so a restarted or failed-over instance resumes where
+// the last one stopped. Batches are throttled to a duty cycle so the job yields to booking traffic.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LocationPropagationService {
+    
+    // Generation of the job that last rewrote a transaction's LocationReference; not mapped on the model
+    static final String GENERATION_STAMP = "location.propagationGeneration";
+    
+    private final MongoTemplate mongoTemplate;
+    private final TransactionRepository transactionRepository;
+    private final PropagationJobRepository propagationJobRepository;
+    private final CacheManager cacheManager;
+    
+    @Value("${kheyma.locations.propagation.batch-size:500}")
+    private int batchSize;
+    
+    // Share of wall time spent writing; 0.25 sleeps three times as long as each batch took
+    @Value("${kheyma.locations.propagation.duty-cycle:0.25}")
+    private double dutyCycle;
+    
+    @Value("${kheyma.locations.propagation.min-pause:PT0.05S}")
+    private Duration minPause;
+    
+    @Value("${kheyma.locations.propagation.poll-interval:PT5S}")
+    private Duration pollInterval;
+    
+    @Value("${kheyma.locations.propagation.lease:PT1M}")
+    private Duration lease;
+    
+    private final String owner = UUID.randomUUID().toString();
+    private Thread worker;
+    private volatile boolean running;
+    
+    // Called after a location edit; a no-op unless a denormalized field changed
+    public void enqueue(Transaction.LocationReference before, Location after) {
+        if (Objects.equals(before.getName(), after.getName())
+                && Objects.equals(before.getLatitude(), after.getLatitude())
+                && Objects.equals(before.getLongitude(), after.getLongitude())) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        mongoTemplate.upsert(
+                Query.query(Criteria.where("_id").is(after.getId())),
+                new Update()
+                        .inc("generation", 1)
+                        .set("name", after.getName())
+                        .set("latitude", after.getLatitude())
+                        .set("longitude", after.getLongitude())
+                        .set("status", PropagationJob.Status.PENDING)
+                        .unset("checkpointDate")
+                        .unset("checkpointId")
+                        .set("totalTransactions", 0L)
+                        .set("scannedTransactions", 0L)
+                        .set("updatedTransactions", 0L)
+                        .set("batches", 0L)
+                        .unset("leaseUntil")
+                        .unset("completedAt")
+                        .unset("error")
+                        .setOnInsert("createdAt", now)
+                        .set("updatedAt", now),
+                PropagationJob.class
+        );
+    }
+    
+    public List<PropagationJob> getJobs() {
+        return propagationJobRepository.findTop50ByOrderByUpdatedAtDesc();
+    }
+    
+    public PropagationJob getJob(String locationId) {
+        return propagationJobRepository.findById(locationId)
+                .orElseThrow(() -> new RuntimeException("No propagation job for location: " + locationId));
+    }
+    
+    // Re-queues a failed job from its checkpoint
+    public PropagationJob retry(String locationId) {
+        PropagationJob job = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(locationId).and("status").is(PropagationJob.Status.FAILED)),
+                new Update().set("status", PropagationJob.Status.PENDING).unset("error").unset("leaseUntil")
+                        .set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                PropagationJob.class
+        );
+        if (job == null) {
+            throw new IllegalArgumentException("No failed propagation job for location: " + locationId);
+        }
+        return job;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        worker = new Thread(this::pollLoop, "location-propagation");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    // The current batch finishes and is checkpointed; the rest resumes on the next start
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+    
+    private void pollLoop() {
+        while (running) {
+            try {
+                PropagationJob job = claim();
+                if (job != null) {
+                    run(job);
+                } else {
+                    sleep(pollInterval);
+                }
+            } catch (RuntimeException e) {
+                log.error("Location propagation poll failed", e);
+                sleep(pollInterval);
+            }
+        }
+    }
+    
+    // Takes a pending job, or a running one whose owner stopped renewing its lease
+    private PropagationJob claim() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(new Criteria().orOperator(
+                Criteria.where("status").is(PropagationJob.Status.PENDING),
+                Criteria.where("status").is(PropagationJob.Status.RUNNING).and("leaseUntil").lt(now)));
+        return mongoTemplate.findAndModify(
+                query,
+                new Update().set("status", PropagationJob.Status.RUNNING).set("owner", owner)
+                        .set("leaseUntil", now.plus(lease)).set("updatedAt", now),
+                FindAndModifyOptions.options().returnNew(true),
+                PropagationJob.class
+        );
+    }
+    
+    private void run(PropagationJob job) {
+        try {
+            if (job.getCheckpointId() == null && job.getScannedTransactions() == 0) {
+                long total = mongoTemplate.count(
+                        Query.query(Criteria.where("location.locationId").is(job.getId())), Transaction.class);
+                job.setTotalTransactions(total);
+                if (!checkpoint(job, 0, 0)) {
+                    return;
+                }
+            }
+            while (running) {
+                long started = System.nanoTime();
+                List<TransactionKey> keys = nextBatch(job);
+                if (keys.isEmpty()) {
+                    complete(job);
+                    return;
+                }
+                long updated = rewrite(job, keys);
+                TransactionKey last = keys.get(keys.size() - 1);
+                job.setCheckpointDate(last.getDate());
+                job.setCheckpointId(last.getId());
+                if (!checkpoint(job, keys.size(), updated)) {
+                    return;
+                }
+                throttle(Duration.ofNanos(System.nanoTime() - started));
+            }
+        } catch (RuntimeException e) {
+            log.error("Propagation for location {} failed", job.getId(), e);
+            mongoTemplate.updateFirst(
+                    ownedQuery(job),
+                    new Update().set("status", PropagationJob.Status.FAILED).set("error", e.getMessage())
+                            .unset("leaseUntil").set("updatedAt", LocalDateTime.now()),
+                    PropagationJob.class
+            );
+        }
+    }
+    
+    // Same keyset walk and index as the per-location transaction pages
+    private List<TransactionKey> nextBatch(PropagationJob job) {
+        Pageable page = PageRequest.of(0, batchSize, TransactionRepository.KEYSET_ORDER);
+        return job.getCheckpointId() == null
+                ? transactionRepository.findPageByLocation(job.getId(), page, TransactionKey.class)
+                : transactionRepository.findPageByLocationAfter(job.getId(), job.getCheckpointDate(),
+                        new ObjectId(job.getCheckpointId()), page, TransactionKey.class);
+    }
+    
+    // Only rows not yet stamped with this generation or a newer one are written. A replayed batch is a no-op,
+    // and a worker still holding an older generation can never overwrite a newer edit's values.
+    private long rewrite(PropagationJob job, List<TransactionKey> keys) {
+        List<ObjectId> ids = keys.stream().map(key -> new ObjectId(key.getId())).toList();
+        Query query = Query.query(Criteria.where("_id").in(ids)
+                .and("location.locationId").is(job.getId())
+                .and(GENERATION_STAMP).not().gte(job.getGeneration()));
+        Update update = new Update()
+                .set("location.name", job.getName())
+                .set("location.latitude", job.getLatitude())
+                .set("location.longitude", job.getLongitude())
+                .set(GENERATION_STAMP, job.getGeneration());
+        return mongoTemplate.updateMulti(query, update, Transaction.class).getModifiedCount();
+    }
+    
+    // Saves progress and renews the lease; false when a newer edit or another instance took the job over
+    private boolean checkpoint(PropagationJob job, int scanned, long updated) {
+        job.setScannedTransactions(job.getScannedTransactions() + scanned);
+        job.setUpdatedTransactions(job.getUpdatedTransactions() + updated);
+        job.setBatches(job.getBatches() + (scanned > 0 ? 1 : 0));
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .set("totalTransactions", job.getTotalTransactions())
+                .set("scannedTransactions", job.getScannedTransactions())
+                .set("updatedTransactions", job.getUpdatedTransactions())
+                .set("batches", job.getBatches())
+                .set("leaseUntil", now.plus(lease))
+                .set("updatedAt", now);
+        if (job.getCheckpointId() != null) {
+            update.set("checkpointDate", job.getCheckpointDate()).set("checkpointId", job.getCheckpointId());
+        }
+        return mongoTemplate.updateFirst(ownedQuery(job), update, PropagationJob.class).getModifiedCount() > 0;
+    }
+    
+    private void complete(PropagationJob job) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean completed = mongoTemplate.updateFirst(
+                ownedQuery(job),
+                new Update().set("status", PropagationJob.Status.COMPLETED).set("completedAt", now)
+                        .unset("leaseUntil").set("updatedAt", now),
+                PropagationJob.class
+        ).getModifiedCount() > 0;
+        if (!completed) {
+            return;
+        }
+        
+        // The location's revenue bucket carries the same copies for the popular-locations views
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(RevenueRollup.idOf(RevenueRollup.Dimension.LOCATION, job.getId()))),
+                new Update().set("name", job.getName()).set("latitude", job.getLatitude())
+                        .set("longitude", job.getLongitude()),
+                RevenueRollup.class
+        );
+        Cache analytics = cacheManager.getCache(CacheConfig.ANALYTICS_CACHE);
+        if (analytics != null) {
+            analytics.clear();
+        }
+        log.info("Propagated location {} to {} of {} transactions in {} batches", job.getId(),
+                job.getUpdatedTransactions(), job.getScannedTransactions(), job.getBatches());
+    }
+    
+    private Query ownedQuery(PropagationJob job) {
+        return Query.query(Criteria.where("_id").is(job.getId())
+                .and("generation").is(job.getGeneration())
+                .and("owner").is(owner)
+                .and("status").is(PropagationJob.Status.RUNNING));
+    }
+    
+    private void throttle(Duration batchTime) {
+        long pauseMillis = (long) (batchTime.toMillis() * (1 - dutyCycle) / dutyCycle);
+        sleep(Duration.ofMillis(Math.max(minPause.toMillis(), pauseMillis)));
+    }
+    
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
\ No newline at end of file
@@ -1,20 +1,52 @@
 package com.kheyma.service;
 
 import com.kheyma.aspect.Auditable;
+import com.kheyma.dto.CursorPage;
 import com.kheyma.dto.LocationDTO;
+import com.kheyma.dto.NearbyLocation;
+import com.kheyma.dto.NearbyPage;
+import com.kheyma.event.LocationsChangedEvent;
+import com.kheyma.geo.BoundingBox;
+import com.kheyma.geo.SpatialGrid;
 import com.kheyma.model.Location;
+import com.kheyma.model.Transaction;
+import com.kheyma.pagination.Cursor;
 import com.kheyma.repository.LocationRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class LocationService {
     
+    private static final double MAX_RADIUS_KM = 500.0;
+    private static final int MAX_NEAREST = 100;
+    
+    private final MongoTemplate mongoTemplate;
     private final LocationRepository locationRepository;
+    private final SpatialIndexService spatialIndexService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CatalogVersionService catalogVersionService;
+    private final LocationCacheService locationCacheService;
+    private final LocationPropagationService locationPropagationService;
     
     public List<Location> getAllLocations() {
         return locationRepository.findAll();
@@ -24,23 +56,115 @@ public class LocationService {
         if (id == null) {
             throw new IllegalArgumentException("Location ID cannot be null");
         }
-        return locationRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Location not found with id: " + id));
+        Location location = locationCacheService.getById(id);
+        if (location == null) {
+            throw new RuntimeException("Location not found with id: " + id);
+        }
+        return location;
     }
     
     public List<Location> getLocationsByType(Location.LocationType type) {
-        return locationRepository.findByType(type);
+        return locationCacheService.getByType(type);
     }
     
     public List<Location> searchLocationsByName(String name) {
         return locationRepository.findByNameContainingIgnoreCase(name);
     }
     
+    // Nearest first within radiusKm of (lat, lng), optionally restricted to one type
+    public NearbyPage findNearby(double lat, double lng, double radiusKm, Location.LocationType type,
+                                 int page, int size) {
+        validateCoordinates(lat, lng);
+        if (radiusKm <= 0 || radiusKm > MAX_RADIUS_KM) {
+            throw new IllegalArgumentException("Radius must be between 0 and " + MAX_RADIUS_KM + " km");
+        }
+        if (page < 0) {
+            throw new IllegalArgumentException("Page cannot be negative");
+        }
+        GeoJsonPoint point = new GeoJsonPoint(lng, lat);
+        Pageable pageable = PageRequest.of(page, Cursor.pageSize(size));
+        Slice<Location> slice = type == null
+                ? locationRepository.findNearby(point, radiusKm * 1000, pageable)
+                : locationRepository.findNearbyByType(point, radiusKm * 1000, type, pageable);
+        List<NearbyLocation> items = slice.getContent().stream()
+                .map(location -> new NearbyLocation(location,
+                        SpatialGrid.distanceKm(lat, lng, location.getLatitude(), location.getLongitude())))
+                .toList();
+        return new NearbyPage(items, page, pageable.getPageSize(), slice.hasNext());
+    }
+    
+    public CursorPage<Location> findWithin(String bbox, String cursor, int size) {
+        BoundingBox box = BoundingBox.parse(bbox);
+        double minLng = box.minLng(), minLat = box.minLat(), maxLng = box.maxLng(), maxLat = box.maxLat();
+        
+        // Polygon edges are geodesics, so the east-west edges bow slightly poleward on large boxes
+        GeoJsonPolygon area = new GeoJsonPolygon(new Point(minLng, minLat), new Point(maxLng, minLat),
+                new Point(maxLng, maxLat), new Point(minLng, maxLat), new Point(minLng, minLat));
+        Cursor after = Cursor.decode(cursor);
+        if (spatialIndexService.isReady()) {
+            // Same _id order and cursor as the Mongo query; ObjectId hex strings sort like ObjectIds
+            String afterId = after != null ? after.getId().toHexString() : null;
+            List<Location> fetched = spatialIndexService.within(minLng, minLat, maxLng, maxLat).stream()
+                    .filter(location -> afterId == null || location.getId().compareTo(afterId) > 0)
+                    .sorted(Comparator.comparing(Location::getId))
+                    .limit(Cursor.pageSize(size) + 1)
+                    .toList();
+            return CursorPage.of(fetched, Cursor.pageSize(size), Location::getId);
+        }
+        Pageable page = PageRequest.of(0, Cursor.pageSize(size) + 1, LocationRepository.KEYSET_ORDER);
+        List<Location> fetched = after == null
+                ? locationRepository.findPageWithin(area, page)
+                : locationRepository.findPageWithinAfter(area, after.getId(), page);
+        return CursorPage.of(fetched, Cursor.pageSize(size), Location::getId);
+    }
+    
+    // The k closest locations to (lat, lng), optionally of one type, answered from the in-memory index
+    public List<NearbyLocation> findNearest(double lat, double lng, int k, Location.LocationType type) {
+        validateCoordinates(lat, lng);
+        if (k < 1 || k > MAX_NEAREST) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_NEAREST);
+        }
+        if (!spatialIndexService.isReady()) {
+            return findNearby(lat, lng, MAX_RADIUS_KM, type, 0, k).getItems();
+        }
+        return spatialIndexService.nearest(lat, lng, k, Double.MAX_VALUE,
+                        location -> type == null || type == location.getType()).stream()
+                .map(neighbour -> new NearbyLocation(neighbour.location(), neighbour.distanceKm()))
+                .toList();
+    }
+    
+    // Runs before IndexManager builds the 2dsphere index
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        long backfilled = backfillPositions();
+        if (backfilled > 0) {
+            log.info("Backfilled GeoJSON position on {} locations", backfilled);
+        }
+    }
+    
+    // Derives position from latitude/longitude on documents written before it existed;
+    // documents with out-of-range coordinates are skipped since the 2dsphere index would reject them
+    public long backfillPositions() {
+        Document filter = new Document("position", new Document("$exists", false))
+                .append("latitude", new Document("$gte", -90.0).append("$lte", 90.0))
+                .append("longitude", new Document("$gte", -180.0).append("$lte", 180.0));
+        Document setPosition = new Document("$set", new Document("position", new Document("type", "Point")
+                .append("coordinates", List.of("$longitude", "$latitude"))));
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Location.class))
+                .updateMany(filter, List.of(setPosition))
+                .getModifiedCount();
+    }
+    
     @Auditable
     public Location createLocation(LocationDTO dto) {
         Location location = new Location();
         mapDtoToEntity(dto, location);
-        return locationRepository.save(location);
+        Location saved = locationRepository.save(location);
+        // Caches drop the old value before the new version can be served as an ETag
+        eventPublisher.publishEvent(LocationsChangedEvent.upserted(saved));
+        catalogVersionService.bump();
+        return saved;
     }
     
     @Auditable
@@ -48,9 +172,17 @@ public class LocationService {
         if (id == null) {
             throw new IllegalArgumentException("Location ID cannot be null");
         }
-        Location location = Objects.requireNonNull(getLocationById(id), "Location must not be null");
+        // Loaded from Mongo, not the cache: cached instances are shared and must not be modified
+        Location location = locationRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Location not found with id: " + id));
+        Transaction.LocationReference before = new Transaction.LocationReference(
+                location.getId(), location.getName(), location.getLatitude(), location.getLongitude());
         mapDtoToEntity(dto, location);
-        return locationRepository.save(location);
+        Location saved = locationRepository.save(location);
+        eventPublisher.publishEvent(LocationsChangedEvent.upserted(saved));
+        catalogVersionService.bump();
+        locationPropagationService.enqueue(before, saved);
+        return saved;
     }
     
     @Auditable
@@ -60,13 +192,23 @@ public class LocationService {
         }
         Location location = Objects.requireNonNull(getLocationById(id), "Location must not be null");
         locationRepository.delete(location);
+        eventPublisher.publishEvent(LocationsChangedEvent.deleted(id));
+        catalogVersionService.bump();
     }
     
     private void mapDtoToEntity(LocationDTO dto, Location location) {
         location.setName(dto.getName());
         location.setLatitude(dto.getLatitude());
         location.setLongitude(dto.getLongitude());
+        location.setPosition(Location.positionOf(dto.getLatitude(), dto.getLongitude()));
         location.setDescription(dto.getDescription());
         location.setType(dto.getType());
+        location.setCapacity(dto.getCapacity());
+    }
+    
+    private void validateCoordinates(double lat, double lng) {
+        if (lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+            throw new IllegalArgumentException("Coordinates out of range");
+        }
     }
 }
\ No newline at end of file
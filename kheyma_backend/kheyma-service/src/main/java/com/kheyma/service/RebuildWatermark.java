@@ -0,0 +1,29 @@
+package com.kheyma.service;
+
+import org.bson.types.ObjectId;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+// Cut-off for rebuilds that correct write-maintained metrics while bookings keep arriving. Only bookings
+// whose _id predates the watermark are recounted, and only documents last written before it are corrected,
+// each guarded by the updatedAt it was read with. A booking's $inc lands moments after its insert, so a
+// document quiet since the watermark holds exactly the bookings before it; busy ones wait for the next run.
+record RebuildWatermark(ObjectId transactionsBefore, LocalDateTime quietBefore) {
+    
+    static final Duration IN_FLIGHT_GRACE = Duration.ofMinutes(1);
+    
+    static RebuildWatermark now() {
+        Instant watermark = Instant.now().minus(IN_FLIGHT_GRACE);
+        return new RebuildWatermark(ObjectId.getSmallestWithDate(Date.from(watermark)),
+                LocalDateTime.ofInstant(watermark, ZoneId.systemDefault()));
+    }
+    
+    // Documents written before updatedAt was tracked count as quiet
+    boolean isQuiet(LocalDateTime updatedAt) {
+        return updatedAt == null || updatedAt.isBefore(quietBefore);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,263 @@
+package com.kheyma.service;
+
+import com.kheyma.config.CacheConfig;
+import com.kheyma.dto.RevenueBreakdown;
+import com.kheyma.dto.RollupReconciliationReport;
+import com.kheyma.model.RevenueRollup;
+import com.kheyma.model.Transaction;
+import com.kheyma.repository.RevenueRollupRepository;
+import com.kheyma.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RevenueRollupService {
+    
+    private static final double REVENUE_TOLERANCE = 0.005;
+    
+    private final MongoTemplate mongoTemplate;
+    private final RevenueRollupRepository revenueRollupRepository;
+    private final TransactionRepository transactionRepository;
+    
+    public void record(Transaction transaction) {
+        recordAll(List.of(transaction));
+    }
+    
+    // Folds a batch of bookings into one upsert per touched bucket
+    public void recordAll(Collection<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        Map<String, RevenueRollup> deltas = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            for (RevenueRollup bucket : bucketsOf(transaction)) {
+                RevenueRollup delta = deltas.computeIfAbsent(bucket.getId(), id -> bucket);
+                delta.setCount(delta.getCount() + 1);
+                delta.setRevenue(delta.getRevenue() + transaction.getAmount());
+            }
+        }
+        
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RevenueRollup.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (RevenueRollup delta : deltas.values()) {
+            Update update = new Update()
+                    .inc("count", delta.getCount())
+                    .inc("revenue", delta.getRevenue())
+                    .setOnInsert("dimension", delta.getDimension())
+                    .setOnInsert("key", delta.getKey())
+                    .set("updatedAt", now);
+            
+            if (delta.getDimension() == RevenueRollup.Dimension.LOCATION) {
+                update.set("name", delta.getName())
+                        .set("latitude", delta.getLatitude())
+                        .set("longitude", delta.getLongitude());
+            }
+            ops.upsert(Query.query(Criteria.where("_id").is(delta.getId())), update);
+        }
+        ops.execute();
+    }
+    
+    public RevenueRollup getTotal() {
+        return revenueRollupRepository
+                .findById(RevenueRollup.idOf(RevenueRollup.Dimension.TOTAL, RevenueRollup.TOTAL_KEY))
+                .orElseGet(() -> emptyBucket(RevenueRollup.Dimension.TOTAL, RevenueRollup.TOTAL_KEY));
+    }
+    
+    public RevenueRollup getMonth(YearMonth month) {
+        return revenueRollupRepository
+                .findById(RevenueRollup.idOf(RevenueRollup.Dimension.MONTH, month.toString()))
+                .orElseGet(() -> emptyBucket(RevenueRollup.Dimension.MONTH, month.toString()));
+    }
+    
+    public List<RevenueRollup> getDays(String fromDay, String toDay) {
+        return revenueRollupRepository.findByDimensionAndKeyRange(RevenueRollup.Dimension.DAY, fromDay, toDay);
+    }
+    
+    public List<RevenueRollup> getByDimension(RevenueRollup.Dimension dimension) {
+        return revenueRollupRepository.findByDimension(dimension);
+    }
+    
+    public List<RevenueRollup> getTopLocations() {
+        return revenueRollupRepository.findTop10ByDimensionOrderByCountDesc(RevenueRollup.Dimension.LOCATION);
+    }
+    
+    // Location buckets by location id; their name and coordinates are kept current by LocationPropagationService
+    public Map<String, RevenueRollup> getLocations(Collection<String> locationIds) {
+        List<String> ids = locationIds.stream()
+                .map(locationId -> RevenueRollup.idOf(RevenueRollup.Dimension.LOCATION, locationId))
+                .toList();
+        Map<String, RevenueRollup> byLocation = new HashMap<>();
+        revenueRollupRepository.findAllById(ids).forEach(rollup -> byLocation.put(rollup.getKey(), rollup));
+        return byLocation;
+    }
+    
+    @Scheduled(cron = "${kheyma.analytics.rollups.reconcile-cron:0 30 3 * * *}")
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
+    public void scheduledReconciliation() {
+        RollupReconciliationReport report = reconcile(true);
+        if (!report.getDrifts().isEmpty()) {
+            log.warn("Revenue rollups drifted: {} of {} buckets repaired",
+                    report.getDrifts().size(), report.getRollupsChecked());
+        }
+    }
+    
+    // Recomputes every bucket from the transactions collection and compares it with the stored rollups,
+    // both bounded by one RebuildWatermark. With repair enabled each drifted bucket is corrected in place.
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true, condition = "#repair")
+    public RollupReconciliationReport reconcile(boolean repair) {
+        RebuildWatermark watermark = RebuildWatermark.now();
+        Map<String, RevenueRollup> actual = new HashMap<>();
+        revenueRollupRepository.findAll().forEach(rollup -> actual.put(rollup.getId(), rollup));
+        RevenueBreakdown breakdown = transactionRepository.aggregateRevenueBreakdown(watermark.transactionsBefore());
+        Map<String, RevenueRollup> expected = new HashMap<>();
+        
+        if (breakdown.getTotal().getCount() > 0) {
+            addExpected(expected, RevenueRollup.Dimension.TOTAL, RevenueRollup.TOTAL_KEY, breakdown.getTotal());
+        }
+        breakdown.getByPackage().forEach(b -> addExpected(expected, RevenueRollup.Dimension.PACKAGE, b.getKey(), b));
+        breakdown.getByDay().forEach(b -> {
+            addExpected(expected, RevenueRollup.Dimension.DAY, b.getKey(), b);
+            String month = YearMonth.from(LocalDate.parse(b.getKey())).toString();
+            addExpected(expected, RevenueRollup.Dimension.MONTH, month, b);
+        });
+        breakdown.getByLocation().forEach(b -> {
+            RevenueRollup rollup = addExpected(expected, RevenueRollup.Dimension.LOCATION, b.getKey(), b);
+            rollup.setName(b.getName());
+            rollup.setLatitude(b.getLatitude());
+            rollup.setLongitude(b.getLongitude());
+        });
+        
+        return compareAndRepair(expected, actual, watermark, breakdown.getTotal().getCount(), repair);
+    }
+    
+    private RevenueRollup addExpected(Map<String, RevenueRollup> expected, RevenueRollup.Dimension dimension,
+                                      String key, RevenueBreakdown.Bucket bucket) {
+        RevenueRollup rollup = expected.computeIfAbsent(RevenueRollup.idOf(dimension, key),
+                id -> emptyBucket(dimension, key));
+        rollup.setCount(rollup.getCount() + bucket.getCount());
+        rollup.setRevenue(rollup.getRevenue() + bucket.getRevenue());
+        return rollup;
+    }
+    
+    private RollupReconciliationReport compareAndRepair(Map<String, RevenueRollup> expected,
+                                                        Map<String, RevenueRollup> actual, RebuildWatermark watermark,
+                                                        long scanned, boolean repair) {
+        RollupReconciliationReport report = new RollupReconciliationReport();
+        report.setCheckedAt(LocalDateTime.now());
+        report.setTransactionsScanned(scanned);
+        
+        Set<String> ids = new HashSet<>(expected.keySet());
+        ids.addAll(actual.keySet());
+        report.setRollupsChecked(ids.size());
+        
+        for (String id : ids) {
+            RevenueRollup want = expected.get(id);
+            RevenueRollup have = actual.get(id);
+            if (have != null && !watermark.isQuiet(have.getUpdatedAt())) {
+                report.setRollupsSkipped(report.getRollupsSkipped() + 1);
+                continue;
+            }
+            long wantCount = want != null ? want.getCount() : 0;
+            long haveCount = have != null ? have.getCount() : 0;
+            double wantRevenue = want != null ? want.getRevenue() : 0.0;
+            double haveRevenue = have != null ? have.getRevenue() : 0.0;
+            
+            if (wantCount != haveCount || Math.abs(wantRevenue - haveRevenue) > REVENUE_TOLERANCE) {
+                report.getDrifts().add(new RollupReconciliationReport.Drift(
+                        id, wantCount, haveCount, wantRevenue, haveRevenue));
+            }
+        }
+        
+        if (repair && !report.getDrifts().isEmpty()) {
+            repair(report.getDrifts(), expected, actual);
+            report.setRepaired(true);
+        }
+        
+        return report;
+    }
+    
+    // Applies each drift as an $inc of (want - have). A stored bucket is only changed while its updatedAt is
+    // still the value read, so a booking recorded since then is never subtracted; the next run revisits it.
+    // A missing bucket is upserted, and a booking that creates it meanwhile is not part of `want`.
+    private void repair(List<RollupReconciliationReport.Drift> drifts, Map<String, RevenueRollup> expected,
+                        Map<String, RevenueRollup> actual) {
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RevenueRollup.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (RollupReconciliationReport.Drift drift : drifts) {
+            RevenueRollup want = expected.get(drift.getRollupId());
+            RevenueRollup have = actual.get(drift.getRollupId());
+            Query unchanged = have != null
+                    ? Query.query(Criteria.where("_id").is(drift.getRollupId()).and("updatedAt").is(have.getUpdatedAt()))
+                    : null;
+            if (want == null) {
+                ops.remove(unchanged);
+                continue;
+            }
+            Update update = new Update()
+                    .inc("count", drift.getExpectedCount() - drift.getActualCount())
+                    .inc("revenue", drift.getExpectedRevenue() - drift.getActualRevenue())
+                    .setOnInsert("dimension", want.getDimension())
+                    .setOnInsert("key", want.getKey())
+                    .set("updatedAt", now);
+            if (want.getDimension() == RevenueRollup.Dimension.LOCATION) {
+                update.set("name", want.getName())
+                        .set("latitude", want.getLatitude())
+                        .set("longitude", want.getLongitude());
+            }
+            if (unchanged != null) {
+                ops.updateOne(unchanged, update);
+            } else {
+                ops.upsert(Query.query(Criteria.where("_id").is(drift.getRollupId())), update);
+            }
+        }
+        ops.execute();
+    }
+    
+    private List<RevenueRollup> bucketsOf(Transaction transaction) {
+        String day = transaction.getDate().toString();
+        String month = YearMonth.from(transaction.getDate()).toString();
+        Transaction.LocationReference location = transaction.getLocation();
+        
+        RevenueRollup locationBucket = emptyBucket(RevenueRollup.Dimension.LOCATION, location.getLocationId());
+        locationBucket.setName(location.getName());
+        locationBucket.setLatitude(location.getLatitude());
+        locationBucket.setLongitude(location.getLongitude());
+        
+        return List.of(
+                emptyBucket(RevenueRollup.Dimension.TOTAL, RevenueRollup.TOTAL_KEY),
+                emptyBucket(RevenueRollup.Dimension.DAY, day),
+                emptyBucket(RevenueRollup.Dimension.MONTH, month),
+                locationBucket,
+                emptyBucket(RevenueRollup.Dimension.PACKAGE, transaction.getPackageType().name())
+        );
+    }
+    
+    private RevenueRollup emptyBucket(RevenueRollup.Dimension dimension, String key) {
+        RevenueRollup rollup = new RevenueRollup();
+        rollup.setId(RevenueRollup.idOf(dimension, key));
+        rollup.setDimension(dimension);
+        rollup.setKey(key);
+        return rollup;
+    }
+}
\ No newline at end of file
@@ -1,25 +1,55 @@
 package com.kheyma.service;
 
 import com.kheyma.aspect.Auditable;
+import com.kheyma.config.CacheConfig;
+import com.kheyma.dto.CursorPage;
 import com.kheyma.dto.ReviewDTO;
 import com.kheyma.model.Review;
 import com.kheyma.model.User;
+import com.kheyma.pagination.Cursor;
 import com.kheyma.repository.ReviewRepository;
 import com.kheyma.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ReviewService {
     
     private final ReviewRepository reviewRepository;
     private final UserRepository userRepository;
+    private final MongoTemplate mongoTemplate;
+    
+    // Review pages are keyed on createdAt, so older reviews saved without one take it from their _id
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCreatedAt() {
+        long updated = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("createdAt").is(null)),
+                AggregationUpdate.update().set("createdAt").toValue(ConvertOperators.valueOf("_id").convertToDate()),
+                Review.class
+        ).getModifiedCount();
+        if (updated > 0) {
+            log.info("Backfilled createdAt on {} reviews", updated);
+        }
+    }
     
     @Auditable
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
     public Review createReview(ReviewDTO dto, String userEmail) {
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -44,8 +74,15 @@ public class ReviewService {
         return reviewRepository.save(review);
     }
     
-    public List<Review> getReviewsByCampsite(String campsiteId) {
-        return reviewRepository.findByCampsiteIdOrderByCreatedAtDesc(campsiteId);
+    public CursorPage<Review> getReviewsByCampsite(String campsiteId, String cursor, int size) {
+        Cursor after = Cursor.decode(cursor);
+        Pageable page = PageRequest.of(0, Cursor.pageSize(size) + 1, ReviewRepository.KEYSET_ORDER);
+        List<Review> fetched = after == null
+                ? reviewRepository.findPageByCampsiteId(campsiteId, page)
+                : reviewRepository.findPageByCampsiteIdAfter(campsiteId,
+                        after.getDateTimeKey(), after.getId(), page);
+        return CursorPage.of(fetched, Cursor.pageSize(size),
+                r -> r.getCreatedAt() != null ? r.getCreatedAt().toString() : null, Review::getId);
     }
     
     public List<Review> getReviewsByUserEmail(String userEmail) {
@@ -55,6 +92,7 @@ public class ReviewService {
     }
     
     @Auditable
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
     public Review updateReview(String id, ReviewDTO dto, String userEmail) {
         if (id == null) {
             throw new IllegalArgumentException("Review ID cannot be null");
@@ -81,6 +119,7 @@ public class ReviewService {
     }
     
     @Auditable
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
     public void deleteReview(String id, String userEmail) {
         if (id == null) {
             throw new IllegalArgumentException("Review ID cannot be null");
@@ -0,0 +1,87 @@
+package com.kheyma.service;
+
+import com.kheyma.model.Counter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// Hi/lo sequence allocator: each instance reserves a block of values with one atomic $inc on the
+// sequence's counter document and hands them out from memory. Values are unique across instances;
+// a block that is not used up before shutdown leaves a gap.
+@Service
+@RequiredArgsConstructor
+public class SequenceService {
+    
+    public static final String TRANSACTION_ID = "transactions.transId";
+    
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    
+    @Value("${kheyma.sequences.block-size:50}")
+    private int blockSize;
+    
+    // `seed` returns the highest value already in use; it is read once per instance, before the first block
+    public long next(String sequence, LongSupplier seed) {
+        return blocks.computeIfAbsent(sequence, name -> {
+            ensureSeeded(name, seed.getAsLong());
+            return new Block();
+        }).next(sequence);
+    }
+    
+    // Reserves `count` consecutive values directly from the counter and returns the first one
+    public long reserve(String sequence, int count, LongSupplier seed) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be positive");
+        }
+        blocks.computeIfAbsent(sequence, name -> {
+            ensureSeeded(name, seed.getAsLong());
+            return new Block();
+        });
+        return increment(sequence, count) - count + 1;
+    }
+    
+    // $max keeps the seed idempotent when several instances start against an existing collection
+    private void ensureSeeded(String sequence, long highestInUse) {
+        mongoTemplate.upsert(
+                Query.query(Criteria.where("_id").is(sequence)),
+                new Update().max("value", highestInUse),
+                Counter.class
+        );
+    }
+    
+    private long increment(String sequence, int count) {
+        Counter counter = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(sequence)),
+                new Update().inc("value", count),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Counter.class
+        );
+        if (counter == null) {
+            throw new RuntimeException("Could not allocate from sequence: " + sequence);
+        }
+        return counter.getValue();
+    }
+    
+    private final class Block {
+        
+        private long next = 1;
+        private long last = 0; // Empty until the first reservation
+        
+        synchronized long next(String sequence) {
+            if (next > last) {
+                last = increment(sequence, blockSize);
+                next = last - blockSize + 1;
+            }
+            return next++;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.kheyma.service;
+
+import com.kheyma.event.LocationsChangedEvent;
+import com.kheyma.geo.SpatialGrid;
+import com.kheyma.model.Location;
+import com.kheyma.repository.LocationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+// Holds the whole location catalogue in a SpatialGrid so viewport and nearest queries skip Mongo.
+// Local writes are applied to the grid in place as they happen; the periodic reload swaps in a fresh grid
+// that picks up writes made by other instances.
+@Slf4j
+@Service
+public class SpatialIndexService {
+    
+    private final LocationRepository locationRepository;
+    private final double cellDegrees;
+    
+    private volatile SpatialGrid grid;
+    private volatile boolean ready;
+    
+    public SpatialIndexService(
+            LocationRepository locationRepository,
+            @Value("${kheyma.locations.spatial-index.cell-degrees:0.1}") double cellDegrees
+    ) {
+        this.locationRepository = locationRepository;
+        this.cellDegrees = cellDegrees;
+        this.grid = SpatialGrid.empty(cellDegrees);
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    // The current grid; a different instance or version() means the catalogue changed
+    public SpatialGrid snapshot() {
+        return grid;
+    }
+    
+    public List<Location> within(double minLng, double minLat, double maxLng, double maxLat) {
+        return grid.within(minLng, minLat, maxLng, maxLat);
+    }
+    
+    public List<SpatialGrid.Neighbour> nearest(double lat, double lng, int k, double maxDistanceKm,
+                                               Predicate<Location> filter) {
+        return grid.nearest(lat, lng, k, maxDistanceKm, filter);
+    }
+    
+    // After LocationService has backfilled positions
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reload();
+    }
+    
+    @Scheduled(fixedDelayString = "${kheyma.locations.spatial-index.reload-interval:PT10M}",
+            initialDelayString = "${kheyma.locations.spatial-index.reload-interval:PT10M}")
+    public void scheduledReload() {
+        reload();
+    }
+    
+    public synchronized int reload() {
+        SpatialGrid rebuilt = SpatialGrid.of(locationRepository.findAll(), cellDegrees);
+        grid = rebuilt;
+        ready = true;
+        log.debug("Spatial index rebuilt with {} locations", rebuilt.size());
+        return rebuilt.size();
+    }
+    
+    // Serialized with reload so a write is never lost to a concurrent swap
+    @EventListener
+    public synchronized void onLocationsChanged(LocationsChangedEvent event) {
+        switch (event.getType()) {
+            case UPSERTED -> grid.put(event.getLocation());
+            case DELETED -> grid.remove(event.getLocationId());
+            case RELOADED -> reload();
+        }
+    }
+}
\ No newline at end of file
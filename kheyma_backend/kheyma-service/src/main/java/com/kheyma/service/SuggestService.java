@@ -0,0 +1,79 @@
+package com.kheyma.service;
+
+import com.kheyma.dto.LocationSuggestion;
+import com.kheyma.event.LocationsChangedEvent;
+import com.kheyma.model.Location;
+import com.kheyma.repository.LocationRepository;
+import com.kheyma.search.PrefixIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Type-ahead over location names and descriptions from an in-process PrefixIndex, replacing a
+// collection-scanning regex per keystroke. Local writes rebuild the index immediately; the periodic
+// reload picks up writes made by other instances.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SuggestService {
+    
+    private static final int MAX_SUGGESTIONS = 20;
+    
+    private final LocationRepository locationRepository;
+    
+    private Map<String, Location> locations = Map.of();
+    private volatile PrefixIndex index = PrefixIndex.of(List.of());
+    
+    public List<LocationSuggestion> suggest(String query, int limit) {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        return index.suggest(query, limit).stream()
+                .map(location -> new LocationSuggestion(location.getId(), location.getName(), location.getType(),
+                        location.getLatitude(), location.getLongitude()))
+                .toList();
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reload();
+    }
+    
+    @Scheduled(fixedDelayString = "${kheyma.locations.suggest.reload-interval:PT10M}",
+            initialDelayString = "${kheyma.locations.suggest.reload-interval:PT10M}")
+    public void scheduledReload() {
+        reload();
+    }
+    
+    public synchronized int reload() {
+        Map<String, Location> loaded = new HashMap<>();
+        locationRepository.findAll().forEach(location -> loaded.put(location.getId(), location));
+        locations = loaded;
+        index = PrefixIndex.of(loaded.values());
+        log.debug("Suggest index rebuilt with {} locations", loaded.size());
+        return loaded.size();
+    }
+    
+    @EventListener
+    public synchronized void onLocationsChanged(LocationsChangedEvent event) {
+        if (event.getType() == LocationsChangedEvent.Type.RELOADED) {
+            reload();
+            return;
+        }
+        Map<String, Location> next = new HashMap<>(locations);
+        if (event.getType() == LocationsChangedEvent.Type.DELETED) {
+            next.remove(event.getLocationId());
+        } else {
+            next.put(event.getLocationId(), event.getLocation());
+        }
+        locations = next;
+        index = PrefixIndex.of(next.values());
+    }
+}
\ No newline at end of file
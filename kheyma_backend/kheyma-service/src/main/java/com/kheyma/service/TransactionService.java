@@ -1,29 +1,54 @@
 package com.kheyma.service;
 
 import com.kheyma.aspect.Auditable;
+import com.kheyma.config.CacheConfig;
+import com.kheyma.dto.BulkTransactionRequest;
+import com.kheyma.dto.BulkTransactionResult;
+import com.kheyma.dto.CursorPage;
 import com.kheyma.dto.TransactionDTO;
 import com.kheyma.model.Location;
 import com.kheyma.model.Transaction;
 import com.kheyma.model.User;
-import com.kheyma.repository.LocationRepository;
+import com.kheyma.model.UserSpendingSummary;
 import com.kheyma.repository.TransactionRepository;
+import com.kheyma.pagination.Cursor;
+import com.kheyma.projection.TransactionSummary;
+import com.kheyma.projection.View;
 import com.kheyma.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
     
+    private final MongoTemplate mongoTemplate;
     private final TransactionRepository transactionRepository;
     private final UserRepository userRepository;
-    private final LocationRepository locationRepository;
+    private final LocationCacheService locationCacheService;
+    private final RevenueRollupService revenueRollupService;
+    private final CustomerSketchService customerSketchService;
+    private final AmountDistributionService amountDistributionService;
+    private final SequenceService sequenceService;
+    private final UserSpendingService userSpendingService;
+    private final InventoryService inventoryService;
     
     @Auditable
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
     public Transaction createTransaction(TransactionDTO dto, String userEmail) {
         if (userEmail == null) {
             throw new IllegalArgumentException("User email cannot be null");
@@ -35,30 +60,237 @@ public class TransactionService {
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         String locationId = Objects.requireNonNull(dto.getLocationId(), "Location ID must not be null");
-        Location location = locationRepository.findById(locationId)
-                .orElseThrow(() -> new RuntimeException("Location not found"));
-        
-        // Get next transaction ID
-        Integer nextTransId = transactionRepository.findTopByOrderByTransIdDesc()
-                .map(t -> t.getTransId() + 1)
-                .orElse(1);
+        Location location = locationCacheService.getById(locationId);
+        if (location == null) {
+            throw new RuntimeException("Location not found");
+        }
         
         Transaction transaction = new Transaction();
         transaction.setUserId(user.getId());
-        transaction.setTransId(nextTransId);
+        transaction.setTransId(nextTransId());
         transaction.setAmount(dto.getAmount());
         transaction.setPackageType(dto.getPackageType());
         transaction.setDate(dto.getDate() != null ? dto.getDate() : LocalDate.now());
         
-        // Create location reference
+        transaction.setLocation(locationReferenceOf(location));
+        
+        if (!inventoryService.claim(location, transaction.getDate())) {
+            throw new RuntimeException("No availability at this location on " + transaction.getDate());
+        }
+        Transaction saved;
+        try {
+            saved = transactionRepository.save(transaction);
+        } catch (RuntimeException e) {
+            inventoryService.release(location, transaction.getDate());
+            throw e;
+        }
+        recordDerivedMetrics(saved);
+        return saved;
+    }
+    
+    // Resolves every distinct user and location with one $in query each, claims inventory for the whole batch,
+    // reserves one block of transIds and writes all valid items with a single unordered bulk insert
+    @Auditable
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
+    public BulkTransactionResult createTransactions(List<BulkTransactionRequest.Item> items) {
+        return createTransactions(items, null);
+    }
+    
+    // Same, writing item i under transactionIds.get(i) so a caller can look its bookings up if the call throws
+    @Auditable
+    @CacheEvict(cacheNames = CacheConfig.ANALYTICS_CACHE, allEntries = true)
+    public BulkTransactionResult createTransactions(List<BulkTransactionRequest.Item> items,
+                                                    List<String> transactionIds) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Items cannot be empty");
+        }
+        if (transactionIds != null && transactionIds.size() != items.size()) {
+            throw new IllegalArgumentException("One transaction ID is required per item");
+        }
+        Set<String> emails = new HashSet<>();
+        Set<String> locationIds = new HashSet<>();
+        for (BulkTransactionRequest.Item item : items) {
+            if (item != null) {
+                if (item.getUserEmail() != null) {
+                    emails.add(item.getUserEmail());
+                }
+                if (item.getLocationId() != null) {
+                    locationIds.add(item.getLocationId());
+                }
+            }
+        }
+        Map<String, User> users = userRepository.findByEmailIn(emails).stream()
+                .collect(Collectors.toMap(User::getEmail, Function.identity()));
+        Map<String, Location> locations = locationCacheService.getAllById(locationIds);
+        
+        BulkTransactionResult result = new BulkTransactionResult();
+        result.setReceived(items.size());
+        List<Transaction> valid = new ArrayList<>(); // Every item holding an inventory claim
+        List<BulkTransactionResult.ItemResult> validResults = new ArrayList<>();
+        Set<Integer> failed = new HashSet<>();
+        
+        String[] errors = new String[items.size()];
+        Transaction[] candidates = new Transaction[items.size()];
+        List<InventoryService.Claim> claims = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            BulkTransactionRequest.Item item = items.get(i);
+            errors[i] = validate(item, users, locations);
+            if (errors[i] != null) {
+                continue;
+            }
+            Transaction transaction = new Transaction();
+            // Assigned up front so results can report it
+            transaction.setId(transactionIds != null ? transactionIds.get(i) : new ObjectId().toHexString());
+            transaction.setUserId(users.get(item.getUserEmail()).getId());
+            transaction.setAmount(item.getAmount());
+            transaction.setPackageType(item.getPackageType());
+            transaction.setDate(item.getDate() != null ? item.getDate() : LocalDate.now());
+            transaction.setLocation(locationReferenceOf(locations.get(item.getLocationId())));
+            candidates[i] = transaction;
+            claims.add(new InventoryService.Claim(locations.get(item.getLocationId()), transaction.getDate()));
+        }
+        // One claim round trip for the whole batch; if it throws, which units it took is unknown and
+        // InventoryService.rebuild recounts them
+        boolean[] granted = claims.isEmpty() ? new boolean[0] : inventoryService.claimAll(claims);
+        
+        try {
+            int claim = 0;
+            for (int i = 0; i < items.size(); i++) {
+                Transaction transaction = candidates[i];
+                if (transaction == null) {
+                    result.getItems().add(new BulkTransactionResult.ItemResult(
+                            i, BulkTransactionResult.Status.REJECTED, null, null, errors[i]));
+                    continue;
+                }
+                if (!granted[claim++]) {
+                    result.getItems().add(new BulkTransactionResult.ItemResult(
+                            i, BulkTransactionResult.Status.REJECTED, null, null,
+                            "No availability at this location on " + transaction.getDate()));
+                    continue;
+                }
+                valid.add(transaction);
+                
+                BulkTransactionResult.ItemResult itemResult = new BulkTransactionResult.ItemResult(
+                        i, BulkTransactionResult.Status.CREATED, transaction.getId(), null, null);
+                validResults.add(itemResult);
+                result.getItems().add(itemResult);
+            }
+            
+            if (!valid.isEmpty()) {
+                long firstTransId = sequenceService.reserve(SequenceService.TRANSACTION_ID, valid.size(), this::highestTransId);
+                for (int i = 0; i < valid.size(); i++) {
+                    Integer transId = Math.toIntExact(firstTransId + i);
+                    valid.get(i).setTransId(transId);
+                    validResults.get(i).setTransId(transId);
+                }
+                insertAll(valid, validResults, failed);
+            }
+        } catch (RuntimeException e) {
+            // Nothing was written, or what was written could not be determined; give every claim back
+            valid.forEach(unsaved -> inventoryService.release(
+                    locations.get(unsaved.getLocation().getLocationId()), unsaved.getDate()));
+            throw e;
+        }
+        
+        List<Transaction> saved = new ArrayList<>();
+        for (int i = 0; i < valid.size(); i++) {
+            if (failed.contains(i)) {
+                Transaction unsaved = valid.get(i);
+                inventoryService.release(locations.get(unsaved.getLocation().getLocationId()), unsaved.getDate());
+            } else {
+                saved.add(valid.get(i));
+            }
+        }
+        recordDerivedMetrics(saved);
+        result.setCreated(saved.size());
+        result.setFailed(result.getReceived() - result.getCreated());
+        return result;
+    }
+    
+    // Adds the index of every item that was not written to `failed`. A timeout or network error leaves the
+    // outcome unknown, so the ids are looked up to find which items landed.
+    private void insertAll(List<Transaction> valid, List<BulkTransactionResult.ItemResult> validResults,
+                           Set<Integer> failed) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class)
+                    .insert(valid)
+                    .execute();
+        } catch (BulkOperationException e) {
+            e.getErrors().forEach(writeError -> {
+                failed.add(writeError.getIndex());
+                validResults.get(writeError.getIndex()).setError(writeError.getMessage());
+            });
+        } catch (RuntimeException e) {
+            Query written = Query.query(Criteria.where("_id").in(valid.stream().map(Transaction::getId).toList()));
+            written.fields().include("_id");
+            Set<String> persisted = mongoTemplate.find(written, Transaction.class).stream()
+                    .map(Transaction::getId)
+                    .collect(Collectors.toSet());
+            for (int i = 0; i < valid.size(); i++) {
+                if (!persisted.contains(valid.get(i).getId())) {
+                    failed.add(i);
+                    validResults.get(i).setError(e.getMessage());
+                }
+            }
+        }
+        failed.forEach(index -> validResults.get(index).setStatus(BulkTransactionResult.Status.FAILED));
+    }
+    
+    private String validate(BulkTransactionRequest.Item item, Map<String, User> users, Map<String, Location> locations) {
+        if (item == null) {
+            return "Item cannot be null";
+        }
+        if (item.getUserEmail() == null) {
+            return "User email is required";
+        }
+        if (item.getLocationId() == null) {
+            return "Location ID is required";
+        }
+        if (item.getAmount() == null) {
+            return "Amount is required";
+        }
+        if (item.getPackageType() == null) {
+            return "Package type is required";
+        }
+        if (!users.containsKey(item.getUserEmail())) {
+            return "User not found";
+        }
+        if (!locations.containsKey(item.getLocationId())) {
+            return "Location not found";
+        }
+        return null;
+    }
+    
+    private Transaction.LocationReference locationReferenceOf(Location location) {
         Transaction.LocationReference locationRef = new Transaction.LocationReference();
         locationRef.setLocationId(location.getId());
         locationRef.setName(location.getName());
         locationRef.setLatitude(location.getLatitude());
         locationRef.setLongitude(location.getLongitude());
-        transaction.setLocation(locationRef);
-        
-        return transactionRepository.save(transaction);
+        return locationRef;
+    }
+    
+    // Usually served from this instance's reserved block without a database round trip
+    private Integer nextTransId() {
+        return Math.toIntExact(sequenceService.next(SequenceService.TRANSACTION_ID, this::highestTransId));
+    }
+    
+    private long highestTransId() {
+        return transactionRepository.findTopByOrderByTransIdDesc()
+                .map(Transaction::getTransId)
+                .orElse(0);
+    }
+    
+    // Keeps the write-maintained analytics (rollups, sketches, histograms, spending summaries) in step with every saved booking
+    private void recordDerivedMetrics(Transaction transaction) {
+        recordDerivedMetrics(List.of(transaction));
+    }
+    
+    private void recordDerivedMetrics(List<Transaction> transactions) {
+        revenueRollupService.recordAll(transactions);
+        customerSketchService.recordAll(transactions);
+        amountDistributionService.recordAll(transactions);
+        userSpendingService.recordAll(transactions);
     }
     
     public List<Transaction> getTransactionsByUserEmail(String userEmail) {
@@ -67,8 +299,14 @@ public class TransactionService {
         return transactionRepository.findByUserIdOrderByDateDesc(user.getId());
     }
     
-    public List<Transaction> getAllTransactions() {
-        return transactionRepository.findAll();
+    public CursorPage<?> getAllTransactions(String cursor, int size, View view) {
+        Cursor after = Cursor.decode(cursor);
+        Pageable page = keysetPage(size);
+        Class<?> type = viewType(view);
+        List<?> fetched = after == null
+                ? transactionRepository.findPage(page, type)
+                : transactionRepository.findPageAfter(after.getDateKey(), after.getId(), page, type);
+        return toPage(fetched, size);
     }
     
     public Transaction getTransactionById(String id) {
@@ -79,33 +317,75 @@ public class TransactionService {
                 .orElseThrow(() -> new RuntimeException("Transaction not found with id: " + id));
     }
     
-    public List<Transaction> getTransactionsByDateRange(LocalDate startDate, LocalDate endDate) {
-        return transactionRepository.findByDateBetween(startDate, endDate);
+    public CursorPage<?> getTransactionsByDateRange(LocalDate startDate, LocalDate endDate,
+                                                    String cursor, int size, View view) {
+        Cursor after = Cursor.decode(cursor);
+        Pageable page = keysetPage(size);
+        Class<?> type = viewType(view);
+        List<?> fetched = after == null
+                ? transactionRepository.findPageByDateRange(startDate, endDate, page, type)
+                : transactionRepository.findPageByDateRangeAfter(startDate, endDate,
+                        after.getDateKey(), after.getId(), page, type);
+        return toPage(fetched, size);
     }
     
-    public List<Transaction> getTransactionsByLocation(String locationId) {
+    public CursorPage<?> getTransactionsByLocation(String locationId, String cursor, int size, View view) {
         if (locationId == null) {
             throw new IllegalArgumentException("Location ID cannot be null");
         }
-        return transactionRepository.findByLocationLocationId(locationId);
+        Cursor after = Cursor.decode(cursor);
+        Pageable page = keysetPage(size);
+        Class<?> type = viewType(view);
+        List<?> fetched = after == null
+                ? transactionRepository.findPageByLocation(locationId, page, type)
+                : transactionRepository.findPageByLocationAfter(locationId,
+                        after.getDateKey(), after.getId(), page, type);
+        return toPage(fetched, size);
+    }
+    
+    // One extra row tells whether another page exists
+    private Pageable keysetPage(int size) {
+        return PageRequest.of(0, Cursor.pageSize(size) + 1, TransactionRepository.KEYSET_ORDER);
+    }
+    
+    private Class<?> viewType(View view) {
+        return view == View.SUMMARY ? TransactionSummary.class : Transaction.class;
+    }
+    
+    private <T> CursorPage<T> toPage(List<T> fetched, int size) {
+        return CursorPage.of(fetched, Cursor.pageSize(size), t -> keysetDate(t).toString(), this::keysetId);
+    }
+    
+    private LocalDate keysetDate(Object item) {
+        return item instanceof Transaction transaction
+                ? transaction.getDate()
+                : ((TransactionSummary) item).getDate();
+    }
+    
+    private String keysetId(Object item) {
+        return item instanceof Transaction transaction
+                ? transaction.getId()
+                : ((TransactionSummary) item).getId();
     }
     
     public Double getTotalRevenueByDateRange(LocalDate startDate, LocalDate endDate) {
-        List<Transaction> transactions = transactionRepository.findByDateBetween(startDate, endDate);
-        return transactions.stream()
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        return transactionRepository.sumAmountByDateBetween(startDate, endDate);
     }
     
     public Double getTotalRevenueByUser(String userEmail) {
+        if (userEmail == null) {
+            throw new IllegalArgumentException("User email cannot be null");
+        }
+        return getSpendingSummary(userEmail).getTotalSpent();
+    }
+    
+    // Reads the write-maintained summary instead of summing the user's transactions
+    public UserSpendingSummary getSpendingSummary(String userEmail) {
         if (userEmail == null) {
             throw new IllegalArgumentException("User email cannot be null");
         }
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        List<Transaction> transactions = transactionRepository.findByUserId(user.getId());
-        return transactions.stream()
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        return userSpendingService.getSummary(user.getId());
     }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package com.kheyma.service;
+
+import com.kheyma.model.Transaction;
+import com.kheyma.model.UserSpendingSummary;
+import com.kheyma.repository.TransactionRepository;
+import com.kheyma.repository.UserSpendingSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class UserSpendingService {
+    
+    private static final double SPENT_TOLERANCE = 0.005;
+    
+    private final MongoTemplate mongoTemplate;
+    private final UserSpendingSummaryRepository userSpendingSummaryRepository;
+    private final TransactionRepository transactionRepository;
+    
+    // Folds a batch of bookings into one upsert per user
+    public void recordAll(Collection<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        Map<String, UserSpendingSummary> deltas = new LinkedHashMap<>();
+        transactions.forEach(transaction -> fold(deltas, transaction));
+        
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserSpendingSummary.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (UserSpendingSummary delta : deltas.values()) {
+            Update update = new Update()
+                    .inc("totalSpent", delta.getTotalSpent())
+                    .inc("bookingCount", delta.getBookingCount())
+                    .max("lastBookingDate", delta.getLastBookingDate())
+                    .set("updatedAt", now);
+            delta.getLocationCounts().forEach((locationId, count) -> update.inc("locationCounts." + locationId, count));
+            ops.upsert(Query.query(Criteria.where("_id").is(delta.getId())), update);
+        }
+        ops.execute();
+    }
+    
+    public UserSpendingSummary getSummary(String userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null");
+        }
+        return userSpendingSummaryRepository.findById(userId).orElseGet(() -> {
+            UserSpendingSummary empty = new UserSpendingSummary();
+            empty.setId(userId);
+            return empty;
+        });
+    }
+    
+    // Rebuilds every summary from the booking history, e.g. after enabling summaries on existing data.
+    // Summaries are corrected in place like AmountDistributionService.rebuild: one written since the watermark
+    // is left for the next run, the others are overwritten or removed only while their updatedAt is still the
+    // value read, so concurrent $incs are never lost and /my-total-spent never reads an empty collection.
+    public int rebuild() {
+        RebuildWatermark watermark = RebuildWatermark.now();
+        Map<String, UserSpendingSummary> stored = new HashMap<>();
+        userSpendingSummaryRepository.findAll().forEach(summary -> stored.put(summary.getId(), summary));
+        
+        Map<String, UserSpendingSummary> summaries = new HashMap<>();
+        try (Stream<Transaction> transactions =
+                     transactionRepository.streamForMetricsBefore(watermark.transactionsBefore())) {
+            transactions.forEach(transaction -> fold(summaries, transaction));
+        }
+        
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserSpendingSummary.class);
+        int writes = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (UserSpendingSummary summary : summaries.values()) {
+            UserSpendingSummary current = stored.get(summary.getId());
+            if (current == null) {
+                Update update = new Update()
+                        .inc("totalSpent", summary.getTotalSpent())
+                        .inc("bookingCount", summary.getBookingCount())
+                        .max("lastBookingDate", summary.getLastBookingDate())
+                        .set("updatedAt", now);
+                summary.getLocationCounts().forEach((locationId, count) ->
+                        update.inc("locationCounts." + locationId, count));
+                ops.upsert(Query.query(Criteria.where("_id").is(summary.getId())), update);
+                writes++;
+                continue;
+            }
+            if (!watermark.isQuiet(current.getUpdatedAt()) || sameTotals(summary, current)) {
+                continue;
+            }
+            ops.updateOne(unchanged(current), new Update()
+                    .set("totalSpent", summary.getTotalSpent())
+                    .set("bookingCount", summary.getBookingCount())
+                    .set("lastBookingDate", summary.getLastBookingDate())
+                    .set("locationCounts", summary.getLocationCounts())
+                    .set("updatedAt", now));
+            writes++;
+        }
+        for (UserSpendingSummary summary : stored.values()) {
+            if (!summaries.containsKey(summary.getId()) && watermark.isQuiet(summary.getUpdatedAt())) {
+                ops.remove(unchanged(summary));
+                writes++;
+            }
+        }
+        if (writes > 0) {
+            ops.execute();
+        }
+        return summaries.size();
+    }
+    
+    private boolean sameTotals(UserSpendingSummary rebuilt, UserSpendingSummary stored) {
+        return rebuilt.getBookingCount() == stored.getBookingCount()
+                && Math.abs(rebuilt.getTotalSpent() - stored.getTotalSpent()) < SPENT_TOLERANCE
+                && Objects.equals(rebuilt.getLastBookingDate(), stored.getLastBookingDate())
+                && rebuilt.getLocationCounts().equals(stored.getLocationCounts());
+    }
+    
+    private Query unchanged(UserSpendingSummary summary) {
+        return Query.query(Criteria.where("_id").is(summary.getId()).and("updatedAt").is(summary.getUpdatedAt()));
+    }
+    
+    private void fold(Map<String, UserSpendingSummary> summaries, Transaction transaction) {
+        UserSpendingSummary summary = summaries.computeIfAbsent(transaction.getUserId(), userId -> {
+            UserSpendingSummary empty = new UserSpendingSummary();
+            empty.setId(userId);
+            return empty;
+        });
+        summary.setTotalSpent(summary.getTotalSpent() + transaction.getAmount());
+        summary.setBookingCount(summary.getBookingCount() + 1);
+        if (summary.getLastBookingDate() == null || transaction.getDate().isAfter(summary.getLastBookingDate())) {
+            summary.setLastBookingDate(transaction.getDate());
+        }
+        summary.getLocationCounts().merge(transaction.getLocation().getLocationId(), 1L, Long::sum);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.kheyma;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.UUID;
+
+// Tests that need a real mongod are annotated with
+// @EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+// and run against a throwaway database, e.g. KHEYMA_TEST_MONGO_URI=mongodb://localhost:27017 mvn test.
+// Change-stream and transaction features additionally need a replica set.
+public final class MongoTestSupport implements AutoCloseable {
+    
+    public static final String URI_VARIABLE = "KHEYMA_TEST_MONGO_URI";
+    
+    private final MongoClient client;
+    private final MongoTemplate template;
+    
+    private MongoTestSupport(MongoClient client, String database) {
+        this.client = client;
+        this.template = new MongoTemplate(client, database);
+    }
+    
+    public static MongoTestSupport open() {
+        MongoClient client = MongoClients.create(System.getenv(URI_VARIABLE));
+        return new MongoTestSupport(client, "kheyma_test_" + UUID.randomUUID().toString().substring(0, 8));
+    }
+    
+    public MongoTemplate template() {
+        return template;
+    }
+    
+    // A second template on the same database, standing in for another service instance
+    public MongoTemplate otherInstance() {
+        return new MongoTemplate(client, template.getDb().getName());
+    }
+    
+    @Override
+    public void close() {
+        template.getDb().drop();
+        client.close();
+    }
+}
\ No newline at end of file
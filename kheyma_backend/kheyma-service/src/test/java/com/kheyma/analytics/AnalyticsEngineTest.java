@@ -0,0 +1,113 @@
+package com.kheyma.analytics;
+
+import com.kheyma.dto.TransactionReport;
+import com.kheyma.model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AnalyticsEngineTest {
+    
+    private static final int LOCATIONS = 40;
+    private static final Transaction.LocationReference[] LOCATION_REFERENCES = new Transaction.LocationReference[LOCATIONS];
+    private static final LocalDate[] DATES = new LocalDate[365];
+    
+    static {
+        for (int i = 0; i < LOCATIONS; i++) {
+            LOCATION_REFERENCES[i] = new Transaction.LocationReference("loc-" + i, "Camp " + i, 36.0, 10.0);
+        }
+        for (int i = 0; i < DATES.length; i++) {
+            DATES[i] = LocalDate.of(2024, 1, 1).plusDays(i);
+        }
+    }
+    
+    private final AnalyticsEngine engine = new AnalyticsEngine();
+    
+    // Deterministic in i, so a stream and a list of the same range describe the same data
+    private static Transaction transaction(int i) {
+        return new Transaction(null, "user-" + (i % 1000), i, 10.0 + i % 97,
+                LOCATION_REFERENCES[i % LOCATIONS],
+                Transaction.PackageType.values()[i % 3],
+                DATES[i % DATES.length]);
+    }
+    
+    private static Stream<Transaction> generated(int count) {
+        return IntStream.range(0, count).mapToObj(AnalyticsEngineTest::transaction);
+    }
+    
+    @Test
+    void streamedReportMatchesListReport() {
+        int count = 3 * AnalyticsEngine.STREAM_BATCH_SIZE + 123;
+        List<Transaction> list = generated(count).toList();
+        
+        TransactionReport fromList = engine.analyze(list).toReport(Integer.MAX_VALUE);
+        TransactionReport fromStream = engine.analyze(generated(count)).toReport(Integer.MAX_VALUE);
+        
+        assertThat(fromStream.getTransactionCount()).isEqualTo(count);
+        assertThat(fromStream.getTotalRevenue()).isCloseTo(fromList.getTotalRevenue(), within(1e-3));
+        assertThat(fromStream.getTransactionsByPackage()).isEqualTo(fromList.getTransactionsByPackage());
+        assertThat(fromStream.getRevenueByMonth()).containsOnlyKeys(fromList.getRevenueByMonth().keySet());
+        assertThat(fromStream.getLocationCount()).isEqualTo(LOCATIONS);
+        assertThat(fromStream.getMinAmount()).isEqualTo(10.0);
+        assertThat(fromStream.getMaxAmount()).isEqualTo(106.0);
+    }
+    
+    @Test
+    void mergedPartialsMatchASingleFold() {
+        List<Transaction> transactions = generated(10_000).toList();
+        TransactionAccumulator single = new TransactionAccumulator();
+        transactions.forEach(single::add);
+        
+        TransactionAccumulator merged = new TransactionAccumulator();
+        for (int from = 0; from < transactions.size(); from += 1_500) {
+            TransactionAccumulator part = new TransactionAccumulator();
+            transactions.subList(from, Math.min(from + 1_500, transactions.size())).forEach(part::add);
+            merged.merge(part);
+        }
+        
+        TransactionReport expected = single.toReport(5);
+        TransactionReport actual = merged.toReport(5);
+        assertThat(actual.getTransactionCount()).isEqualTo(expected.getTransactionCount());
+        assertThat(actual.getTotalRevenue()).isCloseTo(expected.getTotalRevenue(), within(1e-6));
+        assertThat(actual.getLocations()).hasSize(5);
+        assertThat(actual.getLocations()).extracting(TransactionReport.LocationTotals::getTransactionCount)
+                .isEqualTo(expected.getLocations().stream()
+                        .map(TransactionReport.LocationTotals::getTransactionCount).toList());
+        assertThat(actual.getRevenueByMonth()).hasSize(12);
+    }
+    
+    // Two million transactions would retain well over 100 MB if the stream were collected first; streamed
+    // they must never hold more than one batch plus the accumulator. Retained heap is sampled after a full GC.
+    @Test
+    void streamedAnalysisRetainsBoundedHeap() {
+        int count = 2_000_000;
+        long allowedGrowth = 48L * 1024 * 1024;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long baseline = retainedHeap(memory);
+        List<Long> samples = new ArrayList<>();
+        
+        TransactionAccumulator result = engine.analyze(generated(count).peek(transaction -> {
+            if (transaction.getTransId() % 250_000 == 249_999) {
+                samples.add(retainedHeap(memory) - baseline);
+            }
+        }));
+        
+        assertThat(result.getCount()).isEqualTo(count);
+        assertThat(samples).hasSize(count / 250_000);
+        assertThat(samples).allSatisfy(growth -> assertThat(growth).isLessThan(allowedGrowth));
+    }
+    
+    private static long retainedHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
\ No newline at end of file
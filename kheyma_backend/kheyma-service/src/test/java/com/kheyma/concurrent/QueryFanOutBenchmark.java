@@ -0,0 +1,66 @@
+package com.kheyma.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Run with -Pbenchmark. Seven queries with a simulated 60 ms round trip each, forked as
+// AnalyticsService.getDashboardAnalytics does, against the same queries run one after another
+@Tag("benchmark")
+class QueryFanOutBenchmark {
+    
+    private static final int QUERIES = 7;
+    private static final Duration ROUND_TRIP = Duration.ofMillis(60);
+    private static final int RUNS = 5;
+    
+    private final QueryFanOut fanOut = new QueryFanOut(32, Duration.ofSeconds(5));
+    
+    @AfterEach
+    void tearDown() {
+        fanOut.shutdown();
+    }
+    
+    @Test
+    void fanOutAgainstSequentialQueries() throws Exception {
+        long sequential = Long.MAX_VALUE;
+        long parallel = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                sum += query(i).call();
+            }
+            sequential = Math.min(sequential, System.nanoTime() - start);
+            
+            start = System.nanoTime();
+            List<QueryFanOut.Subtask<Long>> results = new ArrayList<>();
+            try (QueryFanOut.Scope scope = fanOut.open()) {
+                for (int i = 0; i < QUERIES; i++) {
+                    results.add(scope.fork(query(i)));
+                }
+                scope.join();
+            }
+            parallel = Math.min(parallel, System.nanoTime() - start);
+            assertThat(results.stream().mapToLong(QueryFanOut.Subtask::get).sum()).isEqualTo(sum);
+        }
+        
+        System.out.printf("Dashboard fan-out, %d queries of %d ms: sequential %d ms, fanned out %d ms (best of %d)%n",
+                QUERIES, ROUND_TRIP.toMillis(), TimeUnit.NANOSECONDS.toMillis(sequential),
+                TimeUnit.NANOSECONDS.toMillis(parallel), RUNS);
+    }
+    
+    private static Callable<Long> query(long result) {
+        return () -> {
+            Thread.sleep(ROUND_TRIP.toMillis());
+            return result;
+        };
+    }
+}
\ No newline at end of file
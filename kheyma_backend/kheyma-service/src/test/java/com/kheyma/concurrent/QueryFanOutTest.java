@@ -0,0 +1,69 @@
+package com.kheyma.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The dashboard fan-out as AnalyticsService.getDashboardAnalytics forks it; QueryFanOutBenchmark times it
+class QueryFanOutTest {
+    
+    private static final int QUERIES = 7;
+    
+    private final QueryFanOut fanOut = new QueryFanOut(32, Duration.ofSeconds(5));
+    
+    @AfterEach
+    void tearDown() {
+        fanOut.shutdown();
+    }
+    
+    // Each query waits until all of them have started, which only completes if they run at the same time
+    @Test
+    void forkedQueriesRunConcurrentlyAndReturnTheirOwnResults() throws Exception {
+        CountDownLatch started = new CountDownLatch(QUERIES);
+        List<QueryFanOut.Subtask<Long>> results = new ArrayList<>();
+        try (QueryFanOut.Scope scope = fanOut.open()) {
+            for (int i = 0; i < QUERIES; i++) {
+                long result = i;
+                results.add(scope.fork(() -> {
+                    started.countDown();
+                    if (!started.await(5, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Queries did not run concurrently");
+                    }
+                    return result;
+                }));
+            }
+            scope.join();
+        }
+        
+        assertThat(results).extracting(QueryFanOut.Subtask::get).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L);
+    }
+    
+    @Test
+    void firstFailureCancelsTheOtherQueries() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try (QueryFanOut.Scope scope = fanOut.open()) {
+            scope.fork(() -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            });
+            scope.fork(() -> {
+                throw new IllegalStateException("count failed");
+            });
+            
+            assertThatThrownBy(scope::join).hasMessage("count failed");
+        }
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.kheyma.dto;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Coordinates outside the 2dsphere range are rejected by validation (400) before they reach Mongo
+class LocationDTOTest {
+    
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    
+    @Test
+    void acceptsTheFullCoordinateRange() {
+        assertThat(validator.validate(location(90.0, -180.0))).isEmpty();
+        assertThat(validator.validate(location(-90.0, 180.0))).isEmpty();
+    }
+    
+    @Test
+    void rejectsCoordinatesOutOfRange() {
+        assertThat(validator.validate(location(90.5, 10.0))).extracting(ConstraintViolation::getMessage)
+                .containsExactly("Latitude must be between -90 and 90");
+        assertThat(validator.validate(location(36.8, -181.0))).extracting(ConstraintViolation::getMessage)
+                .containsExactly("Longitude must be between -180 and 180");
+    }
+    
+    private static LocationDTO location(double latitude, double longitude) {
+        return new LocationDTO("Ain Draham", latitude, longitude, null, null, 20);
+    }
+}
\ No newline at end of file
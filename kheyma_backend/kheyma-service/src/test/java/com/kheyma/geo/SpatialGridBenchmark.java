@@ -0,0 +1,162 @@
+package com.kheyma.geo;
+
+import com.kheyma.model.Location;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Run with -Pbenchmark. Grid searches against a scan over every location, on the catalogue shape
+// SpatialGridTest checks for correctness
+@Tag("benchmark")
+class SpatialGridBenchmark {
+    
+    private static final int LOCATIONS = 20_000;
+    private static final int LARGE_CATALOGUE = 1_000_000;
+    private static final int QUERIES = 200;
+    private static final double CELL_DEGREES = 0.1;
+    
+    private final Random random = new Random(11);
+    private List<Location> locations;
+    private SpatialGrid grid;
+    
+    @BeforeEach
+    void setUp() {
+        locations = catalogue(LOCATIONS);
+        grid = SpatialGrid.of(locations, CELL_DEGREES);
+    }
+    
+    @Test
+    void gridSearchAgainstAFullScan() {
+        double[][] points = new double[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            points[q] = new double[]{30 + random.nextDouble() * 7.5, 7.5 + random.nextDouble() * 4};
+        }
+        
+        long gridNearest = bestOf(() -> {
+            int found = 0;
+            for (double[] point : points) {
+                found += grid.nearest(point[0], point[1], 10, 50, location -> true).size();
+            }
+            return found;
+        });
+        long scanNearest = bestOf(() -> {
+            int found = 0;
+            for (double[] point : points) {
+                found += scanNearest(point[0], point[1], 10, 50).size();
+            }
+            return found;
+        });
+        long gridWithin = bestOf(() -> {
+            int found = 0;
+            for (double[] point : points) {
+                found += grid.within(point[1], point[0], point[1] + 0.5, point[0] + 0.3).size();
+            }
+            return found;
+        });
+        long scanWithin = bestOf(() -> {
+            int found = 0;
+            for (double[] point : points) {
+                found += scanWithin(point[1], point[0], point[1] + 0.5, point[0] + 0.3).size();
+            }
+            return found;
+        });
+        
+        System.out.printf("SpatialGrid, %d locations, %d queries: nearest %d us (scan %d us), within %d us (scan %d us)%n",
+                LOCATIONS, QUERIES, TimeUnit.NANOSECONDS.toMicros(gridNearest),
+                TimeUnit.NANOSECONDS.toMicros(scanNearest), TimeUnit.NANOSECONDS.toMicros(gridWithin),
+                TimeUnit.NANOSECONDS.toMicros(scanWithin));
+    }
+    
+    // A million locations loaded in one build and written one at a time, as a bulk import's change events
+    // arrive, then queried. Each write copies only its cell, so the import stays linear.
+    @Test
+    void aMillionLocations() {
+        List<Location> large = catalogue(LARGE_CATALOGUE);
+        
+        long start = System.nanoTime();
+        SpatialGrid built = SpatialGrid.of(large, CELL_DEGREES);
+        long build = System.nanoTime() - start;
+        
+        SpatialGrid imported = SpatialGrid.empty(CELL_DEGREES);
+        start = System.nanoTime();
+        for (Location location : large) {
+            imported.put(location);
+        }
+        long oneByOne = System.nanoTime() - start;
+        assertThat(imported.size()).isEqualTo(built.size()).isEqualTo(LARGE_CATALOGUE);
+        
+        double[][] points = new double[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            points[q] = new double[]{30 + random.nextDouble() * 7.5, 7.5 + random.nextDouble() * 4};
+        }
+        long nearest = bestOf(() -> {
+            int found = 0;
+            for (double[] point : points) {
+                found += imported.nearest(point[0], point[1], 10, 50, location -> true).size();
+            }
+            return found;
+        });
+        long within = bestOf(() -> {
+            int found = 0;
+            for (double[] point : points) {
+                found += imported.within(point[1], point[0], point[1] + 0.5, point[0] + 0.3).size();
+            }
+            return found;
+        });
+        
+        System.out.printf("SpatialGrid, %d locations: build %d ms, one write at a time %d ms; %d queries: "
+                        + "nearest %d us, within %d us%n", LARGE_CATALOGUE, TimeUnit.NANOSECONDS.toMillis(build),
+                TimeUnit.NANOSECONDS.toMillis(oneByOne), QUERIES, TimeUnit.NANOSECONDS.toMicros(nearest),
+                TimeUnit.NANOSECONDS.toMicros(within));
+    }
+    
+    private List<Location> catalogue(int size) {
+        List<Location> catalogue = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // Mostly the Tunisian catalogue, with a sprinkling worldwide to exercise sparse far-away cells
+            double lat = i % 50 == 0 ? random.nextDouble() * 170 - 85 : 30 + random.nextDouble() * 7.5;
+            double lng = i % 50 == 0 ? random.nextDouble() * 350 - 175 : 7.5 + random.nextDouble() * 4;
+            catalogue.add(new Location("loc-" + i, "Camp " + i, lat, lng, null, null,
+                    Location.LocationType.values()[i % Location.LocationType.values().length], 20));
+        }
+        return catalogue;
+    }
+    
+    private List<SpatialGrid.Neighbour> scanNearest(double lat, double lng, int k, double maxDistanceKm) {
+        return locations.stream()
+                .map(location -> new SpatialGrid.Neighbour(location,
+                        SpatialGrid.distanceKm(lat, lng, location.getLatitude(), location.getLongitude())))
+                .filter(neighbour -> neighbour.distanceKm() <= maxDistanceKm)
+                .sorted(Comparator.comparingDouble(SpatialGrid.Neighbour::distanceKm))
+                .limit(k)
+                .toList();
+    }
+    
+    private List<Location> scanWithin(double minLng, double minLat, double maxLng, double maxLat) {
+        return locations.stream()
+                .filter(location -> location.getLongitude() >= minLng && location.getLongitude() <= maxLng
+                        && location.getLatitude() >= minLat && location.getLatitude() <= maxLat)
+                .toList();
+    }
+    
+    // Fastest of a few runs after a warm-up, so JIT compilation and GC pauses do not decide the comparison
+    private static long bestOf(Supplier<Integer> queries) {
+        queries.get();
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            assertThat(queries.get()).isPositive();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.kheyma.geo;
+
+import com.kheyma.model.Location;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The grid must answer exactly what a scan over every location answers; SpatialGridBenchmark times both
+class SpatialGridTest {
+    
+    private static final int LOCATIONS = 5_000;
+    private static final int QUERIES = 200;
+    private static final double CELL_DEGREES = 0.1;
+    
+    private final Random random = new Random(11);
+    private List<Location> locations;
+    private SpatialGrid grid;
+    
+    @BeforeEach
+    void setUp() {
+        locations = new ArrayList<>();
+        for (int i = 0; i < LOCATIONS; i++) {
+            // Mostly the Tunisian catalogue, with a sprinkling worldwide to exercise sparse far-away cells
+            double lat = i % 50 == 0 ? random.nextDouble() * 170 - 85 : 30 + random.nextDouble() * 7.5;
+            double lng = i % 50 == 0 ? random.nextDouble() * 350 - 175 : 7.5 + random.nextDouble() * 4;
+            locations.add(new Location("loc-" + i, "Camp " + i, lat, lng, null, null,
+                    Location.LocationType.values()[i % Location.LocationType.values().length], 20));
+        }
+        grid = SpatialGrid.of(locations, CELL_DEGREES);
+    }
+    
+    @Test
+    void nearestMatchesAFullScan() {
+        for (int q = 0; q < QUERIES; q++) {
+            double lat = 30 + random.nextDouble() * 7.5;
+            double lng = 7.5 + random.nextDouble() * 4;
+            int k = 1 + random.nextInt(20);
+            double maxDistanceKm = q % 5 == 0 ? Double.MAX_VALUE : 5 + random.nextDouble() * 100;
+            
+            // Compared by distance, since equidistant locations may come back in either order
+            assertThat(grid.nearest(lat, lng, k, maxDistanceKm, location -> true))
+                    .extracting(SpatialGrid.Neighbour::distanceKm)
+                    .containsExactlyElementsOf(scanNearest(lat, lng, k, maxDistanceKm).stream()
+                            .map(SpatialGrid.Neighbour::distanceKm).toList());
+        }
+    }
+    
+    @Test
+    void withinMatchesAFullScan() {
+        for (int q = 0; q < QUERIES; q++) {
+            double minLat = 28 + random.nextDouble() * 10, minLng = 6 + random.nextDouble() * 6;
+            double span = q % 10 == 0 ? 40 : random.nextDouble() * 2;
+            double maxLat = Math.min(90, minLat + span), maxLng = Math.min(180, minLng + span);
+            
+            assertThat(ids(grid.within(minLng, minLat, maxLng, maxLat)))
+                    .containsExactlyInAnyOrderElementsOf(ids(scanWithin(minLng, minLat, maxLng, maxLat)));
+        }
+    }
+    
+    // Moves, removals and re-adds applied in place leave the grid answering what a fresh build answers
+    @Test
+    void writesInPlaceMatchAFullScan() {
+        SpatialGrid written = SpatialGrid.empty(CELL_DEGREES);
+        locations.forEach(written::put);
+        long version = written.version();
+        for (int i = 0; i < LOCATIONS; i += 7) {
+            Location moved = locations.get(i);
+            moved = new Location(moved.getId(), moved.getName(), 30 + random.nextDouble() * 7.5,
+                    7.5 + random.nextDouble() * 4, null, null, moved.getType(), moved.getCapacity());
+            locations.set(i, moved);
+            written.put(moved);
+        }
+        for (int i = LOCATIONS - 1; i >= 0; i -= 11) {
+            written.remove(locations.remove(i).getId());
+        }
+        written.remove("loc-missing");
+        grid = written;
+        
+        assertThat(written.version()).isGreaterThan(version);
+        assertThat(written.size()).isEqualTo(locations.size());
+        assertThat(ids(written.locations())).containsExactlyInAnyOrderElementsOf(ids(locations));
+        nearestMatchesAFullScan();
+        withinMatchesAFullScan();
+    }
+    
+    private List<SpatialGrid.Neighbour> scanNearest(double lat, double lng, int k, double maxDistanceKm) {
+        return locations.stream()
+                .map(location -> new SpatialGrid.Neighbour(location, distance(lat, lng, location)))
+                .filter(neighbour -> neighbour.distanceKm() <= maxDistanceKm)
+                .sorted(Comparator.comparingDouble(SpatialGrid.Neighbour::distanceKm))
+                .limit(k)
+                .toList();
+    }
+    
+    private List<Location> scanWithin(double minLng, double minLat, double maxLng, double maxLat) {
+        return locations.stream()
+                .filter(location -> location.getLongitude() >= minLng && location.getLongitude() <= maxLng
+                        && location.getLatitude() >= minLat && location.getLatitude() <= maxLat)
+                .toList();
+    }
+    
+    private static List<String> ids(List<Location> found) {
+        return found.stream().map(Location::getId).toList();
+    }
+    
+    private static double distance(double lat, double lng, Location location) {
+        return SpatialGrid.distanceKm(lat, lng, location.getLatitude(), location.getLongitude());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.kheyma.indexing;
+
+import com.kheyma.dto.IndexReport;
+import com.mongodb.client.ListIndexesIterable;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// A changed index is only replaced once its successor is built, so queries never run without one
+class IndexManagerTest {
+    
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class, RETURNS_DEEP_STUBS);
+    private final IndexOperations indexOps = mock(IndexOperations.class);
+    private final IndexManager manager = new IndexManager(mongoTemplate, mock(QueryPlanVerifier.class));
+    
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setInitialEntitySet(Set.of(Booking.class));
+        mappingContext.initialize();
+        when(mongoTemplate.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+        when(mongoTemplate.indexOps("bookings")).thenReturn(indexOps);
+        
+        // The stored index has the declared name but is not unique
+        ListIndexesIterable<Document> existing = mock(ListIndexesIterable.class);
+        doAnswer(invocation -> {
+            List<Document> into = invocation.getArgument(0);
+            into.add(new Document("name", "code").append("key", new Document("code", 1)));
+            return into;
+        }).when(existing).into(any());
+        when(mongoTemplate.getCollection("bookings").listIndexes()).thenReturn(existing);
+    }
+    
+    @Test
+    void changedIndexesAreReportedWhenRecreationIsDisabled() {
+        IndexReport report = manager.ensureIndexes();
+        
+        assertThat(report.getIndexes()).extracting(IndexReport.Entry::getStatus)
+                .containsExactly(IndexReport.Status.CONFLICT);
+        verify(indexOps, never()).ensureIndex(any());
+        verify(indexOps, never()).dropIndex(any());
+    }
+    
+    @Test
+    void changedIndexesAreBuiltUnderANewNameBeforeTheOldOneIsDropped() {
+        ReflectionTestUtils.setField(manager, "recreateChanged", true);
+        
+        IndexReport report = manager.ensureIndexes();
+        
+        ArgumentCaptor<IndexDefinition> built = ArgumentCaptor.forClass(IndexDefinition.class);
+        InOrder order = inOrder(indexOps);
+        order.verify(indexOps).ensureIndex(built.capture());
+        order.verify(indexOps).dropIndex("code");
+        assertThat(built.getValue().getIndexOptions().getString("name")).isEqualTo("code_rebuilt");
+        assertThat(built.getValue().getIndexOptions().get("unique")).isEqualTo(true);
+        assertThat(report.getIndexes()).extracting(IndexReport.Entry::getName, IndexReport.Entry::getStatus)
+                .containsExactly(tuple("code_rebuilt", IndexReport.Status.RECREATED));
+    }
+    
+    @Test
+    void aFailedRebuildKeepsTheOldIndex() {
+        ReflectionTestUtils.setField(manager, "recreateChanged", true);
+        doThrow(new DuplicateKeyException("E11000")).when(indexOps).ensureIndex(any());
+        
+        IndexReport report = manager.ensureIndexes();
+        
+        assertThat(report.getIndexes()).extracting(IndexReport.Entry::getStatus)
+                .containsExactly(IndexReport.Status.FAILED);
+        verify(indexOps, never()).dropIndex(any());
+    }
+    
+    @org.springframework.data.mongodb.core.mapping.Document(collection = "bookings")
+    static class Booking {
+        private String id;
+        
+        @Indexed(name = "code", unique = true)
+        private String code;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.kheyma.indexing;
+
+import com.kheyma.MongoTestSupport;
+import com.kheyma.dto.QueryPlanReport;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.repository.Repository;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// The gate for index coverage: every catalogued repository query must explain to an index-backed plan
+class QueryPlanVerifierTest {
+    
+    @Test
+    void flagsCollectionScansExceptWhereAllowed() {
+        QueryPlanReport report = new QueryPlanVerifier(explaining(winningPlan("COLLSCAN"))).verify();
+        
+        assertThat(report.isPassed()).isFalse();
+        assertThat(report.getQueries()).filteredOn(QueryPlanReport.Plan::isPassed)
+                .extracting(QueryPlanReport.Plan::getQuery)
+                .containsExactlyInAnyOrder("LocationRepository.findByNameContainingIgnoreCase",
+                        "TransactionRepository.streamAllForMetrics");
+        assertThat(report.getQueries()).allSatisfy(plan -> assertThat(plan.isCollectionScan()).isTrue());
+    }
+    
+    @Test
+    void flagsInMemorySortsInsideSlotBasedPlans() {
+        Document sbe = new Document("queryPlan", new Document("stage", "SORT")
+                .append("inputStage", new Document("stage", "IXSCAN")));
+        QueryPlanReport report = new QueryPlanVerifier(explaining(sbe)).verify();
+        
+        assertThat(report.isPassed()).isFalse();
+        assertThat(report.getQueries()).allSatisfy(plan -> {
+            assertThat(plan.getStages()).containsExactly("SORT", "IXSCAN");
+            assertThat(plan.isInMemorySort()).isTrue();
+        });
+    }
+    
+    // Derived from the repository interfaces, so a new finder or @Query fails here until it is catalogued
+    @Test
+    void cataloguesEveryRepositoryQuery() throws Exception {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition definition) {
+                return definition.getMetadata().isInterface();
+            }
+        };
+        scanner.addIncludeFilter(new AssignableTypeFilter(Repository.class));
+        List<String> declared = new ArrayList<>();
+        for (BeanDefinition candidate : scanner.findCandidateComponents("com.kheyma.repository")) {
+            Class<?> repository = Class.forName(candidate.getBeanClassName());
+            for (Method method : repository.getDeclaredMethods()) {
+                if (!method.isDefault() && !method.isSynthetic() && !Modifier.isStatic(method.getModifiers())) {
+                    declared.add(repository.getSimpleName() + "." + method.getName());
+                }
+            }
+        }
+        
+        QueryPlanReport report = new QueryPlanVerifier(explaining(winningPlan("IXSCAN"))).verify();
+        
+        assertThat(declared).isNotEmpty();
+        assertThat(report.getQueries()).extracting(QueryPlanReport.Plan::getQuery).containsAll(declared);
+    }
+    
+    @Test
+    void passesIndexBackedPlans() {
+        Document plan = new Document("stage", "LIMIT").append("inputStage", new Document("stage", "FETCH")
+                .append("inputStage", new Document("stage", "IXSCAN")));
+        
+        assertThat(new QueryPlanVerifier(explaining(plan)).verify().isPassed()).isTrue();
+    }
+    
+    // Creates the declared indexes on a throwaway database, then explains the catalogue against them.
+    // Every collection gets a placeholder document, since an empty namespace explains to EOF and proves nothing.
+    @Test
+    @EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+    void everyCataloguedQueryIsIndexBackedOnMongo() throws Exception {
+        try (MongoTestSupport mongo = MongoTestSupport.open()) {
+            MongoTemplate template = mongo.template();
+            MongoMappingContext mappingContext = (MongoMappingContext) template.getConverter().getMappingContext();
+            ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter(new AnnotationTypeFilter(org.springframework.data.mongodb.core.mapping.Document.class));
+            for (BeanDefinition candidate : scanner.findCandidateComponents("com.kheyma.model")) {
+                MongoPersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(
+                        Class.forName(candidate.getBeanClassName()));
+                template.getCollection(entity.getCollection()).insertOne(new Document("placeholder", true));
+            }
+            QueryPlanVerifier verifier = new QueryPlanVerifier(template);
+            new IndexManager(template, verifier).ensureIndexes();
+            
+            QueryPlanReport report = verifier.verify();
+            
+            assertThat(report.getQueries()).allSatisfy(plan -> assertThat(plan.isPassed())
+                    .as("%s on %s: %s", plan.getQuery(), plan.getCollection(), plan.getStages())
+                    .isTrue());
+            assertThat(report.getQueries()).noneMatch(plan -> plan.getStages().contains("EOF"));
+        }
+    }
+    
+    private static Document winningPlan(String stage) {
+        return new Document("stage", stage);
+    }
+    
+    // Every query explains to the same winning plan
+    private static MongoTemplate explaining(Document winningPlan) {
+        MongoTemplate template = mock(MongoTemplate.class, RETURNS_DEEP_STUBS);
+        when(template.getCollection(anyString()).find(any(Bson.class)).sort(any(Bson.class)).limit(anyInt()).explain())
+                .thenReturn(new Document("queryPlanner", new Document("winningPlan", winningPlan)));
+        return template;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.kheyma.pagination;
+
+import com.kheyma.dto.CursorPage;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+// Cursors come back from clients, so anything that does not decode to a valid key must be an
+// InvalidCursorException, which answers 400
+class CursorTest {
+    
+    private static final Class<InvalidCursorException> INVALID = InvalidCursorException.class;
+    
+    private final String id = new ObjectId().toHexString();
+    
+    @Test
+    void roundTripsDateAndDateTimeKeys() {
+        Cursor date = Cursor.decode(Cursor.encode("2025-07-14", id));
+        Cursor dateTime = Cursor.decode(Cursor.encode("2025-07-14T09:30:12.345", id));
+        
+        assertThat(date.getDateKey()).isEqualTo(LocalDate.of(2025, 7, 14));
+        assertThat(date.getId().toHexString()).isEqualTo(id);
+        assertThat(dateTime.getDateTimeKey()).isEqualTo(LocalDateTime.of(2025, 7, 14, 9, 30, 12, 345_000_000));
+        assertThat(Cursor.decode(Cursor.encode(id)).getId().toHexString()).isEqualTo(id);
+    }
+    
+    @Test
+    void rejectsTamperedTokens() {
+        assertThatExceptionOfType(INVALID).isThrownBy(() -> Cursor.decode("not base64!"));
+        assertThatExceptionOfType(INVALID).isThrownBy(() -> Cursor.decode(token("2025-07-14")));
+        assertThatExceptionOfType(INVALID).isThrownBy(() -> Cursor.decode(token("2025-07-14|zz")));
+        assertThatExceptionOfType(INVALID).isThrownBy(() -> Cursor.decode(token("null|" + id)).getDateKey());
+        assertThatExceptionOfType(INVALID).isThrownBy(() -> Cursor.decode(token("null|" + id)).getDateTimeKey());
+        assertThatExceptionOfType(INVALID).isThrownBy(() -> Cursor.decode(token("|" + id)).getDateKey());
+    }
+    
+    @Test
+    void rejectsPageSizesBelowOne() {
+        assertThatExceptionOfType(INVALID).isThrownBy(() -> Cursor.pageSize(0));
+        assertThat(Cursor.pageSize(Cursor.MAX_PAGE_SIZE + 1)).isEqualTo(Cursor.MAX_PAGE_SIZE);
+    }
+    
+    @Test
+    void neverIssuesACursorWithoutASortKey() {
+        assertThatIllegalStateException().isThrownBy(() -> Cursor.encode(null, id));
+    }
+    
+    @Test
+    void idOnlyPagesContinueFromTheLastId() {
+        List<String> ids = List.of(new ObjectId().toHexString(), id, new ObjectId().toHexString());
+        
+        CursorPage<String> page = CursorPage.of(ids, 2, item -> item);
+        
+        assertThat(page.getItems()).hasSize(2);
+        assertThat(Cursor.decode(page.getNextCursor()).getId().toHexString()).isEqualTo(id);
+    }
+    
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.kheyma.projection;
+
+import com.kheyma.MongoTestSupport;
+import com.kheyma.model.Transaction;
+import com.kheyma.model.User;
+import com.kheyma.repository.TransactionRepository;
+import com.kheyma.repository.TransactionRepositoryImpl;
+import com.kheyma.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.kheyma.projection.SummaryViewFixture.transaction;
+import static com.kheyma.projection.SummaryViewFixture.user;
+
+// Run with -Pbenchmark. Bytes and time for one admin list page in each view. Interface projections shrank
+// the bytes but serialized several times slower than the entities, one proxy call per getter; the DTO
+// summaries should now be the faster ones too.
+@Tag("benchmark")
+class SummaryViewBenchmark {
+    
+    private static final int PAGE_SIZE = 1_000;
+    
+    private final SummaryViewFixture fixture = new SummaryViewFixture();
+    
+    @Test
+    void serializingEachView() {
+        List<User> users = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            users.add(user(i));
+            transactions.add(transaction(i));
+        }
+        
+        report("users", users, users.stream().map(user -> fixture.project(user, UserSummary.class)).toList());
+        report("transactions", transactions, transactions.stream()
+                .map(transaction -> fixture.project(transaction, TransactionSummary.class)).toList());
+    }
+    
+    @Test
+    @EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+    void fetchingEachViewFromMongo() throws Exception {
+        try (MongoTestSupport mongo = MongoTestSupport.open()) {
+            MongoRepositoryFactory factory = new MongoRepositoryFactory(mongo.template());
+            UserRepository userRepository = factory.getRepository(UserRepository.class);
+            TransactionRepository transactionRepository = factory.getRepository(TransactionRepository.class,
+                    RepositoryComposition.RepositoryFragments.just(new TransactionRepositoryImpl(mongo.template())));
+            List<User> users = new ArrayList<>();
+            List<Transaction> transactions = new ArrayList<>();
+            for (int i = 0; i < 5 * PAGE_SIZE; i++) {
+                User user = user(i);
+                user.setId(null);
+                users.add(user);
+                Transaction transaction = transaction(i);
+                transaction.setId(null);
+                transactions.add(transaction);
+            }
+            mongo.template().insertAll(users);
+            mongo.template().insertAll(transactions);
+            
+            PageRequest userPage = PageRequest.of(0, PAGE_SIZE, UserRepository.KEYSET_ORDER);
+            PageRequest transactionPage = PageRequest.of(0, PAGE_SIZE, TransactionRepository.KEYSET_ORDER);
+            long fullUsers = bestOf(() -> userRepository.findPage(userPage, User.class));
+            long summaryUsers = bestOf(() -> userRepository.findPage(userPage, UserSummary.class));
+            long fullTransactions = bestOf(() -> transactionRepository.findPage(transactionPage, Transaction.class));
+            long summaryTransactions = bestOf(
+                    () -> transactionRepository.findPage(transactionPage, TransactionSummary.class));
+            
+            System.out.printf("Fetching a %d-item page: users full %d us, summary %d us; "
+                            + "transactions full %d us, summary %d us%n", PAGE_SIZE,
+                    TimeUnit.NANOSECONDS.toMicros(fullUsers), TimeUnit.NANOSECONDS.toMicros(summaryUsers),
+                    TimeUnit.NANOSECONDS.toMicros(fullTransactions),
+                    TimeUnit.NANOSECONDS.toMicros(summaryTransactions));
+        }
+    }
+    
+    private void report(String list, List<?> full, List<?> summary) {
+        long fullTime = bestOf(() -> fixture.serialize(full));
+        long summaryTime = bestOf(() -> fixture.serialize(summary));
+        System.out.printf("A %d-item %s page: full %d bytes in %d us, summary %d bytes in %d us%n",
+                PAGE_SIZE, list, fixture.serialize(full).length, TimeUnit.NANOSECONDS.toMicros(fullTime),
+                fixture.serialize(summary).length, TimeUnit.NANOSECONDS.toMicros(summaryTime));
+    }
+    
+    // Fastest of a few runs after a warm-up, so JIT compilation and GC pauses do not decide the comparison
+    private static long bestOf(Supplier<?> work) {
+        work.get();
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            work.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.kheyma.projection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kheyma.model.Transaction;
+import com.kheyma.model.User;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Admin list pages in each view, mapped and serialized as the application does; shared by
+// SummaryViewPayloadTest and SummaryViewBenchmark
+class SummaryViewFixture {
+    
+    // Configured as Spring Boot configures the one that writes API responses
+    final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final MappingMongoConverter converter;
+    
+    // Offline equivalent of the converter Spring Boot configures, java.time types included
+    SummaryViewFixture() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+    }
+    
+    // What the repository does with a fetched document when asked for a summary type
+    <T> T project(Object entity, Class<T> type) {
+        Document document = new Document();
+        converter.write(entity, document);
+        return converter.read(type, document);
+    }
+    
+    byte[] serialize(List<?> page) {
+        try {
+            return objectMapper.writeValueAsBytes(page);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // Users as the full view returns them, password hash already cleared
+    static User user(int i) {
+        return new User(String.format("%024x", i), "camper" + i + "@kheyma.tn", null,
+                LocalDate.of(1990, 1, 1).plusDays(i), i + " Avenue Habib Bourguiba, Tunis", User.UserType.USER,
+                new User.UserPackage(User.UserPackage.PackageType.values()[i % 3]),
+                LocalDateTime.of(2025, 1, 1, 9, 0).plusMinutes(i), LocalDateTime.of(2025, 6, 1, 9, 0), true);
+    }
+    
+    static Transaction transaction(int i) {
+        return new Transaction(String.format("%024x", i), String.format("%024x", i % 200), i + 1, 80.0 + i % 120,
+                new Transaction.LocationReference("loc-" + i % 40, "Camp " + i % 40, 36.78 + i % 40 * 0.01,
+                        8.69 + i % 40 * 0.01),
+                Transaction.PackageType.values()[i % 3], LocalDate.of(2025, 7, 1).plusDays(i % 90));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.kheyma.projection;
+
+import com.kheyma.MongoTestSupport;
+import com.kheyma.model.Transaction;
+import com.kheyma.model.User;
+import com.kheyma.repository.TransactionRepository;
+import com.kheyma.repository.TransactionRepositoryImpl;
+import com.kheyma.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.kheyma.projection.SummaryViewFixture.transaction;
+import static com.kheyma.projection.SummaryViewFixture.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Shape and size of one admin list page in each view; SummaryViewBenchmark times serializing and fetching them
+class SummaryViewPayloadTest {
+    
+    private static final int PAGE_SIZE = 1_000;
+    
+    private final SummaryViewFixture fixture = new SummaryViewFixture();
+    
+    @Test
+    void summaryUserPageIsAFractionOfTheFullPage() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            users.add(user(i));
+        }
+        List<UserSummary> summaries = users.stream()
+                .map(user -> fixture.project(user, UserSummary.class))
+                .toList();
+        
+        byte[] full = fixture.serialize(users);
+        byte[] summary = fixture.serialize(summaries);
+        
+        assertThat(fixture.objectMapper.readTree(summary).get(0).size()).isEqualTo(4);
+        assertThat(summary.length).isLessThan(full.length / 2);
+        assertThat(summaries.get(7)).isEqualTo(new UserSummary(users.get(7).getId(), users.get(7).getEmail(),
+                User.UserType.USER, true));
+    }
+    
+    @Test
+    void summaryTransactionPageDropsLocationCoordinates() throws Exception {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            transactions.add(transaction(i));
+        }
+        List<TransactionSummary> summaries = transactions.stream()
+                .map(transaction -> fixture.project(transaction, TransactionSummary.class))
+                .toList();
+        
+        byte[] full = fixture.serialize(transactions);
+        byte[] summary = fixture.serialize(summaries);
+        
+        assertThat(fixture.objectMapper.readTree(summary).get(0).get("location").size()).isEqualTo(2);
+        assertThat(summary.length).isLessThan(full.length * 9 / 10);
+    }
+    
+    // Fetch side of the same comparison: the summary view must return the same page as the full one
+    @Test
+    @EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+    void summaryPagesFetchTheSameItemsAgainstMongo() throws Exception {
+        try (MongoTestSupport mongo = MongoTestSupport.open()) {
+            MongoRepositoryFactory factory = new MongoRepositoryFactory(mongo.template());
+            UserRepository userRepository = factory.getRepository(UserRepository.class);
+            TransactionRepository transactionRepository = factory.getRepository(TransactionRepository.class,
+                    RepositoryComposition.RepositoryFragments.just(new TransactionRepositoryImpl(mongo.template())));
+            List<User> users = new ArrayList<>();
+            List<Transaction> transactions = new ArrayList<>();
+            for (int i = 0; i < 2 * PAGE_SIZE; i++) {
+                User user = user(i);
+                user.setId(null);
+                users.add(user);
+                Transaction transaction = transaction(i);
+                transaction.setId(null);
+                transactions.add(transaction);
+            }
+            mongo.template().insertAll(users);
+            mongo.template().insertAll(transactions);
+            
+            PageRequest userPage = PageRequest.of(0, PAGE_SIZE, UserRepository.KEYSET_ORDER);
+            PageRequest transactionPage = PageRequest.of(0, PAGE_SIZE, TransactionRepository.KEYSET_ORDER);
+            assertThat(userRepository.findPage(userPage, UserSummary.class)).extracting(UserSummary::getId)
+                    .containsExactlyElementsOf(userRepository.findPage(userPage, User.class).stream()
+                            .map(User::getId).toList());
+            assertThat(transactionRepository.findPage(transactionPage, TransactionSummary.class))
+                    .extracting(TransactionSummary::getId)
+                    .containsExactlyElementsOf(transactionRepository.findPage(transactionPage, Transaction.class)
+                            .stream().map(Transaction::getId).toList());
+        }
+    }
+}
\ No newline at end of file
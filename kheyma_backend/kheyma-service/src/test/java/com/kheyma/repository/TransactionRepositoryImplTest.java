@@ -0,0 +1,115 @@
+package com.kheyma.repository;
+
+import com.kheyma.MongoTestSupport;
+import com.kheyma.dto.RevenueBreakdown;
+import com.kheyma.model.Transaction;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// The aggregation pipelines must agree with the in-memory sums they replaced
+@EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+class TransactionRepositoryImplTest {
+    
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    
+    private static MongoTestSupport mongo;
+    private static TransactionRepositoryImpl repository;
+    private static List<Transaction> transactions;
+    
+    @BeforeAll
+    static void seed() {
+        mongo = MongoTestSupport.open();
+        repository = new TransactionRepositoryImpl(mongo.template());
+        
+        Random random = new Random(42);
+        transactions = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String locationId = "loc-" + random.nextInt(7);
+            transactions.add(new Transaction(null, "user-" + random.nextInt(20), i + 1,
+                    Math.round(random.nextDouble() * 50000) / 100.0,
+                    new Transaction.LocationReference(locationId, "Camp " + locationId, 36.0 + random.nextDouble(),
+                            10.0 + random.nextDouble()),
+                    Transaction.PackageType.values()[random.nextInt(3)],
+                    START.plusDays(random.nextInt(120))));
+        }
+        mongo.template().insertAll(transactions);
+    }
+    
+    @AfterAll
+    static void drop() {
+        mongo.close();
+    }
+    
+    @Test
+    void sumAmountByDateBetweenMatchesLoadingTheRange() {
+        LocalDate from = START.plusDays(10), to = START.plusDays(75);
+        double loaded = mongo.template()
+                .find(Query.query(Criteria.where("date").gt(from).lt(to)), Transaction.class).stream()
+                .mapToDouble(Transaction::getAmount)
+                .sum();
+        
+        assertThat(repository.sumAmountByDateBetween(from, to)).isCloseTo(loaded, within(1e-6));
+        assertThat(repository.sumAmountByDateBetween(START.minusYears(1), START.minusDays(1))).isZero();
+    }
+    
+    @Test
+    void sumAmountByUserIdMatchesLoadingTheUser() {
+        for (int user = 0; user < 20; user++) {
+            String userId = "user-" + user;
+            double loaded = mongo.template()
+                    .find(Query.query(Criteria.where("userId").is(userId)), Transaction.class).stream()
+                    .mapToDouble(Transaction::getAmount)
+                    .sum();
+            
+            assertThat(repository.sumAmountByUserId(userId)).isCloseTo(loaded, within(1e-6));
+        }
+    }
+    
+    @Test
+    void revenueBreakdownMatchesPerTransactionFold() {
+        RevenueBreakdown breakdown = repository.aggregateRevenueBreakdown(new ObjectId());
+        assertThat(repository.aggregateRevenueBreakdown(ObjectId.getSmallestWithDate(new Date(0)))
+                .getTotal().getCount()).isZero();
+        
+        assertThat(breakdown.getTotal().getCount()).isEqualTo(transactions.size());
+        assertThat(breakdown.getTotal().getRevenue())
+                .isCloseTo(transactions.stream().mapToDouble(Transaction::getAmount).sum(), within(1e-6));
+        assertBuckets(breakdown.getByPackage(), t -> t.getPackageType().name());
+        assertBuckets(breakdown.getByLocation(), t -> t.getLocation().getLocationId());
+        assertBuckets(breakdown.getByDay(), t -> t.getDate().toString());
+        assertThat(breakdown.getByDay()).extracting(RevenueBreakdown.Bucket::getKey).isSorted();
+        breakdown.getByLocation().forEach(bucket -> assertThat(bucket.getName()).isEqualTo("Camp " + bucket.getKey()));
+    }
+    
+    private void assertBuckets(List<RevenueBreakdown.Bucket> buckets, Function<Transaction, String> key) {
+        Map<String, List<Transaction>> grouped = transactions.stream()
+                .collect(Collectors.groupingBy(key, TreeMap::new, Collectors.toList()));
+        
+        assertThat(buckets).hasSize(grouped.size());
+        for (RevenueBreakdown.Bucket bucket : buckets) {
+            List<Transaction> members = grouped.get(bucket.getKey());
+            assertThat(members).as(bucket.getKey()).isNotNull();
+            assertThat(bucket.getCount()).isEqualTo(members.size());
+            assertThat(bucket.getRevenue())
+                    .isCloseTo(members.stream().mapToDouble(Transaction::getAmount).sum(), within(1e-6));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.kheyma.search;
+
+import com.kheyma.model.Location;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Run with -Pbenchmark. Index suggestions against scoring every location, on the catalogue PrefixIndexTest
+// checks for correctness
+@Tag("benchmark")
+class PrefixIndexBenchmark {
+    
+    private static final int LOCATIONS = 10_000;
+    private static final int QUERIES = 200;
+    private static final int LIMIT = 10;
+    
+    @Test
+    void indexAgainstScoringEveryLocation() {
+        SuggestionFixture fixture = new SuggestionFixture(LOCATIONS);
+        PrefixIndex index = PrefixIndex.of(fixture.locations());
+        List<String> queries = new ArrayList<>();
+        for (int q = 0; q < QUERIES; q++) {
+            queries.add(fixture.query());
+        }
+        
+        long indexed = bestOf(queries, query -> index.suggest(query, LIMIT));
+        long scanned = bestOf(queries, query -> fixture.scan(query, LIMIT));
+        
+        System.out.printf("PrefixIndex, %d locations, %d queries: index %d us, scan %d us%n",
+                LOCATIONS, QUERIES, TimeUnit.NANOSECONDS.toMicros(indexed), TimeUnit.NANOSECONDS.toMicros(scanned));
+    }
+    
+    // Fastest of a few runs after a warm-up, so JIT compilation and GC pauses do not decide the comparison
+    private static long bestOf(List<String> queries, Function<String, List<Location>> suggest) {
+        queries.forEach(suggest::apply);
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            int found = 0;
+            for (String query : queries) {
+                found += suggest.apply(query).size();
+            }
+            assertThat(found).isPositive();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.kheyma.search;
+
+import com.kheyma.model.Location;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The index must suggest exactly what scoring every location one by one suggests; PrefixIndexBenchmark times both
+class PrefixIndexTest {
+    
+    private static final int LOCATIONS = 10_000;
+    private static final int QUERIES = 200;
+    
+    private SuggestionFixture fixture;
+    private PrefixIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        fixture = new SuggestionFixture(LOCATIONS);
+        index = PrefixIndex.of(fixture.locations());
+    }
+    
+    @Test
+    void suggestionsMatchScoringEveryLocation() {
+        for (int q = 0; q < QUERIES; q++) {
+            String query = fixture.query();
+            
+            // The whole ranking, not just the top few, which the best exact name matches crowd out
+            assertThat(index.suggest(query, Integer.MAX_VALUE)).as(query)
+                    .extracting(Location::getId)
+                    .containsExactlyElementsOf(fixture.scan(query, Integer.MAX_VALUE).stream()
+                            .map(Location::getId).toList());
+        }
+    }
+}
\ No newline at end of file
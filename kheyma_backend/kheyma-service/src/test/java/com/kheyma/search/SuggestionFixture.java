@@ -0,0 +1,107 @@
+package com.kheyma.search;
+
+import com.kheyma.model.Location;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// A catalogue with overlapping vocabulary, random queries over it, and the ranking PrefixIndex documents
+// computed by scoring every location; shared by PrefixIndexTest and PrefixIndexBenchmark
+class SuggestionFixture {
+    
+    // Some words prefix others and some appear in both names and descriptions, so prefix, exact, leading and
+    // description matches end up competing in the same ranking
+    private static final String[] NAME_WORDS = {"Ain", "Draham", "Zaghouan", "Tabarka", "Kélibia", "Douz", "Matmata",
+            "Forêt", "Plage", "Oasis", "Djebel", "Sidi", "Sidibou", "Bou", "Bouhertma", "Saïd", "Tozeur", "Bizerte", "عين",
+            "دراهم", "الغابة"};
+    private static final String[] DESCRIPTION_WORDS = {"pine", "beach", "lake", "family", "quiet", "ombragé", "vue",
+            "mer", "merzouga", "montagne", "désert", "dunes", "cork", "oak", "oakwood", "plage", "oasis", "forêt", "شاطئ",
+            "جبل"};
+    
+    private final Random random = new Random(5);
+    private final List<Location> locations = new ArrayList<>();
+    private final Map<Location, List<String>> nameTokens = new HashMap<>();
+    private final Map<Location, List<String>> descriptionTokens = new HashMap<>();
+    
+    SuggestionFixture(int size) {
+        for (int i = 0; i < size; i++) {
+            // The trailing number keeps names unique, so the ranking has no ties left to break arbitrarily
+            String name = words(NAME_WORDS, 1 + random.nextInt(3)) + " " + i;
+            locations.add(new Location("loc-" + i, name, 36.0, 10.0, null,
+                    words(DESCRIPTION_WORDS, random.nextInt(8)), Location.LocationType.CAMPSITE, 20));
+        }
+        // Tokenized up front, so the scan pays only for matching and ranking, as the index does
+        for (Location location : locations) {
+            nameTokens.put(location, TextNormalizer.tokens(location.getName()));
+            descriptionTokens.put(location, TextNormalizer.tokens(location.getDescription()));
+        }
+    }
+    
+    List<Location> locations() {
+        return locations;
+    }
+    
+    // One or two tokens taken from a random location, the last one cut short as if still being typed
+    String query() {
+        Location location = locations.get(random.nextInt(locations.size()));
+        List<String> tokens = new ArrayList<>(nameTokens.get(location));
+        tokens.addAll(descriptionTokens.get(location));
+        List<String> picked = new ArrayList<>();
+        for (int i = 0; i < 1 + random.nextInt(2); i++) {
+            picked.add(tokens.get(random.nextInt(tokens.size())));
+        }
+        String last = picked.remove(picked.size() - 1);
+        picked.add(last.substring(0, 1 + random.nextInt(last.length())));
+        return String.join(" ", picked);
+    }
+    
+    // The ranking PrefixIndex documents, computed straight from each location's tokens
+    List<Location> scan(String query, int limit) {
+        List<String> queryTokens = TextNormalizer.tokens(query);
+        Map<Location, Integer> scores = new HashMap<>();
+        for (Location location : locations) {
+            List<String> names = nameTokens.get(location);
+            int total = 0;
+            for (String token : queryTokens) {
+                int best = 0;
+                for (int position = 0; position < names.size(); position++) {
+                    String term = names.get(position);
+                    if (term.startsWith(token)) {
+                        best = Math.max(best, (term.equals(token) ? 6 : 4) + (position == 0 ? 2 : 0));
+                    }
+                }
+                for (String term : descriptionTokens.get(location)) {
+                    if (term.startsWith(token)) {
+                        best = Math.max(best, term.equals(token) ? 2 : 1);
+                    }
+                }
+                if (best == 0) {
+                    total = 0;
+                    break;
+                }
+                total += best;
+            }
+            if (total > 0) {
+                scores.put(location, total);
+            }
+        }
+        return scores.keySet().stream()
+                .sorted(Comparator.<Location>comparingInt(scores::get).reversed()
+                        .thenComparingInt(location -> location.getName().length())
+                        .thenComparing(Location::getName))
+                .limit(limit)
+                .toList();
+    }
+    
+    private String words(String[] vocabulary, int count) {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            words.add(vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        return String.join(" ", words);
+    }
+}
\ No newline at end of file
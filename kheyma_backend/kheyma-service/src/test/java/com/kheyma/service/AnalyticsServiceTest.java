@@ -0,0 +1,117 @@
+package com.kheyma.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.kheyma.analytics.AnalyticsEngine;
+import com.kheyma.concurrent.QueryFanOut;
+import com.kheyma.config.CacheConfig;
+import com.kheyma.dto.DashboardAnalytics;
+import com.kheyma.dto.PopularLocation;
+import com.kheyma.model.AnalyticsSnapshot;
+import com.kheyma.model.RevenueRollup;
+import com.kheyma.repository.CustomerSketchRepository;
+import com.kheyma.repository.LocationRepository;
+import com.kheyma.repository.RevenueRollupRepository;
+import com.kheyma.repository.ReviewRepository;
+import com.kheyma.repository.TransactionRepository;
+import com.kheyma.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+// Runs the dashboard through the real cache proxies and fan-out pool
+@SpringJUnitConfig({CacheConfig.class, AnalyticsService.class, CustomerSketchService.class, AnalyticsEngine.class,
+        AnalyticsServiceTest.FanOutConfig.class})
+class AnalyticsServiceTest {
+    
+    @Configuration
+    static class FanOutConfig {
+        @Bean
+        QueryFanOut queryFanOut() {
+            return new QueryFanOut(4, Duration.ofSeconds(5));
+        }
+    }
+    
+    @MockBean private UserRepository userRepository;
+    @MockBean private LocationRepository locationRepository;
+    @MockBean private TransactionRepository transactionRepository;
+    @MockBean private ReviewRepository reviewRepository;
+    @MockBean private RevenueRollupService revenueRollupService;
+    @MockBean private AnalyticsSnapshotService analyticsSnapshotService;
+    @MockBean private RevenueRollupRepository revenueRollupRepository;
+    @MockBean private CustomerSketchRepository customerSketchRepository;
+    @MockBean private MongoTemplate mongoTemplate;
+    
+    @Autowired private AnalyticsService analyticsService;
+    @Autowired private CacheManager cacheManager;
+    
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfig.ANALYTICS_CACHE).clear();
+        when(userRepository.count()).thenReturn(3L);
+        when(transactionRepository.count()).thenReturn(12L);
+        RevenueRollup total = new RevenueRollup();
+        total.setRevenue(1200.0);
+        total.setCount(12);
+        RevenueRollup month = new RevenueRollup();
+        month.setRevenue(300.0);
+        month.setCount(4);
+        when(revenueRollupService.getTotal()).thenReturn(total);
+        when(revenueRollupService.getMonth(any(YearMonth.class))).thenReturn(month);
+    }
+    
+    // A forked lookup that went through the analytics cache would compute one entry inside another's loader,
+    // which Caffeine rejects or blocks on. Only the dashboard entry itself may be created.
+    @Test
+    @SuppressWarnings("unchecked")
+    void dashboardFansOutWithoutNestedCacheLoads() {
+        DashboardAnalytics analytics = analyticsService.getDashboardAnalytics();
+        
+        assertThat(analytics.getTotalUsers()).isEqualTo(3);
+        assertThat(analytics.getTotalTransactions()).isEqualTo(12);
+        assertThat(analytics.getTotalRevenue()).isEqualTo(1200.0);
+        assertThat(analytics.getMonthlyTransactions()).isEqualTo(4);
+        Cache<Object, Object> cache = (Cache<Object, Object>) cacheManager
+                .getCache(CacheConfig.ANALYTICS_CACHE).getNativeCache();
+        assertThat(cache.asMap()).containsOnlyKeys("dashboard");
+        assertThat(analyticsService.getDashboardAnalytics()).isSameAs(analytics);
+    }
+    
+    // Snapshots copy location names forward, so a location renamed after its last booking is named from its rollup
+    @Test
+    void popularLocationsFromASnapshotUseCurrentNames() {
+        AnalyticsSnapshot snapshot = new AnalyticsSnapshot();
+        snapshot.setLocations(List.of(
+                new AnalyticsSnapshot.LocationTotals("loc-1", "Ain Draham", 36.78, 8.69, 40, 4000.0),
+                new AnalyticsSnapshot.LocationTotals("loc-2", "Zaghouan", 36.40, 10.14, 25, 2500.0)));
+        RevenueRollup renamed = new RevenueRollup();
+        renamed.setKey("loc-1");
+        renamed.setName("Ain Draham Forest");
+        renamed.setLatitude(36.79);
+        renamed.setLongitude(8.70);
+        when(analyticsSnapshotService.getLatestSnapshot()).thenReturn(Optional.of(snapshot));
+        when(revenueRollupService.getLocations(anyCollection())).thenReturn(Map.of("loc-1", renamed));
+        
+        List<PopularLocation> popular = analyticsService.getPopularLocations();
+        
+        assertThat(popular).extracting(PopularLocation::getName).containsExactly("Ain Draham Forest", "Zaghouan");
+        assertThat(popular.get(0).getLatitude()).isEqualTo(36.79);
+        assertThat(popular.get(0).getTransactionCount()).isEqualTo(40);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.kheyma.service;
+
+import com.kheyma.analytics.AnalyticsEngine;
+import com.kheyma.model.AnalyticsSnapshot;
+import com.kheyma.repository.AnalyticsSnapshotRepository;
+import com.kheyma.repository.TransactionRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Two instances materializing at once both build version N + 1; the one that loses the insert returns the winner's
+@ExtendWith(MockitoExtension.class)
+class AnalyticsSnapshotServiceTest {
+    
+    @Mock private AnalyticsSnapshotRepository analyticsSnapshotRepository;
+    @Mock private TransactionRepository transactionRepository;
+    
+    private AnalyticsSnapshotService service;
+    private final AnalyticsSnapshot previous = snapshot(4);
+    private final AnalyticsSnapshot published = snapshot(5);
+    
+    @BeforeEach
+    void setUp() {
+        service = new AnalyticsSnapshotService(analyticsSnapshotRepository, transactionRepository,
+                new AnalyticsEngine());
+        ReflectionTestUtils.setField(service, "settleLag", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(service, "retention", Duration.ofDays(90));
+        when(analyticsSnapshotRepository.findTopByOrderByVersionDesc()).thenReturn(Optional.of(previous));
+        when(transactionRepository.streamByIdRange(any(ObjectId.class), any(ObjectId.class)))
+                .thenReturn(Stream.empty());
+        when(analyticsSnapshotRepository.insert(any(AnalyticsSnapshot.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key version"));
+        when(analyticsSnapshotRepository.findByVersion(5)).thenReturn(Optional.of(published));
+    }
+    
+    @Test
+    void losingTheRaceReturnsThePublishedVersion() {
+        assertThat(service.materialize()).isSameAs(published);
+    }
+    
+    @Test
+    void scheduledRunAppliesRetentionAfterLosingTheRace() {
+        service.scheduledMaterialization();
+        
+        verify(analyticsSnapshotRepository).deleteByGeneratedAtBeforeAndVersionLessThan(any(LocalDateTime.class),
+                eq(5L));
+    }
+    
+    private static AnalyticsSnapshot snapshot(long version) {
+        AnalyticsSnapshot snapshot = new AnalyticsSnapshot();
+        snapshot.setId(new ObjectId().toHexString());
+        snapshot.setVersion(version);
+        snapshot.setGeneratedAt(LocalDateTime.now());
+        snapshot.setWatermark(new ObjectId().toHexString());
+        return snapshot;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.kheyma.service;
+
+import com.kheyma.dto.BookingHandle;
+import com.kheyma.dto.TransactionDTO;
+import com.kheyma.model.AsyncBooking;
+import com.kheyma.model.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Handles and Idempotency-Keys are read back from Mongo, so another instance's booking answers here too
+class AsyncBookingServiceTest {
+    
+    private static final LocalDate NIGHT = LocalDate.of(2025, 7, 14);
+    
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final TransactionService transactionService = mock(TransactionService.class);
+    private final AsyncBookingService service = new AsyncBookingService(transactionService, mongoTemplate);
+    private final BulkOperations outcomes = mock(BulkOperations.class);
+    
+    // A batch that threw after writing some of its bookings
+    private final AsyncBooking unknown = new AsyncBooking("handle-2", AsyncBooking.Status.UNKNOWN,
+            LocalDateTime.now(), LocalDateTime.now(), "6650a1f0c2b5a21d3c4e5f60", null,
+            "Booking outcome is not known yet", "a@kheyma.tn", "loc-1", 120.0, Transaction.PackageType.BASIC, NIGHT, null, LocalDateTime.now().plusDays(1));
+    
+    // Accepted by another instance
+    private final AsyncBooking accepted = new AsyncBooking("handle-1", AsyncBooking.Status.COMPLETED,
+            LocalDateTime.now(), LocalDateTime.now(), "t-1", 501, null, "a@kheyma.tn", "loc-1", 120.0,
+            Transaction.PackageType.BASIC, NIGHT, "a@kheyma.tn:key-1", LocalDateTime.now().plusDays(1));
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "queueCapacity", 10);
+        ReflectionTestUtils.setField(service, "batchSize", 10);
+        ReflectionTestUtils.setField(service, "linger", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(service, "retention", Duration.ofHours(24));
+        service.start();
+    }
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.stop();
+    }
+    
+    @Test
+    void unknownOrForeignHandlesAreNotFound() {
+        when(mongoTemplate.findById("handle-1", AsyncBooking.class)).thenReturn(accepted);
+        
+        assertThat(service.getStatus("missing", "a@kheyma.tn", false)).isEmpty();
+        assertThat(service.getStatus("handle-1", "b@kheyma.tn", false)).isEmpty();
+        assertThat(service.getStatus("handle-1", "b@kheyma.tn", true)).get()
+                .extracting(BookingHandle::getTransId).isEqualTo(501);
+        assertThat(service.getStatus("handle-1", "a@kheyma.tn", false)).get()
+                .extracting(BookingHandle::getStatus).isEqualTo(BookingHandle.Status.COMPLETED);
+    }
+    
+    @Test
+    void bookingsWrittenBeforeABatchFailureAreCompletedAndTheRestUnknown() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AsyncBooking.class)).thenReturn(outcomes);
+        List<String> submitted = new ArrayList<>();
+        when(transactionService.createTransactions(anyList(), anyList())).thenAnswer(invocation -> {
+            submitted.addAll(invocation.getArgument(1));
+            throw new IllegalStateException("Derived metrics failed");
+        });
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class))).thenAnswer(invocation -> {
+            Transaction written = new Transaction();
+            written.setId(submitted.get(0));
+            written.setTransId(700);
+            return List.of(written);
+        });
+        
+        service.submit(new TransactionDTO("loc-1", 120.0, Transaction.PackageType.BASIC, NIGHT), "a@kheyma.tn", null);
+        service.submit(new TransactionDTO("loc-2", 80.0, Transaction.PackageType.BASIC, NIGHT), "b@kheyma.tn", null);
+        
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(outcomes, timeout(5000).times(2)).updateOne(any(Query.class), updates.capture());
+        assertThat(updates.getAllValues())
+                .extracting(update -> update.getUpdateObject().get("$set", Document.class).get("status"))
+                .containsExactly(AsyncBooking.Status.COMPLETED, AsyncBooking.Status.UNKNOWN);
+        assertThat(updates.getAllValues().get(0).getUpdateObject().get("$set", Document.class).get("transId"))
+                .isEqualTo(700);
+    }
+    
+    @Test
+    void unknownBookingsResolveOnPoll() {
+        when(mongoTemplate.findById("handle-2", AsyncBooking.class)).thenReturn(unknown);
+        Transaction written = new Transaction();
+        written.setId(unknown.getTransactionId());
+        written.setTransId(701);
+        when(mongoTemplate.findById(unknown.getTransactionId(), Transaction.class)).thenReturn(written);
+        
+        assertThat(service.getStatus("handle-2", "a@kheyma.tn", false)).get()
+                .extracting(BookingHandle::getStatus, BookingHandle::getTransId)
+                .containsExactly(BookingHandle.Status.COMPLETED, 701);
+    }
+    
+    @Test
+    void unknownBookingsFailOnceTheGraceHasPassed() {
+        unknown.setCompletedAt(LocalDateTime.now().minusMinutes(5));
+        when(mongoTemplate.findById("handle-2", AsyncBooking.class)).thenReturn(unknown);
+        
+        assertThat(service.getStatus("handle-2", "a@kheyma.tn", false)).get()
+                .extracting(BookingHandle::getStatus).isEqualTo(BookingHandle.Status.FAILED);
+    }
+    
+    @Test
+    void replayedKeyReturnsTheOriginalHandle() {
+        when(mongoTemplate.insert(any(AsyncBooking.class))).thenThrow(new DuplicateKeyException("E11000"));
+        when(mongoTemplate.findOne(any(Query.class), eq(AsyncBooking.class))).thenReturn(accepted);
+        
+        BookingHandle replayed = service.submit(
+                new TransactionDTO("loc-1", 120.0, Transaction.PackageType.BASIC, NIGHT), "a@kheyma.tn", "key-1");
+        
+        assertThat(replayed.getHandle()).isEqualTo("handle-1");
+        assertThat(replayed.getTransactionId()).isEqualTo("t-1");
+        assertThatIllegalArgumentException().isThrownBy(() -> service.submit(
+                new TransactionDTO("loc-1", 180.0, Transaction.PackageType.FULL, NIGHT), "a@kheyma.tn", "key-1"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.kheyma.service;
+
+import com.kheyma.MongoTestSupport;
+import com.kheyma.dto.BulkTransactionRequest;
+import com.kheyma.dto.BulkTransactionResult;
+import com.kheyma.dto.TransactionDTO;
+import com.kheyma.model.Location;
+import com.kheyma.model.Transaction;
+import com.kheyma.model.User;
+import com.kheyma.repository.AmountHistogramRepository;
+import com.kheyma.repository.CustomerSketchRepository;
+import com.kheyma.repository.LocationInventoryRepository;
+import com.kheyma.repository.LocationRepository;
+import com.kheyma.repository.RevenueRollupRepository;
+import com.kheyma.repository.TransactionRepository;
+import com.kheyma.repository.TransactionRepositoryImpl;
+import com.kheyma.repository.UserRepository;
+import com.kheyma.repository.UserSpendingSummaryRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Run with -Pbenchmark. Bookings per second through TransactionService against a real mongod, one by one
+// and in bulk batches: the booking writes, inventory claims, transId blocks and every analytics write.
+// Only the location cache is stubbed, since it is in-process.
+@Tag("benchmark")
+@EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+class BulkIngestionBenchmark {
+    
+    private static final int BOOKINGS = 5_000;
+    private static final int BATCH_SIZE = 1_000;
+    private static final int USERS = 50;
+    private static final int LOCATIONS = 20;
+    
+    @Test
+    void bookingsPerSecondOneByOneAndInBulk() {
+        try (MongoTestSupport mongo = MongoTestSupport.open()) {
+            TransactionService service = service(mongo.template());
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < BOOKINGS; i++) {
+                service.createTransaction(new TransactionDTO("loc-" + i % LOCATIONS, 100.0 + i,
+                        Transaction.PackageType.values()[i % 3], night(i)), email(i));
+            }
+            long oneByOne = System.nanoTime() - start;
+            
+            int created = 0;
+            start = System.nanoTime();
+            for (int from = 0; from < BOOKINGS; from += BATCH_SIZE) {
+                List<BulkTransactionRequest.Item> items = new ArrayList<>();
+                for (int i = from; i < from + BATCH_SIZE; i++) {
+                    items.add(new BulkTransactionRequest.Item(email(i), "loc-" + i % LOCATIONS, 100.0 + i,
+                            Transaction.PackageType.values()[i % 3], night(i)));
+                }
+                BulkTransactionResult result = service.createTransactions(items);
+                created += result.getCreated();
+            }
+            long bulk = System.nanoTime() - start;
+            
+            System.out.printf("%d bookings against mongod: one by one %.0f/s, bulk in batches of %d %.0f/s%n",
+                    BOOKINGS, perSecond(oneByOne), BATCH_SIZE, perSecond(bulk));
+            assertThat(created).isEqualTo(BOOKINGS);
+            assertThat(mongo.template().count(new Query(), Transaction.class)).isEqualTo(2L * BOOKINGS);
+        }
+    }
+    
+    private static TransactionService service(MongoTemplate template) {
+        MongoRepositoryFactory factory = new MongoRepositoryFactory(template);
+        TransactionRepository transactionRepository = factory.getRepository(TransactionRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new TransactionRepositoryImpl(template)));
+        UserRepository userRepository = factory.getRepository(UserRepository.class);
+        RevenueRollupRepository revenueRollupRepository = factory.getRepository(RevenueRollupRepository.class);
+        
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < LOCATIONS; i++) {
+            // Room for both runs, so every claim succeeds and the two paths write the same bookings
+            locations.add(new Location("loc-" + i, "Camp " + i, 36.78, 8.69, null, null,
+                    Location.LocationType.CAMPSITE, BOOKINGS));
+        }
+        template.insertAll(locations);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setEmail(email(i));
+            users.add(user);
+        }
+        template.insertAll(users);
+        
+        LocationCacheService locationCacheService = mock(LocationCacheService.class);
+        for (Location location : locations) {
+            when(locationCacheService.getById(location.getId())).thenReturn(location);
+        }
+        when(locationCacheService.getAllById(anyCollection())).thenAnswer(invocation -> {
+            List<String> ids = new ArrayList<>(invocation.getArgument(0));
+            return locations.stream().filter(location -> ids.contains(location.getId()))
+                    .collect(Collectors.toMap(Location::getId, location -> location));
+        });
+        SequenceService sequenceService = new SequenceService(template);
+        ReflectionTestUtils.setField(sequenceService, "blockSize", 50);
+        
+        return new TransactionService(template, transactionRepository, userRepository, locationCacheService,
+                new RevenueRollupService(template, revenueRollupRepository, transactionRepository),
+                new CustomerSketchService(template, factory.getRepository(CustomerSketchRepository.class),
+                        revenueRollupRepository, transactionRepository),
+                new AmountDistributionService(template, factory.getRepository(AmountHistogramRepository.class),
+                        transactionRepository),
+                sequenceService,
+                new UserSpendingService(template, factory.getRepository(UserSpendingSummaryRepository.class),
+                        transactionRepository),
+                new InventoryService(template, factory.getRepository(LocationInventoryRepository.class),
+                        factory.getRepository(LocationRepository.class), transactionRepository));
+    }
+    
+    private static double perSecond(long nanos) {
+        return BOOKINGS * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+    
+    private static String email(int i) {
+        return "user-" + i % USERS + "@kheyma.tn";
+    }
+    
+    private static LocalDate night(int i) {
+        return LocalDate.of(2025, 7, 1).plusDays(i % 60);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.kheyma.service;
+
+import com.kheyma.dto.BulkTransactionRequest;
+import com.kheyma.dto.BulkTransactionResult;
+import com.kheyma.dto.TransactionDTO;
+import com.kheyma.model.Location;
+import com.kheyma.model.Transaction;
+import com.kheyma.model.User;
+import com.kheyma.repository.TransactionRepository;
+import com.kheyma.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+// A thousand bookings through the bulk endpoint against the same thousand booked one by one: the bulk path
+// makes a fixed number of database round trips however large the batch. BulkIngestionBenchmark times both.
+@ExtendWith(MockitoExtension.class)
+class BulkIngestionRoundTripTest {
+    
+    private static final int BOOKINGS = 1_000;
+    private static final String EMAIL = "a@kheyma.tn";
+    
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private TransactionRepository transactionRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private LocationCacheService locationCacheService;
+    @Mock private RevenueRollupService revenueRollupService;
+    @Mock private CustomerSketchService customerSketchService;
+    @Mock private AmountDistributionService amountDistributionService;
+    @Mock private SequenceService sequenceService;
+    @Mock private UserSpendingService userSpendingService;
+    @Mock private InventoryService inventoryService;
+    
+    @InjectMocks private TransactionService transactionService;
+    
+    private final Location location = new Location("loc-1", "Ain Draham", 36.78, 8.69, null,
+            null, Location.LocationType.CAMPSITE, null);
+    
+    // Every call on these collaborators is one database round trip. The location cache is in-process and
+    // transIds come from hi/lo blocks, so neither is counted.
+    @Test
+    void bulkPathMakesAFractionOfTheRoundTrips() {
+        User user = new User();
+        user.setId("user-1");
+        user.setEmail(EMAIL);
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(userRepository.findByEmailIn(anyCollection())).thenReturn(List.of(user));
+        when(locationCacheService.getById("loc-1")).thenReturn(location);
+        when(locationCacheService.getAllById(anyCollection())).thenReturn(Map.of("loc-1", location));
+        when(inventoryService.claim(any(Location.class), any(LocalDate.class))).thenReturn(true);
+        when(inventoryService.claimAll(anyList())).thenAnswer(invocation -> {
+            boolean[] granted = new boolean[invocation.<List<?>>getArgument(0).size()];
+            Arrays.fill(granted, true);
+            return granted;
+        });
+        AtomicLong transIds = new AtomicLong();
+        when(sequenceService.next(anyString(), any())).thenAnswer(invocation -> transIds.incrementAndGet());
+        when(sequenceService.reserve(anyString(), anyInt(), any())).thenReturn(1L);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        BulkOperations ops = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class)).thenReturn(ops);
+        when(ops.insert(anyList())).thenReturn(ops);
+        
+        for (int i = 0; i < BOOKINGS; i++) {
+            transactionService.createTransaction(
+                    new TransactionDTO("loc-1", 100.0 + i, Transaction.PackageType.BASIC, night(i)), EMAIL);
+        }
+        int oneByOne = roundTrips(ops);
+        
+        clearRoundTrips(ops);
+        List<BulkTransactionRequest.Item> items = new ArrayList<>();
+        for (int i = 0; i < BOOKINGS; i++) {
+            items.add(new BulkTransactionRequest.Item(EMAIL, "loc-1", 100.0 + i, Transaction.PackageType.BASIC,
+                    night(i)));
+        }
+        BulkTransactionResult result = transactionService.createTransactions(items);
+        int bulk = roundTrips(ops);
+        
+        assertThat(result.getCreated()).isEqualTo(BOOKINGS);
+        // Per booking: user lookup, claim, save and four analytics writes; in bulk, the same seven for the whole batch
+        assertThat(oneByOne).isEqualTo(7 * BOOKINGS);
+        assertThat(bulk).isEqualTo(7);
+    }
+    
+    private int roundTrips(BulkOperations ops) {
+        return Stream.of(transactionRepository, userRepository, inventoryService, revenueRollupService,
+                        customerSketchService, amountDistributionService, userSpendingService, ops)
+                .mapToInt(collaborator -> (int) mockingDetails(collaborator).getInvocations().stream()
+                        .filter(invocation -> collaborator != ops || invocation.getMethod().getName().equals("execute"))
+                        .count())
+                .sum();
+    }
+    
+    private void clearRoundTrips(BulkOperations ops) {
+        clearInvocations(transactionRepository, userRepository, inventoryService, revenueRollupService,
+                customerSketchService, amountDistributionService, userSpendingService, ops);
+    }
+    
+    private static LocalDate night(int i) {
+        return LocalDate.of(2025, 7, 1).plusDays(i % 60);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.kheyma.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kheyma.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// A million-row export over a generated cursor: every row arrives, rows reach the client while the cursor
+// is still open, and nothing proportional to the export is retained
+class ExportServiceTest {
+    
+    private static final int ROWS = 1_000_000;
+    private static final LocalDate FIRST_NIGHT = LocalDate.of(2024, 1, 1);
+    
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ExportService exportService = new ExportService(mongoTemplate, new ObjectMapper().findAndRegisterModules());
+    
+    private static Transaction transaction(int i) {
+        return new Transaction("t" + i, "user-" + (i % 1000), i, 10.0 + i % 97,
+                new Transaction.LocationReference("loc-" + (i % 40), "Camp, " + (i % 40), 36.0, 10.0),
+                Transaction.PackageType.values()[i % 3],
+                FIRST_NIGHT.plusDays(i % 365));
+    }
+    
+    @Test
+    void ndjsonExportStreamsEveryRowWithBoundedLagAndHeap() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        AtomicLong pulled = new AtomicLong();
+        AtomicLong maxLag = new AtomicLong();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long baseline = retainedHeap(memory);
+        List<Long> samples = new ArrayList<>();
+        when(mongoTemplate.stream(any(Query.class), eq(Transaction.class))).thenReturn(generated().peek(t -> {
+            // Rows handed to the writer but not yet seen by the client
+            maxLag.accumulateAndGet(pulled.getAndIncrement() - out.lines, Math::max);
+            if (t.getTransId() % 250_000 == 249_999) {
+                samples.add(retainedHeap(memory) - baseline);
+            }
+        }));
+        
+        exportService.exportTransactions(ExportService.Format.NDJSON, null, null, null, out);
+        
+        assertThat(out.lines).isEqualTo(ROWS);
+        // Flushed every thousand rows, plus whatever fits in the writer's buffers
+        assertThat(maxLag.get()).isLessThanOrEqualTo(1_100);
+        assertThat(samples).hasSize(ROWS / 250_000);
+        assertThat(samples).allSatisfy(growth -> assertThat(growth).isLessThan(48L * 1024 * 1024));
+    }
+    
+    @Test
+    void csvExportWritesAHeaderAndEveryRow() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        when(mongoTemplate.stream(any(Query.class), eq(Transaction.class))).thenReturn(generated());
+        
+        exportService.exportTransactions(ExportService.Format.CSV, null, null, null, out);
+        
+        assertThat(out.lines).isEqualTo(ROWS + 1);
+        assertThat(out.quotes).isEqualTo(2L * ROWS);
+    }
+    
+    private static Stream<Transaction> generated() {
+        return IntStream.range(0, ROWS).mapToObj(ExportServiceTest::transaction);
+    }
+    
+    private static long retainedHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+    
+    // Counts what reaches the client without keeping it
+    private static final class CountingOutputStream extends OutputStream {
+        
+        private long lines;
+        private long quotes;
+        
+        @Override
+        public void write(int b) {
+            count((byte) b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                count(b[i]);
+            }
+        }
+        
+        private void count(byte b) {
+            if (b == '\n') {
+                lines++;
+            } else if (b == '"') {
+                quotes++;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,420 @@
+package com.kheyma.service;
+
+import com.kheyma.MongoTestSupport;
+import com.kheyma.model.Location;
+import com.kheyma.model.LocationInventory;
+import com.kheyma.model.Transaction;
+import com.kheyma.repository.LocationInventoryRepository;
+import com.kheyma.repository.LocationRepository;
+import com.kheyma.repository.TransactionRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Claims on one season from two instances while rebuilds run: capacity is never exceeded,
+// and no claim is lost to a rebuild that read the season before it
+class InventoryServiceTest {
+    
+    private static final int THREADS = 8;
+    private static final int ATTEMPTS_PER_THREAD = 150;
+    private static final int CAPACITY = 600;
+    private static final LocalDate NIGHT = LocalDate.of(2025, 7, 14);
+    // Imported without claims, so every rebuild has to raise it while claims run
+    private static final LocalDate HISTORIC_NIGHT = LocalDate.of(2025, 3, 2);
+    private static final int HISTORIC_BOOKINGS = 30;
+    
+    private final Location location = new Location("loc-1", "Ain Draham", 36.78, 8.69, null,
+            null, Location.LocationType.CAMPSITE, CAPACITY);
+    
+    @Test
+    void concurrentClaimsAndRebuildsKeepTheCountExact() throws Exception {
+        FakeInventoryStore store = new FakeInventoryStore();
+        Queue<Transaction> bookings = historicBookings();
+        InventoryService first = service(store.template(), bookings);
+        InventoryService second = service(store.template(), bookings);
+        
+        claimWhileRebuilding(first, second, bookings);
+        
+        LocationInventory season = store.get(LocationInventory.idOf("loc-1", 2025));
+        assertThat(season.getReserved().get(NIGHT.getDayOfYear() - 1)).isEqualTo(bookingsOn(bookings, NIGHT));
+        assertThat(season.getReserved().get(HISTORIC_NIGHT.getDayOfYear() - 1))
+                .isEqualTo(bookingsOn(bookings, HISTORIC_NIGHT));
+    }
+    
+    @Test
+    @EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+    void concurrentClaimsAndRebuildsKeepTheCountExactOnMongo() throws Exception {
+        try (MongoTestSupport mongo = MongoTestSupport.open()) {
+            Queue<Transaction> bookings = historicBookings();
+            InventoryService first = service(mongo.template(), bookings);
+            InventoryService second = service(mongo.otherInstance(), bookings);
+            
+            claimWhileRebuilding(first, second, bookings);
+            
+            LocationInventory season = mongo.template().findById(LocationInventory.idOf("loc-1", 2025),
+                    LocationInventory.class);
+            assertThat(season.getReserved().get(NIGHT.getDayOfYear() - 1)).isEqualTo(bookingsOn(bookings, NIGHT));
+            assertThat(season.getReserved().get(HISTORIC_NIGHT.getDayOfYear() - 1))
+                    .isEqualTo(bookingsOn(bookings, HISTORIC_NIGHT));
+        }
+    }
+    
+    @Test
+    void quietSeasonIsRecountedFromTheBookings() {
+        FakeInventoryStore store = new FakeInventoryStore();
+        LocationInventory leaked = new LocationInventory(LocationInventory.idOf("loc-1", 2025), "loc-1", 2025,
+                new ArrayList<>(Collections.nCopies(365, 0)), 7, LocalDateTime.now().minusHours(1));
+        leaked.getReserved().set(NIGHT.getDayOfYear() - 1, 5); // Claims whose bookings were never written
+        store.put(leaked);
+        
+        int written = service(store.template(), historicBookings()).rebuild();
+        
+        LocationInventory season = store.get(leaked.getId());
+        assertThat(written).isEqualTo(1);
+        assertThat(season.getReserved().get(NIGHT.getDayOfYear() - 1)).isZero();
+        assertThat(season.getReserved().get(HISTORIC_NIGHT.getDayOfYear() - 1)).isEqualTo(HISTORIC_BOOKINGS);
+        assertThat(season.getVersion()).isEqualTo(8);
+    }
+    
+    // Five bookings for a night with room for three, in one batch: the first three get it
+    @Test
+    void batchClaimsTakeWhatIsLeftInEntryOrder() {
+        FakeInventoryStore store = new FakeInventoryStore();
+        MongoTemplate template = store.template();
+        
+        boolean[] granted = service(template, new ConcurrentLinkedQueue<>()).claimAll(batchOnASmallNight());
+        
+        assertThat(granted).containsExactly(true, true, true, false, false, true, true);
+        LocationInventory season = store.get(LocationInventory.idOf("loc-2", 2025));
+        assertThat(season.getReserved().get(NIGHT.getDayOfYear() - 1)).isEqualTo(3);
+        assertThat(season.getReserved().get(NIGHT.getDayOfYear())).isEqualTo(1);
+    }
+    
+    @Test
+    void batchClaimsWithRoomTakeTwoRoundTrips() {
+        FakeInventoryStore store = new FakeInventoryStore();
+        MongoTemplate template = store.template();
+        List<InventoryService.Claim> claims = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            claims.add(new InventoryService.Claim(location, NIGHT.plusDays(i % 20)));
+        }
+        
+        boolean[] granted = service(template, new ConcurrentLinkedQueue<>()).claimAll(claims);
+        
+        assertThat(granted).containsOnly(true);
+        assertThat(store.get(LocationInventory.idOf("loc-1", 2025)).getReserved().get(NIGHT.getDayOfYear() - 1))
+                .isEqualTo(10);
+        assertThat(store.bulkWrites.get()).isEqualTo(2);
+        verify(template, never()).updateFirst(any(Query.class), any(Update.class), eq(LocationInventory.class));
+    }
+    
+    // The duplicate key that reports a full night comes from mongod itself
+    @Test
+    @EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+    void batchClaimsTakeWhatIsLeftInEntryOrderOnMongo() throws Exception {
+        try (MongoTestSupport mongo = MongoTestSupport.open()) {
+            boolean[] granted = service(mongo.template(), new ConcurrentLinkedQueue<>())
+                    .claimAll(batchOnASmallNight());
+            
+            assertThat(granted).containsExactly(true, true, true, false, false, true, true);
+            LocationInventory season = mongo.template().findById(LocationInventory.idOf("loc-2", 2025),
+                    LocationInventory.class);
+            assertThat(season.getReserved().get(NIGHT.getDayOfYear() - 1)).isEqualTo(3);
+            assertThat(season.getReserved().get(NIGHT.getDayOfYear())).isEqualTo(1);
+        }
+    }
+    
+    private static List<InventoryService.Claim> batchOnASmallNight() {
+        Location small = new Location("loc-2", "Zaghouan", 36.4, 10.14, null, null,
+                Location.LocationType.CAMPSITE, 3);
+        Location unlimited = new Location("loc-3", "Douz", 33.46, 9.02, null, null,
+                Location.LocationType.CAMPSITE, null);
+        List<InventoryService.Claim> claims = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            claims.add(new InventoryService.Claim(small, NIGHT));
+        }
+        claims.add(new InventoryService.Claim(small, NIGHT.plusDays(1)));
+        claims.add(new InventoryService.Claim(unlimited, NIGHT));
+        return claims;
+    }
+    
+    // Each thread books NIGHT, and every tenth booking fails to save and gives its unit back. Meanwhile
+    // bookings for HISTORIC_NIGHT keep being imported and another thread rebuilds the inventory over and over.
+    private void claimWhileRebuilding(InventoryService first, InventoryService second, Queue<Transaction> bookings)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean claiming = new AtomicBoolean(true);
+        AtomicInteger granted = new AtomicInteger();
+        AtomicInteger rebuilds = new AtomicInteger();
+        List<Future<?>> claimers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            InventoryService instance = t % 2 == 0 ? first : second;
+            claimers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    bookings.add(booking(HISTORIC_NIGHT));
+                    if (!instance.claim(location, NIGHT)) {
+                        continue;
+                    }
+                    if (granted.incrementAndGet() % 10 == 0) {
+                        instance.release(location, NIGHT);
+                    } else {
+                        bookings.add(booking(NIGHT));
+                    }
+                }
+                return null;
+            }));
+        }
+        Future<?> rebuilder = pool.submit(() -> {
+            start.await();
+            while (claiming.get() || rebuilds.get() == 0) {
+                (rebuilds.get() % 2 == 0 ? first : second).rebuild();
+                rebuilds.incrementAndGet();
+            }
+            return null;
+        });
+        start.countDown();
+        for (Future<?> claimer : claimers) {
+            claimer.get(60, TimeUnit.SECONDS);
+        }
+        claiming.set(false);
+        rebuilder.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+        first.rebuild(); // Picks up the last imports
+        
+        // More attempts than capacity, so the night fills up, but never beyond it
+        assertThat(granted.get()).isGreaterThan(CAPACITY);
+        assertThat(bookingsOn(bookings, NIGHT)).isEqualTo(granted.get() - granted.get() / 10)
+                .isLessThanOrEqualTo(CAPACITY);
+        assertThat(rebuilds.get()).isPositive();
+    }
+    
+    private static Queue<Transaction> historicBookings() {
+        Queue<Transaction> bookings = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < HISTORIC_BOOKINGS; i++) {
+            bookings.add(booking(HISTORIC_NIGHT));
+        }
+        return bookings;
+    }
+    
+    private static Transaction booking(LocalDate night) {
+        Transaction transaction = new Transaction();
+        transaction.setLocation(new Transaction.LocationReference("loc-1", "Ain Draham", 36.78, 8.69));
+        transaction.setDate(night);
+        return transaction;
+    }
+    
+    private static long bookingsOn(Queue<Transaction> bookings, LocalDate night) {
+        return bookings.stream().filter(booking -> booking.getDate().equals(night)).count();
+    }
+    
+    private static InventoryService service(MongoTemplate template, Queue<Transaction> bookings) {
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        when(transactionRepository.streamAllForMetrics()).thenAnswer(invocation -> List.copyOf(bookings).stream());
+        return new InventoryService(template, mock(LocationInventoryRepository.class), mock(LocationRepository.class),
+                transactionRepository);
+    }
+    
+    // Applies the conditional updates InventoryService issues atomically per call, as mongod does per document
+    private static final class FakeInventoryStore {
+        
+        private final Map<String, LocationInventory> seasons = new HashMap<>();
+        private final AtomicInteger bulkWrites = new AtomicInteger();
+        
+        synchronized LocationInventory get(String id) {
+            LocationInventory season = seasons.get(id);
+            return season != null ? copy(season) : null;
+        }
+        
+        synchronized void put(LocationInventory season) {
+            seasons.put(season.getId(), copy(season));
+        }
+        
+        synchronized void insert(LocationInventory season) {
+            if (seasons.containsKey(season.getId())) {
+                throw new DuplicateKeyException("E11000 duplicate key " + season.getId());
+            }
+            seasons.put(season.getId(), copy(season));
+        }
+        
+        synchronized UpdateResult updateFirst(Query query, Update update) {
+            LocationInventory season = seasons.get(query.getQueryObject().getString("_id"));
+            if (season == null || !matches(season, query.getQueryObject())) {
+                return UpdateResult.acknowledged(0, 0L, null);
+            }
+            apply(season, update.getUpdateObject());
+            return UpdateResult.acknowledged(1, 1L, null);
+        }
+        
+        @SuppressWarnings("unchecked")
+        synchronized UpdateResult upsert(Query query, Update update) {
+            String id = query.getQueryObject().getString("_id");
+            if (seasons.containsKey(id)) {
+                return UpdateResult.acknowledged(1, 0L, null);
+            }
+            Document onInsert = (Document) update.getUpdateObject().get("$setOnInsert");
+            seasons.put(id, new LocationInventory(id, onInsert.getString("locationId"), onInsert.getInteger("year"),
+                    new ArrayList<>((List<Integer>) onInsert.get("reserved")), 0, null));
+            return UpdateResult.acknowledged(0, 0L, new BsonString(id));
+        }
+        
+        // An unordered bulk of upserts: season creations, and conditional claims whose season must exist.
+        // A claim that does not match fails its upsert with a duplicate key on _id, as on mongod.
+        synchronized BulkWriteResult bulkUpsert(List<Query> queries, List<Update> updates) {
+            bulkWrites.incrementAndGet();
+            List<BulkWriteError> errors = new ArrayList<>();
+            for (int i = 0; i < queries.size(); i++) {
+                if (updates.get(i).getUpdateObject().containsKey("$setOnInsert")) {
+                    upsert(queries.get(i), updates.get(i));
+                    continue;
+                }
+                String id = queries.get(i).getQueryObject().getString("_id");
+                if (!seasons.containsKey(id)) {
+                    throw new IllegalStateException("Claim upserted a season that was never created: " + id);
+                }
+                if (updateFirst(queries.get(i), updates.get(i)).getModifiedCount() == 0) {
+                    errors.add(new BulkWriteError(11000, "E11000 duplicate key " + id, new BsonDocument(), i));
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw new BulkOperationException("E11000", new MongoBulkWriteException(
+                        BulkWriteResult.unacknowledged(), errors, null, new ServerAddress(), Set.of()));
+            }
+            return BulkWriteResult.unacknowledged();
+        }
+        
+        BulkOperations bulk() {
+            BulkOperations ops = mock(BulkOperations.class);
+            List<Query> queries = new ArrayList<>();
+            List<Update> updates = new ArrayList<>();
+            when(ops.upsert(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+                queries.add(invocation.getArgument(0));
+                updates.add(invocation.getArgument(1));
+                return ops;
+            });
+            when(ops.execute()).thenAnswer(invocation -> bulkUpsert(queries, updates));
+            return ops;
+        }
+        
+        synchronized List<LocationInventory> all() {
+            return seasons.values().stream().map(FakeInventoryStore::copy).toList();
+        }
+        
+        MongoTemplate template() {
+            MongoTemplate template = mock(MongoTemplate.class);
+            // Yielding after a read stands in for the round trip that lets other writers in before the next write
+            when(template.findById(anyString(), eq(LocationInventory.class))).thenAnswer(invocation -> {
+                LocationInventory season = get(invocation.getArgument(0));
+                Thread.yield();
+                return season;
+            });
+            when(template.insert(any(LocationInventory.class))).thenAnswer(invocation -> {
+                insert(invocation.getArgument(0));
+                return invocation.getArgument(0);
+            });
+            when(template.updateFirst(any(Query.class), any(Update.class), eq(LocationInventory.class)))
+                    .thenAnswer(invocation -> updateFirst(invocation.getArgument(0), invocation.getArgument(1)));
+            when(template.upsert(any(Query.class), any(Update.class), eq(LocationInventory.class)))
+                    .thenAnswer(invocation -> upsert(invocation.getArgument(0), invocation.getArgument(1)));
+            when(template.find(any(Query.class), eq(LocationInventory.class))).thenAnswer(invocation -> all());
+            when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, LocationInventory.class))
+                    .thenAnswer(invocation -> bulk());
+            return template;
+        }
+        
+        @SuppressWarnings("unchecked")
+        private static boolean matches(LocationInventory season, Document query) {
+            for (Map.Entry<String, Object> condition : query.entrySet()) {
+                String field = condition.getKey();
+                if (field.equals("$and")) {
+                    if (!((List<Document>) condition.getValue()).stream().allMatch(part -> matches(season, part))) {
+                        return false;
+                    }
+                } else if (field.startsWith("reserved.")) {
+                    int have = season.getReserved().get(Integer.parseInt(field.substring("reserved.".length())));
+                    Document range = (Document) condition.getValue();
+                    if (range.containsKey("$lt") && have >= range.getInteger("$lt")
+                            || range.containsKey("$lte") && have > range.getInteger("$lte")
+                            || range.containsKey("$gt") && have <= range.getInteger("$gt")) {
+                        return false;
+                    }
+                } else if (field.equals("version")) {
+                    Object expected = condition.getValue();
+                    boolean match = expected instanceof Document in
+                            ? ((List<Object>) in.get("$in")).stream().anyMatch(v -> v != null
+                                    && ((Number) v).longValue() == season.getVersion())
+                            : ((Number) expected).longValue() == season.getVersion();
+                    if (!match) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        
+        @SuppressWarnings("unchecked")
+        private static void apply(LocationInventory season, Document update) {
+            Document inc = (Document) update.getOrDefault("$inc", new Document());
+            for (Map.Entry<String, Object> field : inc.entrySet()) {
+                int by = ((Number) field.getValue()).intValue();
+                if (field.getKey().equals("version")) {
+                    season.setVersion(season.getVersion() + by);
+                } else {
+                    int index = Integer.parseInt(field.getKey().substring("reserved.".length()));
+                    season.getReserved().set(index, season.getReserved().get(index) + by);
+                }
+            }
+            Document set = (Document) update.getOrDefault("$set", new Document());
+            if (set.containsKey("reserved")) {
+                season.setReserved(new ArrayList<>((List<Integer>) set.get("reserved")));
+            }
+            season.setUpdatedAt((LocalDateTime) set.get("updatedAt"));
+        }
+        
+        private static LocationInventory copy(LocationInventory season) {
+            return new LocationInventory(season.getId(), season.getLocationId(), season.getYear(),
+                    new ArrayList<>(season.getReserved()), season.getVersion(), season.getUpdatedAt());
+        }
+    }
+}
\ No newline at end of file
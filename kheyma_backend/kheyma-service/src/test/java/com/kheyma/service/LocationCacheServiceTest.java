@@ -0,0 +1,86 @@
+package com.kheyma.service;
+
+import com.kheyma.event.LocationsChangedEvent;
+import com.kheyma.model.Location;
+import com.kheyma.repository.LocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// An invalidation that arrives while a bulk read is in flight must win over the value that read returns,
+// and nothing cached under an older catalog version may be served once this instance knows a newer one
+class LocationCacheServiceTest {
+    
+    private final LocationRepository locationRepository = mock(LocationRepository.class);
+    private final CatalogVersionService catalogVersionService = mock(CatalogVersionService.class);
+    private final AtomicLong catalogVersion = new AtomicLong(1);
+    private final LocationCacheService cache = new LocationCacheService(locationRepository, catalogVersionService,
+            100, Duration.ofMinutes(10), Duration.ofSeconds(30), Duration.ofSeconds(5));
+    
+    @BeforeEach
+    void setUp() {
+        when(catalogVersionService.current())
+                .thenAnswer(invocation -> new CatalogVersionService.Version(catalogVersion.get(), 0));
+    }
+    
+    private final Location stale = location("Ain Draham");
+    private final Location renamed = location("Ain Draham Forest");
+    
+    @Test
+    void invalidationDuringBulkReadIsNotOverwritten() {
+        when(locationRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            // The edit commits and is announced after Mongo answered the read, before the read is cached
+            cache.onLocationsChanged(LocationsChangedEvent.upserted(renamed));
+            return List.of(stale);
+        });
+        when(locationRepository.findById("loc-1")).thenReturn(Optional.of(renamed));
+        
+        assertThat(cache.getAllById(List.of("loc-1"))).containsEntry("loc-1", stale);
+        assertThat(cache.getById("loc-1")).isSameAs(renamed);
+        verify(locationRepository, times(1)).findById("loc-1");
+    }
+    
+    @Test
+    void bulkReadIsCachedWhenNothingChanged() {
+        when(locationRepository.findAllById(anyIterable())).thenReturn(List.of(stale));
+        
+        cache.getAllById(List.of("loc-1"));
+        
+        assertThat(cache.getById("loc-1")).isSameAs(stale);
+        verify(locationRepository, times(0)).findById("loc-1");
+    }
+    
+    // Another instance renamed the location; without a change stream no event arrives here, only the
+    // periodic catalog refresh. The next read must not pair the new ETag with the old body.
+    @Test
+    void entriesCachedUnderAnOlderCatalogVersionAreReloaded() {
+        when(locationRepository.findById("loc-1")).thenReturn(Optional.of(stale), Optional.of(renamed));
+        when(locationRepository.findByType(Location.LocationType.CAMPSITE))
+                .thenReturn(List.of(stale), List.of(renamed));
+        assertThat(cache.getById("loc-1")).isSameAs(stale);
+        assertThat(cache.getByType(Location.LocationType.CAMPSITE)).containsExactly(stale);
+        assertThat(cache.getById("loc-1")).isSameAs(stale);
+        
+        catalogVersion.incrementAndGet();
+        
+        assertThat(cache.getById("loc-1")).isSameAs(renamed);
+        assertThat(cache.getAllById(List.of("loc-1"))).containsEntry("loc-1", renamed);
+        assertThat(cache.getByType(Location.LocationType.CAMPSITE)).containsExactly(renamed);
+        verify(locationRepository, times(2)).findById("loc-1");
+    }
+    
+    private static Location location(String name) {
+        return new Location("loc-1", name, 36.78, 8.69, null, null, Location.LocationType.CAMPSITE, 20);
+    }
+}
\ No newline at end of file
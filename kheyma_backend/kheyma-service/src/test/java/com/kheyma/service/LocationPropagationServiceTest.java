@@ -0,0 +1,193 @@
+package com.kheyma.service;
+
+import com.kheyma.model.PropagationJob;
+import com.kheyma.model.RevenueRollup;
+import com.kheyma.model.Transaction;
+import com.kheyma.projection.TransactionKey;
+import com.kheyma.repository.PropagationJobRepository;
+import com.kheyma.repository.TransactionRepository;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Drives the worker thread against a mocked template over six transactions, walked two at a time
+class LocationPropagationServiceTest {
+    
+    private static final String LOCATION = "loc-1";
+    private static final long GENERATION = 3;
+    private static final Duration MIN_PAUSE = Duration.ofMillis(100);
+    private static final long WRITE_MILLIS = 60;
+    
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final LocationPropagationService service = new LocationPropagationService(mongoTemplate,
+            transactionRepository, mock(PropagationJobRepository.class), mock(CacheManager.class));
+    
+    private final List<TransactionKey> keys = new ArrayList<>();
+    private final Queue<Rewrite> rewrites = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private final AtomicReference<PropagationJob> pending = new AtomicReference<>();
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "dutyCycle", 0.25);
+        ReflectionTestUtils.setField(service, "minPause", MIN_PAUSE);
+        ReflectionTestUtils.setField(service, "pollInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(service, "lease", Duration.ofMinutes(1));
+        for (int i = 0; i < 6; i++) {
+            keys.add(key(new ObjectId().toHexString(), LocalDate.of(2025, 7, 20).minusDays(i)));
+        }
+        
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(PropagationJob.class))).thenAnswer(invocation -> pending.getAndSet(null));
+        when(mongoTemplate.count(any(Query.class), eq(Transaction.class))).thenReturn((long) keys.size());
+        when(transactionRepository.findPageByLocation(eq(LOCATION), any(Pageable.class), eq(TransactionKey.class)))
+                .thenAnswer(invocation -> page(0));
+        when(transactionRepository.findPageByLocationAfter(eq(LOCATION), any(LocalDate.class), any(ObjectId.class),
+                any(Pageable.class), eq(TransactionKey.class))).thenAnswer(invocation -> {
+            String after = invocation.<ObjectId>getArgument(2).toHexString();
+            int from = 0;
+            while (!keys.get(from).getId().equals(after)) {
+                from++;
+            }
+            return page(from + 1);
+        });
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Transaction.class)))
+                .thenAnswer(invocation -> {
+                    long started = System.nanoTime();
+                    Thread.sleep(WRITE_MILLIS);
+                    Query query = invocation.getArgument(0);
+                    rewrites.add(new Rewrite(query.getQueryObject(), invocation.<Update>getArgument(1)
+                            .getUpdateObject(), started));
+                    return UpdateResult.acknowledged(2, 2L, null);
+                });
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(PropagationJob.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(RevenueRollup.class)))
+                .thenAnswer(invocation -> {
+                    completed.countDown();
+                    return UpdateResult.acknowledged(1, 1L, null);
+                });
+    }
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.stop();
+    }
+    
+    // A job taken over after two batches continues after its checkpoint instead of starting again
+    @Test
+    void resumesFromTheCheckpoint() throws Exception {
+        PropagationJob job = job();
+        job.setCheckpointDate(keys.get(3).getDate());
+        job.setCheckpointId(keys.get(3).getId());
+        job.setScannedTransactions(4);
+        job.setTotalTransactions(keys.size());
+        
+        runToCompletion(job);
+        
+        assertThat(rewrites).hasSize(1);
+        assertThat(rewrittenIds(rewrites.peek())).containsExactly(keys.get(4).getId(), keys.get(5).getId());
+        verify(transactionRepository, never()).findPageByLocation(any(), any(), any());
+        verify(mongoTemplate, never()).count(any(Query.class), eq(Transaction.class));
+    }
+    
+    // At a 0.25 duty cycle each batch is followed by a pause of three times its own duration
+    @Test
+    void throttlesBatchesToTheDutyCycle() throws Exception {
+        runToCompletion(job());
+        
+        List<Rewrite> batches = new ArrayList<>(rewrites);
+        assertThat(batches).hasSize(3);
+        for (int i = 1; i < batches.size(); i++) {
+            long gapMillis = TimeUnit.NANOSECONDS.toMillis(batches.get(i).startedAt() - batches.get(i - 1).startedAt());
+            assertThat(gapMillis).isGreaterThanOrEqualTo(WRITE_MILLIS * 4);
+        }
+    }
+    
+    // Rows stamped by this generation or a newer edit's are left alone, and rewritten rows get this generation
+    @Test
+    void rewritesOnlyRowsBehindTheJobsGeneration() throws Exception {
+        runToCompletion(job());
+        
+        for (Rewrite rewrite : rewrites) {
+            assertThat(rewrite.filter().get(LocationPropagationService.GENERATION_STAMP))
+                    .isEqualTo(new Document("$not", new Document("$gte", GENERATION)));
+            assertThat(((Document) rewrite.update().get("$set")).get(LocationPropagationService.GENERATION_STAMP))
+                    .isEqualTo(GENERATION);
+        }
+    }
+    
+    private void runToCompletion(PropagationJob job) throws InterruptedException {
+        pending.set(job);
+        service.start();
+        assertThat(completed.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+    
+    private List<TransactionKey> page(int from) {
+        return keys.subList(Math.min(from, keys.size()), Math.min(from + 2, keys.size()));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<String> rewrittenIds(Rewrite rewrite) {
+        List<ObjectId> ids = (List<ObjectId>) ((Document) rewrite.filter().get("_id")).get("$in");
+        return ids.stream().map(ObjectId::toHexString).toList();
+    }
+    
+    private static PropagationJob job() {
+        PropagationJob job = new PropagationJob();
+        job.setId(LOCATION);
+        job.setGeneration(GENERATION);
+        job.setName("Ain Draham Forest");
+        job.setLatitude(36.78);
+        job.setLongitude(8.69);
+        job.setStatus(PropagationJob.Status.RUNNING);
+        return job;
+    }
+    
+    private static TransactionKey key(String id, LocalDate date) {
+        return new TransactionKey() {
+            @Override
+            public String getId() {
+                return id;
+            }
+            
+            @Override
+            public LocalDate getDate() {
+                return date;
+            }
+        };
+    }
+    
+    private record Rewrite(Document filter, Document update, long startedAt) {
+    }
+}
\ No newline at end of file
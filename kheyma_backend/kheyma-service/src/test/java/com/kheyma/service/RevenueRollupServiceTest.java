@@ -0,0 +1,180 @@
+package com.kheyma.service;
+
+import com.kheyma.dto.RevenueBreakdown;
+import com.kheyma.dto.RollupReconciliationReport;
+import com.kheyma.model.RevenueRollup;
+import com.kheyma.model.Transaction;
+import com.kheyma.repository.RevenueRollupRepository;
+import com.kheyma.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Reconciliation now starts from the $facet breakdown instead of folding every transaction;
+// both must expect the same rollups
+class RevenueRollupServiceTest {
+    
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final RevenueRollupRepository revenueRollupRepository = mock(RevenueRollupRepository.class);
+    private final RevenueRollupService service =
+            new RevenueRollupService(mongoTemplate, revenueRollupRepository, transactionRepository);
+    
+    private List<Transaction> transactions;
+    
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(7);
+        transactions = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String locationId = "loc-" + random.nextInt(5);
+            transactions.add(new Transaction("t" + i, "user-" + random.nextInt(10), i + 1,
+                    Math.round(random.nextDouble() * 30000) / 100.0,
+                    new Transaction.LocationReference(locationId, "Camp " + locationId, 36.5, 10.2),
+                    Transaction.PackageType.values()[random.nextInt(3)],
+                    LocalDate.of(2024, 1, 20).plusDays(random.nextInt(90))));
+        }
+        when(transactionRepository.aggregateRevenueBreakdown(any())).thenReturn(breakdownOf(transactions));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RevenueRollup.class)).thenReturn(bulkOperations);
+    }
+    
+    @Test
+    void breakdownExpectsTheSameRollupsAsThePerTransactionFold() {
+        Map<String, RevenueRollup> folded = foldPerTransaction(transactions);
+        when(revenueRollupRepository.findAll()).thenReturn(new ArrayList<>(folded.values()));
+        
+        RollupReconciliationReport report = service.reconcile(false);
+        
+        assertThat(report.getDrifts()).isEmpty();
+        assertThat(report.getRollupsChecked()).isEqualTo(folded.size());
+        assertThat(report.getTransactionsScanned()).isEqualTo(transactions.size());
+    }
+    
+    @Test
+    void reportsMissingAndOrphanedBuckets() {
+        Map<String, RevenueRollup> folded = foldPerTransaction(transactions);
+        String missing = RevenueRollup.idOf(RevenueRollup.Dimension.MONTH, "2024-02");
+        folded.remove(missing);
+        RevenueRollup orphan = new RevenueRollup();
+        orphan.setId(RevenueRollup.idOf(RevenueRollup.Dimension.LOCATION, "deleted"));
+        orphan.setCount(3);
+        folded.put(orphan.getId(), orphan);
+        when(revenueRollupRepository.findAll()).thenReturn(new ArrayList<>(folded.values()));
+        
+        RollupReconciliationReport report = service.reconcile(false);
+        
+        assertThat(report.getDrifts())
+                .extracting(RollupReconciliationReport.Drift::getRollupId)
+                .containsExactlyInAnyOrder(missing, orphan.getId());
+        assertThat(report.isRepaired()).isFalse();
+    }
+    
+    // A bucket written since the watermark may hold bookings the aggregation did not see; it is left for the next run
+    @Test
+    void skipsBucketsUpdatedSinceTheWatermark() {
+        Map<String, RevenueRollup> folded = foldPerTransaction(transactions);
+        RevenueRollup busy = folded.get(RevenueRollup.idOf(RevenueRollup.Dimension.TOTAL, RevenueRollup.TOTAL_KEY));
+        busy.setCount(busy.getCount() + 1);
+        busy.setUpdatedAt(LocalDateTime.now());
+        when(revenueRollupRepository.findAll()).thenReturn(new ArrayList<>(folded.values()));
+        
+        RollupReconciliationReport report = service.reconcile(true);
+        
+        assertThat(report.getDrifts()).isEmpty();
+        assertThat(report.getRollupsSkipped()).isEqualTo(1);
+        verify(bulkOperations, never()).updateOne(any(Query.class), any(Update.class));
+    }
+    
+    // A quiet bucket is repaired only while its updatedAt is still the value read, never upserted over
+    @Test
+    void repairsQuietBucketsConditionallyOnTheirUpdatedAt() {
+        Map<String, RevenueRollup> folded = foldPerTransaction(transactions);
+        RevenueRollup drifted = folded.get(RevenueRollup.idOf(RevenueRollup.Dimension.TOTAL, RevenueRollup.TOTAL_KEY));
+        drifted.setCount(drifted.getCount() + 1);
+        drifted.setUpdatedAt(LocalDateTime.now().minusHours(1));
+        when(revenueRollupRepository.findAll()).thenReturn(new ArrayList<>(folded.values()));
+        
+        RollupReconciliationReport report = service.reconcile(true);
+        
+        assertThat(report.getDrifts()).hasSize(1);
+        Query unchanged = Query.query(Criteria.where("_id").is(drifted.getId()).and("updatedAt").is(drifted.getUpdatedAt()));
+        verify(bulkOperations).updateOne(eq(unchanged), any(Update.class));
+        verify(bulkOperations, never()).upsert(any(Query.class), any(Update.class));
+    }
+    
+    // What reconcile computed before the pipeline: every transaction folded into its five buckets
+    private static Map<String, RevenueRollup> foldPerTransaction(List<Transaction> transactions) {
+        Map<String, RevenueRollup> rollups = new HashMap<>();
+        for (Transaction t : transactions) {
+            add(rollups, RevenueRollup.Dimension.TOTAL, RevenueRollup.TOTAL_KEY, t);
+            add(rollups, RevenueRollup.Dimension.DAY, t.getDate().toString(), t);
+            add(rollups, RevenueRollup.Dimension.MONTH, YearMonth.from(t.getDate()).toString(), t);
+            add(rollups, RevenueRollup.Dimension.LOCATION, t.getLocation().getLocationId(), t);
+            add(rollups, RevenueRollup.Dimension.PACKAGE, t.getPackageType().name(), t);
+        }
+        return rollups;
+    }
+    
+    private static void add(Map<String, RevenueRollup> rollups, RevenueRollup.Dimension dimension, String key,
+                            Transaction transaction) {
+        RevenueRollup rollup = rollups.computeIfAbsent(RevenueRollup.idOf(dimension, key), id -> {
+            RevenueRollup created = new RevenueRollup();
+            created.setId(id);
+            created.setDimension(dimension);
+            created.setKey(key);
+            return created;
+        });
+        rollup.setCount(rollup.getCount() + 1);
+        rollup.setRevenue(rollup.getRevenue() + transaction.getAmount());
+    }
+    
+    // The shape the $facet pipeline returns, which TransactionRepositoryImplTest checks against a real mongod
+    private static RevenueBreakdown breakdownOf(List<Transaction> transactions) {
+        RevenueBreakdown breakdown = new RevenueBreakdown();
+        breakdown.setTotal(bucketsBy(transactions, t -> RevenueRollup.TOTAL_KEY).get(0));
+        breakdown.setByPackage(bucketsBy(transactions, t -> t.getPackageType().name()));
+        breakdown.setByLocation(bucketsBy(transactions, t -> t.getLocation().getLocationId()));
+        breakdown.setByDay(bucketsBy(transactions, t -> t.getDate().toString()));
+        breakdown.getByLocation().forEach(bucket -> bucket.setName("Camp " + bucket.getKey()));
+        return breakdown;
+    }
+    
+    private static List<RevenueBreakdown.Bucket> bucketsBy(List<Transaction> transactions,
+                                                           Function<Transaction, String> key) {
+        Map<String, RevenueBreakdown.Bucket> buckets = new TreeMap<>();
+        for (Transaction t : transactions) {
+            RevenueBreakdown.Bucket bucket = buckets.computeIfAbsent(key.apply(t), k -> {
+                RevenueBreakdown.Bucket created = new RevenueBreakdown.Bucket();
+                created.setKey(k);
+                return created;
+            });
+            bucket.setCount(bucket.getCount() + 1);
+            bucket.setRevenue(bucket.getRevenue() + t.getAmount());
+        }
+        return new ArrayList<>(buckets.values());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.kheyma.service;
+
+import com.kheyma.MongoTestSupport;
+import com.kheyma.model.Counter;
+import org.bson.Document;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Run with -Pbenchmark. transIds per second from hi/lo blocks against a counter incremented once per
+// booking (a block of one), with many booking threads on one instance
+@Tag("benchmark")
+class SequenceAllocationBenchmark {
+    
+    private static final int THREADS = 16;
+    private static final int PER_THREAD = 1_000;
+    private static final int BLOCK_SIZE = 50;
+    // What a findAndModify costs a booking thread on a nearby mongod
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(300);
+    
+    @Test
+    void blocksAgainstAPerBookingCounter() throws Exception {
+        report("simulated round trips", () -> fakeTemplate(new AtomicLong()));
+    }
+    
+    @Test
+    @EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+    void blocksAgainstAPerBookingCounterOnMongo() throws Exception {
+        try (MongoTestSupport mongo = MongoTestSupport.open()) {
+            report("mongod", mongo::template);
+        }
+    }
+    
+    private static void report(String against, Supplier<MongoTemplate> templates) throws Exception {
+        long perBooking = allocate(service(templates.get(), 1));
+        long blocks = allocate(service(templates.get(), BLOCK_SIZE));
+        
+        System.out.printf("%d transIds on %d threads against %s: per-booking counter %.0f/s, blocks of %d %.0f/s%n",
+                THREADS * PER_THREAD, THREADS, against, perSecond(perBooking), BLOCK_SIZE, perSecond(blocks));
+    }
+    
+    // Returns the elapsed nanos once every thread has taken its ids; every id must be distinct
+    private static long allocate(SequenceService service) throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < PER_THREAD; i++) {
+                    ids.add(service.next(SequenceService.TRANSACTION_ID, () -> 0L));
+                }
+                return null;
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - started;
+        pool.shutdown();
+        assertThat(ids).hasSize(THREADS * PER_THREAD);
+        return elapsed;
+    }
+    
+    private static double perSecond(long nanos) {
+        return THREADS * PER_THREAD * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+    
+    private static SequenceService service(MongoTemplate template, int blockSize) {
+        SequenceService service = new SequenceService(template);
+        ReflectionTestUtils.setField(service, "blockSize", blockSize);
+        return service;
+    }
+    
+    // The counter document, with each findAndModify costing a round trip
+    private static MongoTemplate fakeTemplate(AtomicLong counter) {
+        MongoTemplate template = mock(MongoTemplate.class);
+        when(template.upsert(any(Query.class), any(Update.class), eq(Counter.class))).thenReturn(null);
+        when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Counter.class))).thenAnswer(invocation -> {
+            LockSupport.parkNanos(ROUND_TRIP_NANOS);
+            Update update = invocation.getArgument(1);
+            long count = ((Number) ((Document) update.getUpdateObject().get("$inc")).get("value")).longValue();
+            return new Counter(SequenceService.TRANSACTION_ID, counter.addAndGet(count), null);
+        });
+        return template;
+    }
+}
\ No newline at end of file
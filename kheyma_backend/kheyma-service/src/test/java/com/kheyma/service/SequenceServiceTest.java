@@ -0,0 +1,129 @@
+package com.kheyma.service;
+
+import com.kheyma.MongoTestSupport;
+import com.kheyma.model.Counter;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Many threads on two service instances allocate transIds from one shared counter; no value may repeat
+class SequenceServiceTest {
+    
+    private static final int THREADS = 16;
+    private static final int PER_THREAD = 20_000;
+    private static final long SEED = 1_000;
+    
+    @Test
+    void concurrentAllocationAcrossInstancesNeverRepeats() throws Exception {
+        // Stands in for the counter document; the template applies $inc/$max atomically, as mongod does
+        AtomicLong counter = new AtomicLong();
+        SequenceService first = service(fakeTemplate(counter), 50);
+        SequenceService second = service(fakeTemplate(counter), 37);
+        
+        Set<Long> ids = allocateConcurrently(first, second);
+        
+        assertThat(ids).hasSize(THREADS * PER_THREAD + THREADS / 2 * 25 * 20);
+        assertThat(ids).allSatisfy(id -> assertThat(id).isGreaterThan(SEED));
+        assertThat(counter.get()).isGreaterThanOrEqualTo(SEED + ids.size());
+    }
+    
+    @Test
+    @EnabledIfEnvironmentVariable(named = MongoTestSupport.URI_VARIABLE, matches = ".+")
+    void concurrentAllocationAgainstMongoNeverRepeats() throws Exception {
+        try (MongoTestSupport mongo = MongoTestSupport.open()) {
+            SequenceService first = service(mongo.template(), 50);
+            SequenceService second = service(mongo.otherInstance(), 37);
+            
+            Set<Long> ids = allocateConcurrently(first, second);
+            
+            assertThat(ids).hasSize(THREADS * PER_THREAD + THREADS / 2 * 25 * 20);
+            assertThat(ids).allSatisfy(id -> assertThat(id).isGreaterThan(SEED));
+        }
+    }
+    
+    // Half the threads also take 25-value bulk reservations, as the bulk booking endpoint does
+    private Set<Long> allocateConcurrently(SequenceService first, SequenceService second) throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        List<Long> duplicates = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            SequenceService instance = t % 2 == 0 ? first : second;
+            boolean reserves = t < THREADS / 2;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < PER_THREAD; i++) {
+                    record(ids, duplicates, instance.next(SequenceService.TRANSACTION_ID, () -> SEED));
+                    if (reserves && i % 1_000 == 0) {
+                        long from = instance.reserve(SequenceService.TRANSACTION_ID, 25, () -> SEED);
+                        for (long id = from; id < from + 25; id++) {
+                            record(ids, duplicates, id);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        assertThat(duplicates).isEmpty();
+        return ids;
+    }
+    
+    private static void record(Set<Long> ids, List<Long> duplicates, long id) {
+        if (!ids.add(id)) {
+            synchronized (duplicates) {
+                duplicates.add(id);
+            }
+        }
+    }
+    
+    private static SequenceService service(MongoTemplate template, int blockSize) {
+        SequenceService service = new SequenceService(template);
+        ReflectionTestUtils.setField(service, "blockSize", blockSize);
+        return service;
+    }
+    
+    private static MongoTemplate fakeTemplate(AtomicLong counter) {
+        MongoTemplate template = mock(MongoTemplate.class);
+        when(template.upsert(any(Query.class), any(Update.class), eq(Counter.class))).thenAnswer(invocation -> {
+            Update update = invocation.getArgument(1);
+            long seed = ((Number) ((Document) update.getUpdateObject().get("$max")).get("value")).longValue();
+            counter.accumulateAndGet(seed, Math::max);
+            return null;
+        });
+        when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Counter.class))).thenAnswer(invocation -> {
+            Update update = invocation.getArgument(1);
+            long count = ((Number) ((Document) update.getUpdateObject().get("$inc")).get("value")).longValue();
+            return new Counter(SequenceService.TRANSACTION_ID, counter.addAndGet(count), null);
+        });
+        return template;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package com.kheyma.service;
+
+import com.kheyma.dto.BulkTransactionRequest;
+import com.kheyma.dto.BulkTransactionResult;
+import com.kheyma.model.Location;
+import com.kheyma.model.Transaction;
+import com.kheyma.model.User;
+import com.kheyma.repository.TransactionRepository;
+import com.kheyma.repository.UserRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Inventory claimed for a bulk batch must be given back for every item that was not written, whatever failed
+@ExtendWith(MockitoExtension.class)
+class TransactionServiceTest {
+    
+    private static final LocalDate NIGHT = LocalDate.of(2025, 7, 14);
+    
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private TransactionRepository transactionRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private LocationCacheService locationCacheService;
+    @Mock private RevenueRollupService revenueRollupService;
+    @Mock private CustomerSketchService customerSketchService;
+    @Mock private AmountDistributionService amountDistributionService;
+    @Mock private SequenceService sequenceService;
+    @Mock private UserSpendingService userSpendingService;
+    @Mock private InventoryService inventoryService;
+    
+    @InjectMocks private TransactionService transactionService;
+    
+    private final Location location = new Location("loc-1", "Ain Draham", 36.78, 8.69, null,
+            null, Location.LocationType.CAMPSITE, 20);
+    private final List<BulkTransactionRequest.Item> items = List.of(
+            new BulkTransactionRequest.Item("a@kheyma.tn", "loc-1", 120.0, Transaction.PackageType.BASIC, NIGHT),
+            new BulkTransactionRequest.Item("a@kheyma.tn", "loc-1", 180.0, Transaction.PackageType.FULL, NIGHT),
+            new BulkTransactionRequest.Item("a@kheyma.tn", "loc-1", 150.0, Transaction.PackageType.ADVANCED, NIGHT));
+    
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId("user-1");
+        user.setEmail("a@kheyma.tn");
+        when(userRepository.findByEmailIn(anyCollection())).thenReturn(List.of(user));
+        when(locationCacheService.getAllById(anyCollection())).thenReturn(Map.of("loc-1", location));
+        when(inventoryService.claimAll(anyList())).thenAnswer(invocation -> {
+            boolean[] granted = new boolean[invocation.<List<?>>getArgument(0).size()];
+            Arrays.fill(granted, true);
+            return granted;
+        });
+    }
+    
+    @Test
+    void releasesEveryClaimWhenTransIdReservationFails() {
+        when(sequenceService.reserve(anyString(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("counter unavailable"));
+        
+        assertThatThrownBy(() -> transactionService.createTransactions(items))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        verify(inventoryService, times(3)).release(location, NIGHT);
+    }
+    
+    @Test
+    void releasesOnlyUnwrittenItemsAfterAnAmbiguousInsertFailure() {
+        when(sequenceService.reserve(anyString(), anyInt(), any())).thenReturn(500L);
+        BulkOperations ops = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class)).thenReturn(ops);
+        when(ops.insert(anyList())).thenReturn(ops);
+        when(ops.execute()).thenThrow(new DataAccessResourceFailureException("socket timeout"));
+        // The first item reached the server before the connection dropped
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class))).thenAnswer(invocation -> {
+            Transaction written = new Transaction();
+            written.setId(((Query) invocation.getArgument(0)).getQueryObject()
+                    .get("_id", Document.class).getList("$in", String.class).get(0));
+            return List.of(written);
+        });
+        
+        BulkTransactionResult result = transactionService.createTransactions(items);
+        
+        assertThat(result.getCreated()).isEqualTo(1);
+        assertThat(result.getItems()).extracting(BulkTransactionResult.ItemResult::getStatus).containsExactly(
+                BulkTransactionResult.Status.CREATED, BulkTransactionResult.Status.FAILED,
+                BulkTransactionResult.Status.FAILED);
+        verify(inventoryService, times(2)).release(location, NIGHT);
+    }
+    
+    @Test
+    void releasesEveryClaimWhenTheOutcomeCannotBeDetermined() {
+        when(sequenceService.reserve(anyString(), anyInt(), any())).thenReturn(500L);
+        BulkOperations ops = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class)).thenReturn(ops);
+        when(ops.insert(anyList())).thenReturn(ops);
+        when(ops.execute()).thenThrow(new DataAccessResourceFailureException("socket timeout"));
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class)))
+                .thenThrow(new DataAccessResourceFailureException("still down"));
+        
+        assertThatThrownBy(() -> transactionService.createTransactions(items))
+                .hasMessageContaining("still down");
+        verify(inventoryService, times(3)).release(location, NIGHT);
+    }
+}
\ No newline at end of file
@@ -10,6 +10,8 @@ const AdminDashboard = () => {
   const navigate = useNavigate();
   const [stats, setStats] = useState({ users: 0, locations: 0, transactions: 0 });
   const [users, setUsers] = useState([]);
+  const [usersCursor, setUsersCursor] = useState(null);
+  const [loadingUsers, setLoadingUsers] = useState(false);
   const [locations, setLocations] = useState([]);
 
   useEffect(() => {
@@ -24,23 +26,40 @@ const AdminDashboard = () => {
     try {
       const [statsRes, usersRes, locationsRes] = await Promise.all([
         adminAPI.getStats(),
-        adminAPI.getUsers(),
+        adminAPI.getUsers({ view: 'summary' }),
         locationsAPI.getAll(),
       ]);
       // Handle different response structures
       const statsData = statsRes.data || {};
       setStats({
-        users: statsData.totalUsers || statsData.users || usersRes.data?.length || 0,
+        // A users page holds at most one page of items, so it cannot stand in for the total
+        users: statsData.totalUsers || statsData.users || 0,
         locations: statsData.totalLocations || statsData.locations || locationsRes.data?.length || 0,
         transactions: statsData.totalTransactions || statsData.transactions || 0,
       });
-      setUsers(Array.isArray(usersRes.data) ? usersRes.data : []);
+      setUsers(Array.isArray(usersRes.data?.items) ? usersRes.data.items : []);
+      setUsersCursor(usersRes.data?.nextCursor || null);
       setLocations(Array.isArray(locationsRes.data) ? locationsRes.data : []);
     } catch (error) {
       console.error('Error fetching admin data:', error);
     }
   };
 
+  // Users come in keyset pages; follow nextCursor until the server stops returning one
+  const loadMoreUsers = async () => {
+    if (!usersCursor || loadingUsers) return;
+    setLoadingUsers(true);
+    try {
+      const res = await adminAPI.getUsers({ view: 'summary', cursor: usersCursor });
+      setUsers((prev) => [...prev, ...(Array.isArray(res.data?.items) ? res.data.items : [])]);
+      setUsersCursor(res.data?.nextCursor || null);
+    } catch (error) {
+      console.error('Error fetching users:', error);
+    } finally {
+      setLoadingUsers(false);
+    }
+  };
+
   if (!isAuthenticated || user?.role !== 'ROLE_ADMIN') {
     return null;
   }
@@ -66,15 +85,24 @@ const AdminDashboard = () => {
         </div>
         <div className="grid grid-cols-1 md:grid-cols-2 gap-6">
           <div className="bg-white dark:bg-surface-dark rounded-xl p-6 border border-gray-200">
-            <h2 className="text-xl font-bold mb-4">Recent Users</h2>
-            <div className="space-y-2">
-              {users.slice(0, 5).map((user) => (
+            <h2 className="text-xl font-bold mb-4">Users</h2>
+            <div className="space-y-2 max-h-96 overflow-y-auto">
+              {users.map((user) => (
                 <div key={user.id} className="flex justify-between items-center">
                   <span>{user.email}</span>
                   <span className="text-sm text-text-muted dark:text-text-muted-dark">{user.type || 'USER'}</span>
                 </div>
               ))}
             </div>
+            {usersCursor && (
+              <button
+                onClick={loadMoreUsers}
+                disabled={loadingUsers}
+                className="mt-4 text-sm font-semibold text-primary hover:underline disabled:opacity-50"
+              >
+                {loadingUsers ? 'Loading...' : 'Load more users'}
+              </button>
+            )}
           </div>
           <div className="bg-white dark:bg-surface-dark rounded-xl p-6 border border-gray-200">
             <h2 className="text-xl font-bold mb-4">Recent Locations</h2>
@@ -25,7 +25,7 @@ const CampsiteDetailPage = () => {
           reviewsAPI.getByLocation(id),
         ]);
         setCampsite(locationRes.data);
-        setReviews(reviewsRes.data || []);
+        setReviews(reviewsRes.data?.items || []);
         if (locationRes.data.packages && locationRes.data.packages.length > 0) {
           setSelectedPackage(locationRes.data.packages[0]);
         }
@@ -63,6 +63,9 @@ export const locationsAPI = {
   getAll: (params) => api.get('/api/locations/public/all', { params }),
   getById: (id) => api.get(`/api/locations/public/${id}`),
   search: (params) => api.get('/api/locations/public/search', { params }),
+  suggest: (params) => api.get('/api/locations/public/suggest', { params }),
+  nearby: (params) => api.get('/api/locations/public/nearby', { params }),
+  within: (params) => api.get('/api/locations/public/within', { params }),
   create: (data) => api.post('/api/locations', data),
   update: (id, data) => api.put(`/api/locations/${id}`, data),
   delete: (id) => api.delete(`/api/locations/${id}`),